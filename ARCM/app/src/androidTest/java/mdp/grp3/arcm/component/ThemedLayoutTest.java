@@ -0,0 +1,96 @@
+package mdp.grp3.arcm.component;
+
+import android.content.Context;
+import android.graphics.drawable.ColorDrawable;
+import android.view.ContextThemeWrapper;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.widget.Button;
+import android.widget.TextView;
+
+import androidx.test.annotation.UiThreadTest;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.google.android.material.button.MaterialButton;
+import com.google.android.material.card.MaterialCardView;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import mdp.grp3.arcm.R;
+
+import static org.junit.Assert.*;
+
+/**
+ * Instrumented tests for {@link ThemedLayout} on the main fragment's layout,
+ * which needs real themes and views.
+ */
+@RunWith(AndroidJUnit4.class)
+public class ThemedLayoutTest {
+
+    private static Context themed(int theme) {
+        return new ContextThemeWrapper(InstrumentationRegistry.getInstrumentation().getTargetContext(), theme);
+    }
+
+    private static View inflate(Context context) {
+        return LayoutInflater.from(context).inflate(R.layout.fragment_main, null);
+    }
+
+    private static int background(View root, int id) {
+        return ((ColorDrawable) root.findViewById(id).getBackground()).getColor();
+    }
+
+    @Test
+    @UiThreadTest
+    public void apply_matchesAFreshInflation() {
+        Context purple = themed(R.style.PurpleTheme), red = themed(R.style.RedTheme);
+        View root = inflate(purple), fresh = inflate(red);
+        assertNotEquals(background(fresh, R.id.grid_background), background(root, R.id.grid_background));
+
+        ThemedLayout layout = new ThemedLayout(purple.getResources(), R.layout.fragment_main);
+        assertTrue(layout.size() > 0);
+        layout.apply(root, red);
+
+        assertEquals(background(fresh, R.id.grid_background), background(root, R.id.grid_background));
+        assertEquals(background(fresh, R.id.coord_preview), background(root, R.id.coord_preview));
+        assertEquals(((TextView) fresh.findViewById(R.id.coord_preview)).getCurrentTextColor(),
+                ((TextView) root.findViewById(R.id.coord_preview)).getCurrentTextColor());
+        for (int id : new int[] { R.id.theme, R.id.connect, R.id.status, R.id.wk8button, R.id.wk9button }) {
+            Button expected = fresh.findViewById(id), actual = root.findViewById(id);
+            assertEquals(expected.getBackgroundTintList().getDefaultColor(),
+                    actual.getBackgroundTintList().getDefaultColor());
+            assertEquals(expected.getCurrentTextColor(), actual.getCurrentTextColor());
+            // outside an AppCompat activity the inflater leaves them plain buttons
+            if (actual instanceof MaterialButton)
+                assertEquals(((MaterialButton) expected).getStrokeColor().getDefaultColor(),
+                        ((MaterialButton) actual).getStrokeColor().getDefaultColor());
+        }
+        for (int id : new int[] { R.id.message_box_card, R.id.obstacles_card }) {
+            MaterialCardView expected = fresh.findViewById(id), actual = root.findViewById(id);
+            assertEquals(expected.getStrokeColor(), actual.getStrokeColor());
+            assertEquals(expected.getCardBackgroundColor().getDefaultColor(),
+                    actual.getCardBackgroundColor().getDefaultColor());
+            assertEquals(expected.getOutlineSpotShadowColor(), actual.getOutlineSpotShadowColor());
+        }
+    }
+
+    @Test
+    @UiThreadTest
+    public void apply_keepsTheViewsAndTheirState() {
+        Context purple = themed(R.style.PurpleTheme);
+        View root = inflate(purple);
+        View grid = root.findViewById(R.id.grid), log = root.findViewById(R.id.message_log);
+        TextView timer = root.findViewById(R.id.wk8timer);
+        timer.setText("01:23.4");
+        root.findViewById(R.id.robot_car).setX(123);
+
+        new ThemedLayout(purple.getResources(), R.layout.fragment_main).apply(root, themed(R.style.RedTheme));
+
+        assertSame(grid, root.findViewById(R.id.grid));
+        assertSame(log, root.findViewById(R.id.message_log));
+        assertSame(timer, root.findViewById(R.id.wk8timer));
+        assertEquals("01:23.4", timer.getText().toString());
+        assertEquals(123, root.findViewById(R.id.robot_car).getX(), 0);
+    }
+}
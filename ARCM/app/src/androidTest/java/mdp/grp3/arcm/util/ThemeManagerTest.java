@@ -0,0 +1,78 @@
+package mdp.grp3.arcm.util;
+
+import android.content.Context;
+import android.util.TypedValue;
+import android.view.ContextThemeWrapper;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import mdp.grp3.arcm.R;
+
+import static org.junit.Assert.*;
+
+/**
+ * Instrumented tests for the palette cache of {@link ThemeManager}, which needs
+ * real themes.
+ */
+@RunWith(AndroidJUnit4.class)
+public class ThemeManagerTest {
+    private static final int LOOKUPS = 20_000;
+
+    private static Context themed(int theme) {
+        return new ContextThemeWrapper(InstrumentationRegistry.getInstrumentation().getTargetContext(), theme);
+    }
+
+    private static int resolve(Context context, int attr) {
+        TypedValue value = new TypedValue();
+        context.getTheme().resolveAttribute(attr, value, true);
+        return value.data;
+    }
+
+    @Test
+    public void getColor_matchesTheTheme() {
+        int attr = com.google.android.material.R.attr.colorPrimary;
+        Context purple = themed(R.style.PurpleTheme), red = themed(R.style.RedTheme);
+        assertEquals(resolve(purple, attr), ThemeManager.getColor(purple, attr));
+        assertEquals(resolve(red, attr), ThemeManager.getColor(red, attr));
+        assertEquals(resolve(purple, attr), ThemeManager.getColor(purple, attr));
+        // outside the palette
+        assertEquals(resolve(red, android.R.attr.colorBackground),
+                ThemeManager.getColor(red, android.R.attr.colorBackground));
+    }
+
+    @Test
+    public void getColor_coldVersusWarm() {
+        // like the activity's theme and a dialog's, looked up in turn
+        Context purple = themed(R.style.PurpleTheme), red = themed(R.style.RedTheme);
+        int attr = com.google.android.material.R.attr.colorSecondary;
+        int sum = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < LOOKUPS; i++)
+            sum += resolve(purple, attr);
+        long uncached = System.nanoTime() - start;
+        start = System.nanoTime();
+        for (int i = 0; i < LOOKUPS; i++) {
+            ThemeManager.clearPalette();
+            sum += ThemeManager.getColor(purple, attr);
+        }
+        long cold = System.nanoTime() - start;
+        start = System.nanoTime();
+        for (int i = 0; i < LOOKUPS; i++)
+            sum += ThemeManager.getColor(purple, attr);
+        long warm = System.nanoTime() - start;
+        start = System.nanoTime();
+        for (int i = 0; i < LOOKUPS; i++)
+            sum += ThemeManager.getColor(i % 2 == 0 ? purple : red, attr);
+        long alternating = System.nanoTime() - start;
+        // the timings are only reported, a shared emulator is too noisy to assert them
+        assertEquals(3 * LOOKUPS * resolve(purple, attr) + LOOKUPS / 2 * (resolve(purple, attr) + resolve(red, attr)),
+                sum);
+        System.out.printf("ThemeManager.getColor: resolveAttribute %.0f ns, cold %.0f ns, warm %.0f ns, "
+                + "two themes warm %.0f ns%n", (double) uncached / LOOKUPS, (double) cold / LOOKUPS,
+                (double) warm / LOOKUPS, (double) alternating / LOOKUPS);
+    }
+}
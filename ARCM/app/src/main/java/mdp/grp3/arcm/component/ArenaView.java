@@ -0,0 +1,550 @@
+package mdp.grp3.arcm.component;
+
+import android.content.Context;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.DashPathEffect;
+import android.graphics.Paint;
+import android.graphics.Path;
+import android.graphics.Rect;
+import android.graphics.RectF;
+import android.graphics.Typeface;
+import android.util.AttributeSet;
+import android.util.TypedValue;
+import android.view.MotionEvent;
+import android.view.ScaleGestureDetector;
+import android.view.View;
+
+import mdp.grp3.arcm.model.PlannedRoute;
+import mdp.grp3.arcm.util.Viewport;
+
+/**
+ * Draws the 20x20 arena with its axes in a single view: the cells, the cells
+ * the robot has visited, the axis labels and the axis highlight while an
+ * obstacle is dragged. It looks and measures like the grid of views it
+ * replaces, and a change only invalidates the cells it affects.
+ * <p>
+ * Rows count from the top and columns from the left like the old grid: row 20
+ * holds the x axis labels and column 0 the y axis labels, so the arena cells
+ * are rows 0-19 and columns 1-20.
+ * <p>
+ * The arena can be drawn at a finer resolution, each 10 cm cell split into
+ * smaller ones like the planner's 5 cm grid, and pinched to zoom and pan. The
+ * rows and columns above always stay the 10 cm cells of the protocol. Only the
+ * cells in the viewport are drawn, so a fine arena costs what the screen
+ * shows rather than what the arena holds.
+ * <p>
+ * A planned route is drawn over the cells as a few paths built once when the
+ * route changes, in arena pixels at a zoom of 1. Zooming, panning and the robot
+ * moving only change the canvas transform, so a long route costs the same
+ * three draw calls every frame.
+ */
+public class ArenaView extends View {
+    public static final int SIZE = 21; // rows and columns, including the axes
+    public static final int[] RESOLUTIONS = { 20, 40, 200 }; // cells per side that can be drawn
+    private static final int CELLS = SIZE - 1; // the 10 cm cells per side
+    private static final int CELL_SIZE = 34; // the drawn part of a cell
+    private static final int PITCH = CELL_SIZE + 2; // a cell and its 1px margins
+    private static final int AXIS_WIDTH = CELL_SIZE + 5; // the y axis labels and their margins
+    private static final int LABEL_HEIGHT = CELL_SIZE; // the x axis labels have no margins
+    private static final int ARENA_SIZE = CELLS * PITCH; // the side of the arena at a zoom of 1
+    private static final float MIN_MARGIN = 0.5f; // finer cells are drawn without margins
+    private static final float ROUTE_WIDTH = 3; // width of the route lines at a zoom of 1
+    private static final float STOP_RADIUS = 6; // radius of the stop markers at a zoom of 1
+    private static final float PIXELS_PER_CM = (float) ARENA_SIZE / (CELLS * PlannedRoute.CELL_SIZE);
+    private static final String[] LABELS = new String[CELLS]; // "0" to "19"
+
+    static {
+        for (int i = 0; i < LABELS.length; i++)
+            LABELS[i] = String.valueOf(i);
+    }
+
+    /**
+     * Listens for zooming and panning, to keep what is drawn over the arena on
+     * its cells
+     */
+    public interface OnViewportChangeListener {
+        void onViewportChanged(ArenaView view);
+    }
+
+    private int resolution = CELLS; // cells per side drawn
+    private boolean[] visited = new boolean[CELLS * CELLS]; // row major, at the drawn resolution
+    private final Viewport viewport = new Viewport(ARENA_SIZE, maxScale(CELLS));
+    private final ScaleGestureDetector scaleDetector;
+    private OnViewportChangeListener viewportListener;
+    private final Paint cellPaint = new Paint();
+    private final Paint visitedPaint = new Paint();
+    private final Paint highlightPaint = new Paint();
+    private final Paint labelPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Rect clip = new Rect(); // reused by onDraw
+    private int highlightRow = -1, highlightColumn = -1;
+    private final Path forwardPath = new Path(); // the moves driven forwards
+    private final Path reversePath = new Path(); // the moves driven backwards, dashed
+    private final Path stopsPath = new Path(); // a dot where every picture is taken
+    private final Paint forwardPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Paint reversePaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Paint stopPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final RectF routeBounds = new RectF(); // of all the route paths, empty without a route
+    private final RectF pathBounds = new RectF(); // reused by setRoute
+
+    /**
+     * Constructor for ArenaView.
+     *
+     * @param context - The context of the view
+     * @param attrs   - The attributes from the layout
+     */
+    public ArenaView(Context context, AttributeSet attrs) {
+        super(context, attrs);
+        cellPaint.setColor(Color.WHITE);
+        visitedPaint.setColor(Color.GRAY);
+        highlightPaint.setColor(Color.GRAY);
+        labelPaint.setColor(Color.BLACK);
+        labelPaint.setTypeface(Typeface.DEFAULT_BOLD);
+        labelPaint.setTextSize(TypedValue.applyDimension(TypedValue.COMPLEX_UNIT_SP, 10,
+                getResources().getDisplayMetrics()));
+        for (Paint paint : new Paint[] { forwardPaint, reversePaint }) {
+            paint.setColor(Color.BLUE);
+            paint.setStyle(Paint.Style.STROKE);
+            paint.setStrokeWidth(ROUTE_WIDTH);
+            paint.setStrokeCap(Paint.Cap.ROUND);
+            paint.setStrokeJoin(Paint.Join.ROUND);
+        }
+        reversePaint.setPathEffect(new DashPathEffect(new float[] { 3 * ROUTE_WIDTH, 2 * ROUTE_WIDTH }, 0));
+        stopPaint.setColor(Color.RED);
+        scaleDetector = new ScaleGestureDetector(context, new ScaleGestureDetector.SimpleOnScaleGestureListener() {
+            private float lastFocusX, lastFocusY;
+
+            @Override
+            public boolean onScaleBegin(ScaleGestureDetector detector) {
+                lastFocusX = detector.getFocusX();
+                lastFocusY = detector.getFocusY();
+                cancelLongPress();
+                return true;
+            }
+
+            @Override
+            public boolean onScale(ScaleGestureDetector detector) {
+                // the arena starts after the y axis labels
+                float focusX = detector.getFocusX(), focusY = detector.getFocusY();
+                boolean changed = viewport.zoomBy(detector.getScaleFactor(), focusX - AXIS_WIDTH, focusY);
+                changed |= viewport.panBy(focusX - lastFocusX, focusY - lastFocusY);
+                lastFocusX = focusX;
+                lastFocusY = focusY;
+                if (changed)
+                    onViewportChanged();
+                return true;
+            }
+        });
+    }
+
+    /**
+     * @return how far a resolution can be zoomed, so that its cells can be as
+     *         large as twice the 10 cm cells at a zoom of 1
+     */
+    private static float maxScale(int resolution) {
+        return resolution * 2f / CELLS;
+    }
+
+    /**
+     * Sets the colours of the arena and redraws it
+     *
+     * @param cell      - The colour of an empty cell
+     * @param visited   - The colour of a cell the robot has visited
+     * @param label     - The colour of the axis labels
+     * @param highlight - The colour of the axis labels of the cell dragged over
+     */
+    public void setColors(int cell, int visited, int label, int highlight) {
+        cellPaint.setColor(cell);
+        visitedPaint.setColor(visited);
+        labelPaint.setColor(label);
+        highlightPaint.setColor(highlight);
+        invalidate();
+    }
+
+    /**
+     * Sets the colours of the planned route and redraws it
+     *
+     * @param route - The colour of the route lines
+     * @param stop  - The colour of the stop markers
+     */
+    public void setRouteColors(int route, int stop) {
+        forwardPaint.setColor(route);
+        reversePaint.setColor(route);
+        stopPaint.setColor(stop);
+        invalidate();
+    }
+
+    /**
+     * Draws a planned route over the arena, replacing the previous one. The
+     * paths are built here and kept until the next route, call it again when
+     * more of the route has arrived.
+     *
+     * @param route - The route to draw
+     */
+    public void setRoute(PlannedRoute route) {
+        forwardPath.rewind();
+        reversePath.rewind();
+        stopsPath.rewind();
+        float[] moves = route.getMoves();
+        // consecutive moves share their ends, so each path is a few long polylines
+        float forwardX = Float.NaN, forwardY = Float.NaN, reverseX = Float.NaN, reverseY = Float.NaN;
+        for (int i = 0; i < route.getMoveCount(); i++) {
+            int j = 6 * i;
+            boolean reverse = route.isReverse(i);
+            Path path = reverse ? reversePath : forwardPath;
+            float startX = toArenaX(moves[j]), startY = toArenaY(moves[j + 1]);
+            float endX = toArenaX(moves[j + 4]), endY = toArenaY(moves[j + 5]);
+            if (reverse ? startX != reverseX || startY != reverseY : startX != forwardX || startY != forwardY)
+                path.moveTo(startX, startY);
+            if (route.isTurn(i))
+                path.quadTo(toArenaX(moves[j + 2]), toArenaY(moves[j + 3]), endX, endY);
+            else
+                path.lineTo(endX, endY);
+            if (reverse) {
+                reverseX = endX;
+                reverseY = endY;
+            } else {
+                forwardX = endX;
+                forwardY = endY;
+            }
+        }
+        for (int i = 0; i < route.getStopCount(); i++)
+            stopsPath.addCircle(toArenaX(route.getStopX(i)), toArenaY(route.getStopY(i)), STOP_RADIUS,
+                    Path.Direction.CW);
+
+        routeBounds.setEmpty();
+        for (Path path : new Path[] { forwardPath, reversePath, stopsPath }) {
+            if (path.isEmpty())
+                continue;
+            path.computeBounds(pathBounds, false);
+            routeBounds.union(pathBounds);
+        }
+        // the strokes reach half their width outside the paths
+        routeBounds.inset(-ROUTE_WIDTH, -ROUTE_WIDTH);
+        invalidate();
+    }
+
+    /**
+     * Removes the planned route
+     */
+    public void clearRoute() {
+        forwardPath.rewind();
+        reversePath.rewind();
+        stopsPath.rewind();
+        routeBounds.setEmpty();
+        invalidate();
+    }
+
+    /**
+     * @param x - An x in cm from the arena's left edge
+     * @return the x in arena pixels at a zoom of 1
+     */
+    private static float toArenaX(float x) {
+        return x * PIXELS_PER_CM;
+    }
+
+    /**
+     * @param y - A y in cm up from the arena's bottom edge
+     * @return the y in arena pixels at a zoom of 1, downwards from the top
+     */
+    private static float toArenaY(float y) {
+        return ARENA_SIZE - y * PIXELS_PER_CM;
+    }
+
+    /**
+     * Draws the arena at another resolution, keeping the visited cells and
+     * showing the whole arena again
+     *
+     * @param resolution - The cells per side, a multiple of 20
+     */
+    public void setResolution(int resolution) {
+        if (resolution <= 0 || resolution % CELLS != 0)
+            throw new IllegalArgumentException("Resolution must be a multiple of " + CELLS + ": " + resolution);
+        if (resolution == this.resolution)
+            return;
+        // visits always cover whole 10 cm cells, so sampling one corner of each keeps them
+        boolean[] resampled = new boolean[resolution * resolution];
+        for (int row = 0; row < resolution; row++)
+            for (int column = 0; column < resolution; column++)
+                resampled[row * resolution + column] = visited[row * this.resolution / resolution * this.resolution
+                        + column * this.resolution / resolution];
+        visited = resampled;
+        this.resolution = resolution;
+        viewport.setMaxScale(maxScale(resolution));
+        onViewportChanged();
+    }
+
+    /**
+     * @return the cells per side drawn
+     */
+    public int getResolution() {
+        return resolution;
+    }
+
+    /**
+     * @param listener - Called whenever the arena is zoomed or panned, null for
+     *                 none
+     */
+    public void setOnViewportChangeListener(OnViewportChangeListener listener) {
+        viewportListener = listener;
+    }
+
+    /**
+     * Shows the whole arena
+     */
+    public void resetViewport() {
+        viewport.reset();
+        onViewportChanged();
+    }
+
+    private void onViewportChanged() {
+        invalidate();
+        if (viewportListener != null)
+            viewportListener.onViewportChanged(this);
+    }
+
+    /**
+     * Marks a cell as visited by the robot
+     *
+     * @param row    - The row of the cell
+     * @param column - The column of the cell
+     */
+    public void setVisited(int row, int column) {
+        int split = resolution / CELLS, first = row * split * resolution + (column - 1) * split;
+        if (visited[first])
+            return;
+        for (int i = 0; i < split; i++)
+            for (int j = 0; j < split; j++)
+                visited[first + i * resolution + j] = true;
+        invalidateCell(row, column);
+    }
+
+    /**
+     * Highlights the axis labels of the cell being dragged over, replacing the
+     * previous highlight
+     *
+     * @param row    - The row of the cell, -1 to remove the highlight
+     * @param column - The column of the cell
+     */
+    public void setHighlight(int row, int column) {
+        if (row == highlightRow && column == highlightColumn)
+            return;
+        if (highlightRow != -1) {
+            invalidateCell(highlightRow, 0);
+            invalidateCell(SIZE - 1, highlightColumn);
+        }
+        highlightRow = row;
+        highlightColumn = column;
+        if (row != -1) {
+            invalidateCell(row, 0);
+            invalidateCell(SIZE - 1, column);
+        }
+    }
+
+    /**
+     * @param column - The column of a cell
+     * @return the x of the cell's left edge in this view, as zoomed and panned
+     */
+    public int getCellLeft(int column) {
+        return column == 0 ? 1 : Math.round(AXIS_WIDTH + viewport.toWindowX((column - 1) * PITCH + 1));
+    }
+
+    /**
+     * @param row - The row of a cell
+     * @return the y of the cell's top edge in this view, as zoomed and panned
+     */
+    public int getCellTop(int row) {
+        return row == SIZE - 1 ? ARENA_SIZE : Math.round(viewport.toWindowY(row * PITCH + 1));
+    }
+
+    /**
+     * @return the distance between the arena cells in this view
+     */
+    public float getCellPitch() {
+        return PITCH * viewport.getScale();
+    }
+
+    /**
+     * @return the x of the arena's left edge in this view, outside the view when
+     *         panned
+     */
+    public float getArenaLeft() {
+        return AXIS_WIDTH + viewport.getPanX();
+    }
+
+    /**
+     * @return the y of the arena's top edge in this view, outside the view when
+     *         panned
+     */
+    public float getArenaTop() {
+        return viewport.getPanY();
+    }
+
+    /**
+     * @return the zoom of the arena, 1 when it is all shown
+     */
+    public float getScale() {
+        return viewport.getScale();
+    }
+
+    /**
+     * @param row    - The row of an arena cell
+     * @param column - The column of an arena cell
+     * @return whether any of the cell is in the viewport
+     */
+    public boolean isCellVisible(int row, int column) {
+        float left = getCellLeft(column), top = getCellTop(row), size = CELL_SIZE * viewport.getScale();
+        return left + size > AXIS_WIDTH && left < AXIS_WIDTH + ARENA_SIZE && top + size > 0 && top < ARENA_SIZE;
+    }
+
+    /**
+     * @param row - A row of the arena, like one hit by a drag over the labels
+     * @return the row, or the nearest one in the viewport
+     */
+    public int clampToVisibleRow(int row) {
+        return viewport.clampToWindow(row, viewport.getPanY(), CELLS);
+    }
+
+    /**
+     * @param column - A column of the arena, like one hit by a drag over the
+     *               labels
+     * @return the column, or the nearest one in the viewport
+     */
+    public int clampToVisibleColumn(int column) {
+        // column 0 is the y axis
+        return 1 + viewport.clampToWindow(column - 1, viewport.getPanX(), CELLS);
+    }
+
+    /**
+     * Redraws only the area of a cell. Hardware rendering may redraw more, but
+     * the software renderer and onDraw's culling stay within it.
+     */
+    @SuppressWarnings("deprecation")
+    private void invalidateCell(int row, int column) {
+        int left = getCellLeft(column), top = getCellTop(row);
+        int width = column == 0 ? CELL_SIZE : (int) Math.ceil(CELL_SIZE * viewport.getScale());
+        int height = row == SIZE - 1 ? CELL_SIZE : (int) Math.ceil(CELL_SIZE * viewport.getScale());
+        invalidate(left, top, left + width, top + height);
+    }
+
+    @Override
+    public boolean onTouchEvent(MotionEvent event) {
+        scaleDetector.onTouchEvent(event);
+        // a single finger is left to the long click
+        return super.onTouchEvent(event) || event.getPointerCount() > 1 || scaleDetector.isInProgress();
+    }
+
+    @Override
+    protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+        setMeasuredDimension(resolveSize(AXIS_WIDTH + ARENA_SIZE, widthMeasureSpec),
+                resolveSize(ARENA_SIZE + LABEL_HEIGHT, heightMeasureSpec));
+    }
+
+    @Override
+    protected void onDraw(Canvas canvas) {
+        if (!canvas.getClipBounds(clip))
+            clip.set(0, 0, getWidth(), getHeight());
+        float scale = viewport.getScale(), panX = viewport.getPanX(), panY = viewport.getPanY();
+        if (clip.right > AXIS_WIDTH && clip.top < ARENA_SIZE) {
+            drawCells(canvas, scale, panX, panY);
+            drawRoute(canvas, scale, panX, panY);
+        }
+
+        // the labels of the 10 cm cells in the viewport, along the edges of the arena
+        float ascent = labelPaint.ascent(), descent = labelPaint.descent(), size = CELL_SIZE * scale;
+        if (clip.left < AXIS_WIDTH && clip.top < ARENA_SIZE) {
+            canvas.save();
+            canvas.clipRect(0, 0, AXIS_WIDTH, ARENA_SIZE);
+            int last = viewport.cellAt(Math.min(clip.bottom, ARENA_SIZE), panY, CELLS);
+            for (int row = viewport.cellAt(Math.max(clip.top, 0), panY, CELLS); row <= last; row++) {
+                // y axis, right aligned and centred vertically
+                float top = getCellTop(row);
+                if (row == highlightRow)
+                    canvas.drawRect(1, top, 1 + CELL_SIZE, top + size, highlightPaint);
+                String label = LABELS[CELLS - 1 - row];
+                canvas.drawText(label, 1 + CELL_SIZE - labelPaint.measureText(label),
+                        top + (size - ascent - descent) / 2, labelPaint);
+            }
+            canvas.restore();
+        }
+        if (clip.bottom > ARENA_SIZE && clip.right > AXIS_WIDTH) {
+            canvas.save();
+            canvas.clipRect(AXIS_WIDTH, ARENA_SIZE, AXIS_WIDTH + ARENA_SIZE, ARENA_SIZE + LABEL_HEIGHT);
+            int last = viewport.cellAt(Math.min(clip.right, AXIS_WIDTH + ARENA_SIZE) - AXIS_WIDTH, panX, CELLS);
+            for (int i = viewport.cellAt(Math.max(clip.left - AXIS_WIDTH, 0), panX, CELLS); i <= last; i++) {
+                // x axis, centred at the top
+                float left = getCellLeft(i + 1);
+                if (i + 1 == highlightColumn && highlightRow != -1)
+                    canvas.drawRect(left, ARENA_SIZE, left + size, ARENA_SIZE + CELL_SIZE, highlightPaint);
+                String label = LABELS[i];
+                canvas.drawText(label, left + (size - labelPaint.measureText(label)) / 2, ARENA_SIZE - ascent,
+                        labelPaint);
+            }
+            canvas.restore();
+        }
+    }
+
+    /**
+     * Draws the planned route, unless none of it is in the clip
+     */
+    private void drawRoute(Canvas canvas, float scale, float panX, float panY) {
+        if (routeBounds.isEmpty())
+            return;
+        float arenaLeft = AXIS_WIDTH + panX;
+        if (arenaLeft + routeBounds.right * scale < clip.left || arenaLeft + routeBounds.left * scale > clip.right
+                || panY + routeBounds.bottom * scale < clip.top || panY + routeBounds.top * scale > clip.bottom)
+            return;
+        canvas.save();
+        canvas.clipRect(AXIS_WIDTH, 0, AXIS_WIDTH + ARENA_SIZE, ARENA_SIZE);
+        canvas.translate(arenaLeft, panY);
+        canvas.scale(scale, scale);
+        canvas.drawPath(forwardPath, forwardPaint);
+        canvas.drawPath(reversePath, reversePaint);
+        canvas.drawPath(stopsPath, stopPaint);
+        canvas.restore();
+    }
+
+    /**
+     * Draws the arena cells in the viewport and the clip
+     */
+    private void drawCells(Canvas canvas, float scale, float panX, float panY) {
+        float pitch = (float) ARENA_SIZE / resolution * scale;
+        float margin = pitch / PITCH; // 1px for a 10 cm cell at a zoom of 1
+        float arenaLeft = AXIS_WIDTH + panX;
+        int firstRow = viewport.cellAt(Math.max(clip.top, 0), panY, resolution);
+        int lastRow = viewport.cellAt(Math.min(clip.bottom, ARENA_SIZE), panY, resolution);
+        int firstColumn = viewport.cellAt(Math.max(clip.left - AXIS_WIDTH, 0), panX, resolution);
+        int lastColumn = viewport.cellAt(Math.min(clip.right, AXIS_WIDTH + ARENA_SIZE) - AXIS_WIDTH, panX,
+                resolution);
+        canvas.save();
+        canvas.clipRect(AXIS_WIDTH, 0, AXIS_WIDTH + ARENA_SIZE, ARENA_SIZE);
+        if (margin < MIN_MARGIN) {
+            // the margins would not show, so fill the viewport and draw runs of visited cells
+            canvas.drawRect(arenaLeft + firstColumn * pitch, panY + firstRow * pitch,
+                    arenaLeft + (lastColumn + 1) * pitch, panY + (lastRow + 1) * pitch, cellPaint);
+            for (int row = firstRow; row <= lastRow; row++) {
+                int offset = row * resolution;
+                for (int column = firstColumn; column <= lastColumn; column++) {
+                    if (!visited[offset + column])
+                        continue;
+                    int end = column;
+                    while (end < lastColumn && visited[offset + end + 1])
+                        end++;
+                    canvas.drawRect(arenaLeft + column * pitch, panY + row * pitch, arenaLeft + (end + 1) * pitch,
+                            panY + (row + 1) * pitch, visitedPaint);
+                    column = end;
+                }
+            }
+        } else {
+            for (int row = firstRow; row <= lastRow; row++) {
+                float top = panY + row * pitch;
+                for (int column = firstColumn; column <= lastColumn; column++) {
+                    float left = arenaLeft + column * pitch;
+                    canvas.drawRect(left + margin, top + margin, left + pitch - margin, top + pitch - margin,
+                            visited[row * resolution + column] ? visitedPaint : cellPaint);
+                }
+            }
+        }
+        canvas.restore();
+    }
+}
@@ -68,6 +68,15 @@ public class FullscreenMaterialDialog {
         alertDialog.getWindow().clearFlags(WindowManager.LayoutParams.FLAG_NOT_FOCUSABLE);
     }
 
+    /**
+     * Changes the message of the dialog while it is showing.
+     *
+     * @param message The new message.
+     */
+    public void setMessage(CharSequence message) {
+        alertDialog.setMessage(message);
+    }
+
     /**
      * Dismisses the dialog.
      */
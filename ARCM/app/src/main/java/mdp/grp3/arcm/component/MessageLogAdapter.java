@@ -0,0 +1,101 @@
+package mdp.grp3.arcm.component;
+
+import android.view.LayoutInflater;
+import android.view.ViewGroup;
+import android.widget.TextView;
+
+import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.RecyclerView;
+
+import mdp.grp3.arcm.databinding.ItemMessageBinding;
+import mdp.grp3.arcm.util.MessageLog;
+
+/**
+ * Shows a {@link MessageLog} in a RecyclerView, one row per line. The newest
+ * line is drawn in the theme colour and the older ones are greyed out, so
+ * adding a line only rebinds the row that stopped being the newest.
+ */
+public class MessageLogAdapter extends RecyclerView.Adapter<MessageLogAdapter.LineHolder> {
+
+    /**
+     * Holds the TextView of a row
+     */
+    static final class LineHolder extends RecyclerView.ViewHolder {
+        final TextView text;
+
+        LineHolder(TextView text) {
+            super(text);
+            this.text = text;
+        }
+    }
+
+    private final MessageLog log;
+    private int latestColor, olderColor;
+
+    /**
+     * Constructor for MessageLogAdapter.
+     *
+     * @param capacity - The number of lines kept
+     * @param color    - The colour of the newest line
+     */
+    public MessageLogAdapter(int capacity, int color) {
+        log = new MessageLog(capacity);
+        setColorInternal(color);
+    }
+
+    /**
+     * Changes the colour of the lines, for when the theme changes
+     *
+     * @param color - The colour of the newest line
+     */
+    public void setColor(int color) {
+        setColorInternal(color);
+        notifyItemRangeChanged(0, log.size());
+    }
+
+    private void setColorInternal(int color) {
+        latestColor = color;
+        olderColor = 0x90000000 | (color & 0xFFFFFF);
+    }
+
+    /**
+     * Adds a line at the bottom, dropping the oldest line if the log is full
+     *
+     * @param line - The line to add
+     */
+    public void add(String line) {
+        if (log.add(line))
+            notifyItemRemoved(0);
+        int last = log.size() - 1;
+        if (last > 0)
+            notifyItemChanged(last - 1); // greys out the previous line
+        notifyItemInserted(last);
+    }
+
+    /**
+     * Removes all the lines
+     */
+    public void clear() {
+        int size = log.size();
+        log.clear();
+        notifyItemRangeRemoved(0, size);
+    }
+
+    @NonNull
+    @Override
+    public LineHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
+        return new LineHolder(ItemMessageBinding.inflate(LayoutInflater.from(parent.getContext()), parent, false)
+                .getRoot());
+    }
+
+    @Override
+    public void onBindViewHolder(@NonNull LineHolder holder, int position) {
+        holder.text.setText(log.get(position));
+        holder.text.setTextColor(position == log.size() - 1 ? latestColor : olderColor);
+    }
+
+    @Override
+    public int getItemCount() {
+        return log.size();
+    }
+}
@@ -0,0 +1,103 @@
+package mdp.grp3.arcm.component;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.drawable.BitmapDrawable;
+import android.graphics.drawable.ColorDrawable;
+import android.graphics.drawable.Drawable;
+import android.graphics.drawable.LayerDrawable;
+import androidx.core.content.ContextCompat;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import mdp.grp3.arcm.R;
+import mdp.grp3.arcm.constant.Direction;
+import mdp.grp3.arcm.util.ThemeManager;
+
+/**
+ * The backgrounds of the obstacles: a black square with a bar in the theme
+ * colour on the side the image faces. Every combination of direction and size
+ * is drawn once and shared by all obstacles, until the theme changes. Only
+ * used on the UI thread.
+ */
+public final class ObstacleBackgrounds {
+    private static final Map<Long, Bitmap> cache = new HashMap<>(); // keyed by direction and size
+    private static int cachedColor; // the theme colour the cache was drawn with
+
+    private ObstacleBackgrounds() {
+    }
+
+    /**
+     * Looks up the background of an obstacle, drawing it on first use
+     *
+     * @param context   - The context of the obstacle, for the theme
+     * @param direction - The direction the image faces
+     * @param width     - The width of the obstacle
+     * @param height    - The height of the obstacle
+     * @return the background
+     */
+    public static Drawable get(Context context, char direction, int width, int height) {
+        int color = ThemeManager.getColor(context, com.google.android.material.R.attr.colorSecondary);
+        if (color != cachedColor) {
+            clear();
+            cachedColor = color;
+        }
+        long key = (long) direction << 32 | (long) (width & 0xFFFF) << 16 | (height & 0xFFFF);
+        Bitmap bitmap = cache.get(key);
+        if (bitmap == null) {
+            bitmap = render(context, direction, width, height, color);
+            cache.put(key, bitmap);
+        }
+        return new BitmapDrawable(context.getResources(), bitmap);
+    }
+
+    /**
+     * Forgets every background. Done by {@link #get} when the theme colour has
+     * changed, so a new theme needs no explicit flush
+     */
+    public static void clear() {
+        cache.clear();
+        cachedColor = 0;
+    }
+
+    private static Bitmap render(Context context, char direction, int width, int height, int color) {
+        // base layer
+        Drawable bottom = ContextCompat.getDrawable(context, R.drawable.square);
+        // top layer to indicate direction
+        Drawable top = new ColorDrawable(color);
+        LayerDrawable layer = new LayerDrawable(new Drawable[] { bottom, top });
+
+        int topHeight = (int) (5.0f / 34.0f * height);
+        int bottomHeight = height - topHeight;
+
+        // sets the insets of the layers based on the direction
+        Drawable drawable = layer;
+        switch (direction) {
+            case Direction.FORWARD:
+                layer.setLayerInset(0, 0, topHeight, 0, 0);
+                layer.setLayerInset(1, 0, 0, 0, bottomHeight);
+                break;
+            case Direction.BACKWARD:
+                layer.setLayerInset(0, 0, 0, 0, topHeight);
+                layer.setLayerInset(1, 0, bottomHeight, 0, 0);
+                break;
+            case Direction.RIGHT:
+                layer.setLayerInset(0, 0, 0, topHeight, 0);
+                layer.setLayerInset(1, bottomHeight, 0, 0, 0);
+                break;
+            case Direction.LEFT:
+                layer.setLayerInset(0, topHeight, 0, 0, 0);
+                layer.setLayerInset(1, 0, 0, bottomHeight, 0);
+                break;
+            default:
+                drawable = bottom;
+                break;
+        }
+        Bitmap bitmap = Bitmap.createBitmap(Math.max(1, width), Math.max(1, height), Bitmap.Config.ARGB_8888);
+        drawable.setBounds(0, 0, width, height);
+        drawable.draw(new Canvas(bitmap));
+        return bitmap;
+    }
+}
@@ -2,8 +2,6 @@ package mdp.grp3.arcm.component;
 
 import android.annotation.SuppressLint;
 import android.content.Context;
-import android.graphics.drawable.Drawable;
-import android.graphics.drawable.LayerDrawable;
 import android.util.Pair;
 import android.view.Gravity;
 import android.view.LayoutInflater;
@@ -12,11 +10,9 @@ import android.widget.RelativeLayout;
 import android.widget.TextView;
 import androidx.core.content.ContextCompat;
 import com.google.android.material.dialog.MaterialAlertDialogBuilder;
-import java.util.Objects;
 
 import mdp.grp3.arcm.constant.Direction;
 import mdp.grp3.arcm.R;
-import mdp.grp3.arcm.util.ThemeManager;
 
 /**
  * A custom TextView that represents an obstacle on the grid.
@@ -57,54 +53,30 @@ public class ObstacleView extends androidx.appcompat.widget.AppCompatTextView {
      * Updates the background of the obstacle based on its direction.
      */
     public void updateBackground() {
-        // base layer
-        Drawable bottom = ContextCompat.getDrawable(getContext(), R.drawable.square);
+        // not laid out yet right after the size changed
+        int width = getWidth() > 0 ? getWidth() : getLayoutParams().width;
+        int height = getHeight() > 0 ? getHeight() : getLayoutParams().height;
+        setBackground(ObstacleBackgrounds.get(getContext(), direction, width, height));
 
-        // top layer to indicate direction. color changes based on theme
-        Drawable top = ContextCompat.getDrawable(getContext(), R.color.black);
-        Objects.requireNonNull(top)
-                .setTint(ThemeManager.getColor(getContext(), com.google.android.material.R.attr.colorSecondary));
-
-        LayerDrawable layer = new LayerDrawable(new Drawable[] { bottom, top });
-
-        int topHeight = (int) (5.0f / 34.0f * getHeight());
-        int bottomHeight = getHeight() - topHeight;
-
-        // gravity for the text
-        int gravity = Gravity.CENTER;
-
-        // sets the insets of the layers based on the direction
+        // always show text in the center if discovered
+        if (!discovered)
+            return;
         switch (direction) {
-            case Direction.NONE:
-                setBackground(bottom);
-                return;
             case Direction.FORWARD:
-                layer.setLayerInset(0, 0, topHeight, 0, 0);
-                layer.setLayerInset(1, 0, 0, 0, bottomHeight);
-                gravity = Gravity.BOTTOM | Gravity.CENTER_HORIZONTAL;
+                setGravity(Gravity.BOTTOM | Gravity.CENTER_HORIZONTAL);
                 break;
             case Direction.BACKWARD:
-                layer.setLayerInset(0, 0, 0, 0, topHeight);
-                layer.setLayerInset(1, 0, bottomHeight, 0, 0);
-                gravity = Gravity.TOP | Gravity.CENTER_HORIZONTAL;
+                setGravity(Gravity.TOP | Gravity.CENTER_HORIZONTAL);
                 break;
             case Direction.RIGHT:
-                layer.setLayerInset(0, 0, 0, topHeight, 0);
-                layer.setLayerInset(1, bottomHeight, 0, 0, 0);
-                gravity = Gravity.START | Gravity.CENTER_VERTICAL;
+                setGravity(Gravity.START | Gravity.CENTER_VERTICAL);
                 break;
             case Direction.LEFT:
-                layer.setLayerInset(0, topHeight, 0, 0, 0);
-                layer.setLayerInset(1, 0, 0, bottomHeight, 0);
-                gravity = Gravity.END | Gravity.CENTER_VERTICAL;
+                setGravity(Gravity.END | Gravity.CENTER_VERTICAL);
+                break;
+            default:
                 break;
         }
-
-        // always show text in the center if discovered
-        if (discovered)
-            setGravity(gravity);
-
-        setBackground(layer);
     }
 
     /**
@@ -150,6 +122,10 @@ public class ObstacleView extends androidx.appcompat.widget.AppCompatTextView {
     public void resetPosition() {
         RelativeLayout.LayoutParams params = new RelativeLayout.LayoutParams(obstacleSize, obstacleSize);
         setLayoutParams(params);
+        // it may have been zoomed or hidden with the grid
+        setScaleX(1);
+        setScaleY(1);
+        setVisibility(VISIBLE);
         setX(cardX - 5f);
         setY(cardY - 6f);
         setElevation(15 + numObstacles - num);
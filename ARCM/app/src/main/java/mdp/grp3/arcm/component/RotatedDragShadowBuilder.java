@@ -3,17 +3,26 @@ package mdp.grp3.arcm.component;
 import android.graphics.Bitmap;
 import android.graphics.Canvas;
 import android.graphics.Color;
-import android.graphics.ColorFilter;
 import android.graphics.LightingColorFilter;
 import android.graphics.Paint;
 import android.view.View;
 
 /**
- * A custom DragShadowBuilder that allows the shadow to be rotated.
+ * A custom DragShadowBuilder that allows the shadow to be rotated. The view is
+ * drawn into a bitmap once per drag, and every later shadow, safe or in danger,
+ * is drawn from it.
  */
 public class RotatedDragShadowBuilder extends View.DragShadowBuilder {
+    // paints the view black to indicate danger
+    private static final Paint dangerPaint = new Paint();
+
+    static {
+        dangerPaint.setColorFilter(new LightingColorFilter(Color.BLACK, Color.BLACK));
+    }
+
     private final View view; // The view to create the shadow for
     private boolean danger; // Whether the object is being dragged over a danger zone
+    private Bitmap snapshot; // The view as drawn when the drag started
 
     /**
      * Constructor for RotatedDragShadowBuilder.
@@ -42,24 +51,16 @@ public class RotatedDragShadowBuilder extends View.DragShadowBuilder {
      */
     @Override
     public void onDrawShadow(Canvas canvas) {
-        canvas.save();
-        canvas.rotate(view.getRotation(), getView().getWidth() / 2f, getView().getHeight() / 2f);
-        if (!danger) {
-            // if safe then draw the view
-            getView().draw(canvas);
-        } else {
-            // draw a dark shadow to indicate danger
-            Paint paint = new Paint();
-            paint.setAlpha(255);
-            ColorFilter colorFilter = new LightingColorFilter(Color.BLACK, Color.BLACK);
-            paint.setColorFilter(colorFilter);
-
-            Bitmap bitmap = Bitmap.createBitmap(getView().getWidth(), getView().getHeight(), Bitmap.Config.ARGB_8888);
-            Canvas shadowCanvas = new Canvas(bitmap);
-            getView().draw(shadowCanvas);
-
-            canvas.drawBitmap(bitmap, 0, 0, paint);
+        int width = getView().getWidth(), height = getView().getHeight();
+        if (snapshot == null || snapshot.getWidth() != width || snapshot.getHeight() != height) {
+            // the rotation is applied when drawing, so only a new size needs a new snapshot
+            snapshot = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+            getView().draw(new Canvas(snapshot));
         }
+        canvas.save();
+        canvas.rotate(view.getRotation(), width / 2f, height / 2f);
+        // if safe then draw the view, otherwise a dark shadow to indicate danger
+        canvas.drawBitmap(snapshot, 0, 0, danger ? dangerPaint : null);
         canvas.restore();
     }
 }
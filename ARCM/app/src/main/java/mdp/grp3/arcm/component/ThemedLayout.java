@@ -0,0 +1,141 @@
+package mdp.grp3.arcm.component;
+
+import android.content.Context;
+import android.content.res.ColorStateList;
+import android.content.res.Resources;
+import android.content.res.XmlResourceParser;
+import android.view.View;
+import android.widget.TextView;
+
+import com.codertainment.dpadview.DPadView;
+import com.google.android.material.button.MaterialButton;
+import com.google.android.material.card.MaterialCardView;
+
+import org.xmlpull.v1.XmlPullParser;
+import org.xmlpull.v1.XmlPullParserException;
+
+import java.io.IOException;
+import java.util.ArrayList;
+
+import mdp.grp3.arcm.util.ThemeManager;
+
+/**
+ * The colours of a layout that come from the theme, read from the layout
+ * itself: every view with an id and every colour attribute set to a theme
+ * attribute, like {@code android:backgroundTint="?colorSecondary"}. Applying
+ * them colours the views already inflated in a new theme, so the layout and
+ * its state stay as they are.
+ */
+public final class ThemedLayout {
+    private static final String ANDROID_NAMESPACE = "http://schemas.android.com/apk/res/android";
+
+    /**
+     * A colour attribute of a view, set to a theme attribute
+     */
+    private static final class Entry {
+        final int viewId;
+        final String name; // the attribute, without its namespace
+        final int themeAttr;
+
+        Entry(int viewId, String name, int themeAttr) {
+            this.viewId = viewId;
+            this.name = name;
+            this.themeAttr = themeAttr;
+        }
+    }
+
+    private final ArrayList<Entry> entries = new ArrayList<>();
+
+    /**
+     * Reads the theme attributes of a layout
+     *
+     * @param resources - The resources holding the layout
+     * @param layout    - The layout resource
+     */
+    public ThemedLayout(Resources resources, int layout) {
+        XmlResourceParser parser = resources.getLayout(layout);
+        try {
+            int event;
+            while ((event = parser.next()) != XmlPullParser.END_DOCUMENT) {
+                if (event != XmlPullParser.START_TAG)
+                    continue;
+                int id = parser.getAttributeResourceValue(ANDROID_NAMESPACE, "id", View.NO_ID);
+                if (id == View.NO_ID)
+                    continue; // cannot be found again
+                for (int i = 0; i < parser.getAttributeCount(); i++) {
+                    // a theme attribute is compiled to ?<resource id>
+                    String value = parser.getAttributeValue(i);
+                    if (value != null && value.startsWith("?") && value.length() > 1)
+                        entries.add(new Entry(id, parser.getAttributeName(i), Integer.parseInt(value.substring(1))));
+                }
+            }
+        } catch (XmlPullParserException | IOException | NumberFormatException e) {
+            throw new RuntimeException(e);
+        } finally {
+            parser.close();
+        }
+    }
+
+    /**
+     * @return the number of theme colours found in the layout
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * Colours the views of the layout in the theme of a context. Attributes that
+     * are not colours of a known view are left alone.
+     *
+     * @param root    - The inflated layout
+     * @param context - The context with the theme to apply
+     */
+    public void apply(View root, Context context) {
+        for (Entry entry : entries) {
+            View view = root.findViewById(entry.viewId);
+            if (view == null)
+                continue;
+            int color = ThemeManager.getColor(context, entry.themeAttr);
+            switch (entry.name) {
+                case "background":
+                    view.setBackgroundColor(color);
+                    break;
+                case "backgroundTint":
+                    view.setBackgroundTintList(ColorStateList.valueOf(color));
+                    break;
+                case "outlineAmbientShadowColor":
+                    view.setOutlineAmbientShadowColor(color);
+                    break;
+                case "outlineSpotShadowColor":
+                    view.setOutlineSpotShadowColor(color);
+                    break;
+                case "textColor":
+                    if (view instanceof TextView)
+                        ((TextView) view).setTextColor(color);
+                    break;
+                case "strokeColor":
+                    if (view instanceof MaterialButton)
+                        ((MaterialButton) view).setStrokeColor(ColorStateList.valueOf(color));
+                    else if (view instanceof MaterialCardView)
+                        ((MaterialCardView) view).setStrokeColor(color);
+                    break;
+                case "cardBackgroundColor":
+                    if (view instanceof MaterialCardView)
+                        ((MaterialCardView) view).setCardBackgroundColor(color);
+                    break;
+                case "normalColor":
+                    if (view instanceof DPadView)
+                        ((DPadView) view).setNormalColor(color);
+                    break;
+                case "centerCircleNormalColor":
+                    if (view instanceof DPadView)
+                        ((DPadView) view).setCenterCircleNormalColor(color);
+                    break;
+                case "pressedColor":
+                    if (view instanceof DPadView)
+                        ((DPadView) view).setPressedColor(color);
+                    break;
+            }
+        }
+    }
+}
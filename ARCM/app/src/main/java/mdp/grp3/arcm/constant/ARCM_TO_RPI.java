@@ -0,0 +1,13 @@
+package mdp.grp3.arcm.constant;
+
+/**
+ * A class that contains the constants for the messages sent from the ARCM to
+ * the RPi
+ */
+public final class ARCM_TO_RPI {
+    // every message starts with its type, so the RPi can find the messages in the
+    // stream even when several arrive in one read or one is split across reads
+    public final static char ARENA = 'A'; // length prefixed, starts the Week 8 task
+    public final static char GO = 'G'; // "GO" starts the Week 9 task
+    public final static char PING = 'P'; // followed by a sequence number and 2 unused bytes, answered with a PONG
+}
@@ -9,7 +9,27 @@ import java.util.Map;
  */
 public final class RPI_TO_ARCM {
     public final static char TARGET_DISCOVERED = 1;
+    public final static char FINISHED_WEEK9 = 2;
     public final static char STATUS_UPDATE = 3;
+    public final static char FINISHED_WEEK8 = 4;
+    public final static char PONG = 5; // answer to a PING, echoes its sequence number
+    public final static char PLANNED_PATH = 6; // length prefixed, a part of the path from the algorithm
+    public final static int FRAME_LENGTH = 4; // every other message is the type followed by 3 arguments
+
+    /**
+     * The moves of a planned path, as the algorithm numbers them. Each is followed
+     * by a value: the distance in cm for the straight moves, 90 for the turns and
+     * the index of the obstacle for a capture.
+     */
+    public static final class PathCommands {
+        public static final char FORWARD = 1;
+        public static final char FORWARD_RIGHT = 2;
+        public static final char FORWARD_LEFT = 3;
+        public static final char BACKWARD = 4;
+        public static final char BACKWARD_RIGHT = 5;
+        public static final char BACKWARD_LEFT = 6;
+        public static final char CAPTURE = 7; // stop and take a picture of the obstacle
+    }
 
     public static final class StatusMessages {
         public static final char STARTING_WEEK8 = 1;
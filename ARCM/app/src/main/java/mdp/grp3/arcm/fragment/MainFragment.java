@@ -3,26 +3,24 @@ package mdp.grp3.arcm.fragment;
 import android.bluetooth.BluetoothAdapter;
 import android.bluetooth.BluetoothDevice;
 import android.content.ClipData;
+import android.content.Context;
 import android.content.res.Configuration;
 import android.graphics.Color;
 import android.graphics.Rect;
-import android.graphics.Typeface;
+import android.graphics.drawable.ColorDrawable;
 import android.os.Bundle;
 
 import androidx.annotation.NonNull;
 import androidx.annotation.RequiresPermission;
-import androidx.core.widget.NestedScrollView;
 import androidx.fragment.app.Fragment;
+import androidx.recyclerview.widget.LinearLayoutManager;
 
 import android.os.Handler;
 import android.os.Looper;
 import android.os.Message;
-import android.text.Spannable;
-import android.text.SpannableStringBuilder;
-import android.text.style.ForegroundColorSpan;
 import android.util.Pair;
+import android.view.Choreographer;
 import android.view.DragEvent;
-import android.view.Gravity;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
@@ -31,7 +29,7 @@ import android.view.animation.AlphaAnimation;
 import android.view.animation.Animation;
 import android.widget.ArrayAdapter;
 import android.widget.Button;
-import android.widget.GridLayout;
+import android.widget.EditText;
 import android.widget.LinearLayout;
 import android.widget.ProgressBar;
 import android.widget.RelativeLayout;
@@ -41,21 +39,50 @@ import com.codertainment.dpadview.DPadView;
 import com.google.android.material.dialog.MaterialAlertDialogBuilder;
 import com.google.android.material.snackbar.Snackbar;
 
-import java.nio.ByteBuffer;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Locale;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
 
 import mdp.grp3.arcm.constant.Task;
 import mdp.grp3.arcm.constant.Direction;
 import mdp.grp3.arcm.constant.RPI_TO_ARCM;
 import mdp.grp3.arcm.util.BluetoothConnection;
+import mdp.grp3.arcm.util.CellTracker;
+import mdp.grp3.arcm.util.EventRing;
+import mdp.grp3.arcm.util.Histogram;
+import mdp.grp3.arcm.component.ArenaView;
 import mdp.grp3.arcm.component.FullscreenMaterialDialog;
+import mdp.grp3.arcm.component.MessageLogAdapter;
 import mdp.grp3.arcm.util.NavHelper;
+import mdp.grp3.arcm.util.RunAnalytics;
+import mdp.grp3.arcm.util.RunHistory;
+import mdp.grp3.arcm.util.SessionRecorder;
+import mdp.grp3.arcm.util.Stopwatch;
 import mdp.grp3.arcm.component.ObstacleView;
 import mdp.grp3.arcm.R;
 import mdp.grp3.arcm.component.RotatedDragShadowBuilder;
+import mdp.grp3.arcm.component.ThemedLayout;
 import mdp.grp3.arcm.databinding.FragmentMainBinding;
+import mdp.grp3.arcm.model.ArenaModel;
+import mdp.grp3.arcm.model.PlannedRoute;
+import mdp.grp3.arcm.protocol.Arena;
+import mdp.grp3.arcm.protocol.Finished;
+import mdp.grp3.arcm.protocol.Go;
+import mdp.grp3.arcm.protocol.Packet;
+import mdp.grp3.arcm.protocol.PacketCodec;
+import mdp.grp3.arcm.protocol.PlannedPath;
+import mdp.grp3.arcm.protocol.StatusUpdate;
+import mdp.grp3.arcm.protocol.TargetDiscovered;
+import mdp.grp3.arcm.transport.ReplayScript;
+import mdp.grp3.arcm.transport.ReplayTransport;
+import mdp.grp3.arcm.transport.TcpTransport;
 import mdp.grp3.arcm.util.ThemeManager;
 
 /**
@@ -64,56 +91,64 @@ import mdp.grp3.arcm.util.ThemeManager;
  */
 public class MainFragment extends Fragment {
 
-    // these are internally used for drag and drop
-    enum Cell {
-        EMPTY,
-        OBSTACLE,
-        CAR
-    }
-
     private static final String obstacleLabel = "obstacle";
     private static final String carLabel = "robotCar";
     private static final int cellSize = 34;
+    private static final int messageLogCapacity = 500; // lines kept in the message box
+    private static final String runHistoryFile = "runs.bin"; // in the app's private files
+    private static final int maxSessionJournals = 50; // older journals are deleted
 
     private FragmentMainBinding binding;
+    private final PacketCodec codec = PacketCodec.forArcm(); // only used on the UI thread
+    private final Arena arena = new Arena();
+    private final Go go = new Go();
+    private ReplayTransport replayTransport; // the replay in progress, if any
     private BluetoothConnection bluetoothConnection;
     private FullscreenMaterialDialog reconnectionDialog;
     private boolean obstacleDrag;
     private Rect gridRect;
-    private Cell[][] grid;
-    private Pair<Integer, Integer> robotPos;
-    private SpannableStringBuilder textBuilder;
+    private final ArenaModel arenaModel = new ArenaModel(); // what occupies the grid
+    private final PlannedRoute plannedRoute = new PlannedRoute(); // the Week 8 path, drawn over the grid
+    private int nextPathPart; // the part of the planned path expected next
+    private MessageLogAdapter messageLogAdapter;
     private RotatedDragShadowBuilder shadowBuilder;
+    private final CellTracker dragCell = new CellTracker(); // the cell under the dragged view
+    private View dragView; // the view being dragged, null when not dragging
+    private boolean carDrag; // whether the robot is being dragged, otherwise an obstacle
+    private float dragX, dragY; // the latest drag location, applied on the next frame
+    private boolean dragFramePosted;
+    private boolean dragInGrid, dragDanger; // what the drag indicators show
+    private int cardColor, cardHighlightColor; // the obstacles card without and with the trash
 
     private TextView timerTextView;
     private Button timerButton;
-    private long startTime = 0;
-    private boolean timerRunning = false;
+    private char timerTask; // the task of the timer in use
+    private final Stopwatch stopwatch = new Stopwatch();
+    private final char[] timerText = new char[Stopwatch.MAX_LENGTH]; // reused for every frame
+    private final RunAnalytics runAnalytics = new RunAnalytics();
+    private RunHistory runHistory;
     private Handler timeHandler;
-
-    private int axisRow = -1;
-    private int axisColumn = -1;
+    private ThemedLayout themedLayout; // the theme colours of fragment_main.xml, read on first use
+    // reads and exports session journals, which can be many MB, off the UI thread
+    private static final Executor sessionExecutor = Executors.newSingleThreadExecutor();
 
     /**
      * Updates the timer for a task.
      */
     private void updateTimer() {
-        long timeInMilliseconds = System.currentTimeMillis() - startTime;
-        int seconds = (int) (timeInMilliseconds / 1000);
-        int minutes = seconds / 60;
-        int milliseconds = (int) (timeInMilliseconds % 1000);
-        seconds = seconds % 60;
-        timerTextView.setText(String.format(Locale.ENGLISH, "%02d:%02d:%03d", minutes, seconds, milliseconds));
+        timerTextView.setText(timerText, 0, stopwatch.format(timerText));
     }
 
     /**
      * Resets the timer for a task.
      */
     private void stopTimer() {
-        if (startTime == 0)
-            return; // start time = 0 means the timer didn't start, so no need to stop
-        timerRunning = false;
-        timeHandler.removeCallbacks(stopWatch);
+        if (!stopwatch.isRunning())
+            return;
+        stopwatch.stop();
+        bluetoothConnection.recordEvent(SessionRecorder.TIMER_STOPPED, (byte) timerTask);
+        Choreographer.getInstance().removeFrameCallback(stopWatch);
+        updateTimer(); // shows the exact final time
         timerButton.setText(R.string.reset_timer);
         // blinking animation
         Animation anim = new AlphaAnimation(1.0f, 0.0f);
@@ -125,16 +160,127 @@ public class MainFragment extends Fragment {
     }
 
     /**
-     * The stopwatch that updates the timer every millisecond.
+     * Updates the timer once per display frame while it is running.
      */
-    private final Runnable stopWatch = new Runnable() {
+    private final Choreographer.FrameCallback stopWatch = new Choreographer.FrameCallback() {
         @Override
-        public void run() {
+        public void doFrame(long frameTimeNanos) {
             updateTimer();
-            timeHandler.postDelayed(this, 1);
+            Choreographer.getInstance().postFrameCallback(this);
+        }
+    };
+
+    /**
+     * Applies the latest drag location once per display frame, however many
+     * locations arrived since the last one.
+     */
+    private final Choreographer.FrameCallback dragFrame = frameTimeNanos -> {
+        dragFramePosted = false;
+        if (binding != null && dragView != null)
+            updateDrag();
+    };
+
+    /**
+     * Refreshes the link telemetry next to the connection indicator every second.
+     */
+    private final Runnable linkStatsUpdater = new Runnable() {
+        @Override
+        public void run() {
+            if (binding == null)
+                return;
+            binding.linkStats.setText(bluetoothConnection.getMetrics().formatReadout());
+            if (replayTransport != null && replayTransport.isFinished()) {
+                showReplayReport(replayTransport);
+                replayTransport = null;
+            }
+            timeHandler.postDelayed(this, 1000);
         }
     };
 
+    /**
+     * Handles a message received from the RPi.
+     *
+     * @param received  the bytes of the message
+     * @param length    the length of the message
+     * @param timestamp System.nanoTime() when the message was received
+     */
+    private void onMessageReceived(byte[] received, int length, long timestamp) {
+        Packet packet = codec.decode(received, 0, length);
+        if (packet instanceof TargetDiscovered) {
+            // important to show which obstacle has been discovered
+            int obstacle = ((TargetDiscovered) packet).getObstacle();
+            int targetId = ((TargetDiscovered) packet).getTargetId();
+            // the range is given in the task instructions
+            if (obstacle >= 0 && obstacle < ObstacleView.numObstacles && targetId >= 11 && targetId <= 40) {
+                ObstacleView obstacleView = (ObstacleView) binding.parentRelative.getChildAt(obstacle);
+                obstacleView.setDiscovered(targetId);
+            }
+        } else if (packet instanceof StatusUpdate) {
+            StatusUpdate status = (StatusUpdate) packet;
+            String receivedMessage = RPI_TO_ARCM.StatusMessages.messageMap.get(status.getStatus());
+            if (status.getStatus() == RPI_TO_ARCM.StatusMessages.RECEIVED_TARGET)
+                receivedMessage += status.getArgument();
+            runAnalytics.onStatus(status.getStatus(), timestamp);
+            if (status.getStatus() == RPI_TO_ARCM.StatusMessages.FINISHED_WEEK8
+                    || status.getStatus() == RPI_TO_ARCM.StatusMessages.FINISHED_WEEK9) {
+                finishRun(timestamp);
+                stopTimer();
+            }
+            appendToMessageBox(receivedMessage);
+        } else if (packet instanceof Finished) {
+            // the RPi reports the end of a task with its own message type
+            finishRun(timestamp);
+            stopTimer();
+            appendToMessageBox(RPI_TO_ARCM.StatusMessages.messageMap.get(
+                    ((Finished) packet).getTask() == Task.WEEK8 ? RPI_TO_ARCM.StatusMessages.FINISHED_WEEK8
+                            : RPI_TO_ARCM.StatusMessages.FINISHED_WEEK9));
+        } else if (packet instanceof PlannedPath) {
+            onPlannedPath((PlannedPath) packet);
+        }
+    }
+
+    /**
+     * Adds a part of the planned path to the route drawn over the grid. The route
+     * starts from the car sent with the arena.
+     *
+     * @param path the part received
+     */
+    private void onPlannedPath(PlannedPath path) {
+        if (path.getPart() == 0)
+            plannedRoute.resetFromCell(arena.getCarX(), arena.getCarY(), arena.getCarDirection());
+        else if (path.getPart() != nextPathPart) {
+            // a part is missing, so the route would be wrong from here on. Drop it
+            // until the next path starts
+            appendToMessageBox(String.format(Locale.ENGLISH, "Planned Path: Part %d of %d Missing, Got %d",
+                    nextPathPart + 1, path.getParts(), path.getPart() + 1));
+            plannedRoute.resetFromCell(arena.getCarX(), arena.getCarY(), arena.getCarDirection());
+            nextPathPart = 0;
+            binding.grid.clearRoute();
+            return;
+        }
+        for (int i = 0; i < path.getMoveCount(); i++)
+            plannedRoute.add(path.getCommand(i), path.getValue(i));
+        nextPathPart = path.getPart() + 1;
+        binding.grid.setRoute(plannedRoute);
+        if (path.isLastPart())
+            appendToMessageBox(String.format(Locale.ENGLISH, "Planned Path: %d Moves, %d Stops",
+                    plannedRoute.getMoveCount(), plannedRoute.getStopCount()));
+    }
+
+    /**
+     * Adds a line to the message box, greying out the previous lines.
+     *
+     * @param receivedMessage the line to add
+     */
+    private void appendToMessageBox(String receivedMessage) {
+        boolean atEnd = !binding.messageLog.canScrollVertically(1);
+        messageLogAdapter.add(receivedMessage);
+        // this auto scrolls the message box if the scroll position was at the end of
+        // the box
+        if (atEnd)
+            binding.messageLog.scrollToPosition(messageLogAdapter.getItemCount() - 1);
+    }
+
     /**
      * The handler for the Bluetooth connection.
      */
@@ -143,50 +289,15 @@ public class MainFragment extends Fragment {
         public void handleMessage(@NonNull Message msg) {
             super.handleMessage(msg);
             if (msg.what == BluetoothConnection.IOStatus.READ_BYTES) {
-                // we have received a message from the RPi
-                byte[] received = ByteBuffer.allocate(4).putInt((Integer) msg.obj).array();
-                if (received[0] == RPI_TO_ARCM.TARGET_DISCOVERED) {
-                    // important to show which obstacle has been discovered
-                    int obstacle = received[1];
-                    int targetId = received[2];
-                    // the range is given in the task instructions
-                    if (obstacle >= 0 && obstacle < ObstacleView.numObstacles && targetId >= 11 && targetId <= 40) {
-                        ObstacleView obstacleView = (ObstacleView) binding.parentRelative.getChildAt(obstacle);
-                        obstacleView.setDiscovered(targetId);
-                    }
-                } else if (received[0] == RPI_TO_ARCM.STATUS_UPDATE) {
-                    // status update
-                    String receivedMessage = RPI_TO_ARCM.StatusMessages.messageMap.get((char) received[1]);
-                    if (received[1] == RPI_TO_ARCM.StatusMessages.RECEIVED_TARGET)
-                        receivedMessage += (int) received[2];
-                    if (received[1] == RPI_TO_ARCM.StatusMessages.FINISHED_WEEK8
-                            || received[1] == RPI_TO_ARCM.StatusMessages.FINISHED_WEEK9) {
-                        stopTimer();
-                    }
-                    boolean atEnd = !binding.messageScroll.canScrollVertically(1);
-                    // add this to the message box
-                    String messageBoxText = binding.messageBox.getText().toString();
-                    int start = textBuilder.length();
-                    if (!messageBoxText.isEmpty())
-                        textBuilder.append("\n");
-                    textBuilder.append(receivedMessage);
-                    int end = textBuilder.length();
-                    // grey out everything before this message
-                    textBuilder.setSpan(
-                            new ForegroundColorSpan(ThemeManager.getColor(requireContext(),
-                                    com.google.android.material.R.attr.colorPrimary)),
-                            start, end, Spannable.SPAN_EXCLUSIVE_EXCLUSIVE);
-                    textBuilder.setSpan(
-                            new ForegroundColorSpan(0x90000000 | (ThemeManager.getColor(requireContext(),
-                                    com.google.android.material.R.attr.colorPrimary) - 0xFF000000)),
-                            0, start, Spannable.SPAN_EXCLUSIVE_EXCLUSIVE);
-                    binding.messageBox.setText(textBuilder);
-                    // this auto scrolls the message box if the scroll position was at the end of
-                    // the box
-                    binding.messageBox.post(() -> {
-                        if (atEnd)
-                            binding.messageScroll.fullScroll(NestedScrollView.FOCUS_DOWN);
-                    });
+                // we have received messages from the RPi, handle everything that is waiting
+                EventRing eventRing = bluetoothConnection.getEventRing();
+                eventRing.beginDrain();
+                long now = System.nanoTime();
+                EventRing.Event event;
+                while ((event = eventRing.peek()) != null) {
+                    bluetoothConnection.getMetrics().recordUiLag(now - event.timestamp);
+                    onMessageReceived(event.data, event.length, event.timestamp);
+                    eventRing.release();
                 }
             } else if (msg.what == BluetoothConnection.IOStatus.WRITE_FAILED) {
                 // just in case the write fails, never really happened
@@ -212,16 +323,30 @@ public class MainFragment extends Fragment {
                         .setCancelable(false)
                         .setNeutralButton("Cancel Reconnection", (dialog, which) -> disconnect()));
                 reconnectionDialog.show();
+            } else if (msg.what == BluetoothConnection.ConnectionStatus.RECONNECTING) {
+                // show the progress of the reconnection attempts
+                reconnectionDialog.setMessage(String.format(Locale.ENGLISH,
+                        "Please Wait! Reconnecting… (attempt %d of %d)", msg.arg1, msg.arg2));
             } else if (msg.what == BluetoothConnection.ConnectionStatus.RECONNECTED) {
                 // closes the reconnection dialog and informs the user
                 reconnectionDialog.cancel();
                 binding.connectionIndicator.setColorFilter(Color.GREEN);
-                Snackbar.make(binding.getRoot(), "Back Online ✅", Snackbar.LENGTH_SHORT)
+                Snackbar.make(binding.getRoot(),
+                        String.format(Locale.ENGLISH, "Back Online ✅ (%.1fs)", msg.arg1 / 1000.0f),
+                        Snackbar.LENGTH_SHORT)
                         .setBackgroundTint(
                                 ThemeManager.getColor(requireContext(), com.google.android.material.R.attr.colorAccent))
                         .setTextColor(ThemeManager.getColor(requireContext(),
                                 com.google.android.material.R.attr.colorPrimaryDark))
                         .show();
+            } else if (msg.what == BluetoothConnection.ConnectionStatus.RECONNECT_FAILED) {
+                // out of attempts, the user has to connect again
+                reconnectionDialog.cancel();
+                new FullscreenMaterialDialog(new MaterialAlertDialogBuilder(requireContext())
+                        .setTitle("❌ Reconnection Failed")
+                        .setMessage("Could not reach the RPi. Please connect again.")
+                        .setCancelable(false)
+                        .setPositiveButton("OK", (dialog, which) -> disconnect())).show();
             }
         }
     };
@@ -231,6 +356,7 @@ public class MainFragment extends Fragment {
      * (the initial fragment).
      */
     private void disconnect() {
+        timeHandler.removeCallbacks(linkStatsUpdater);
         bluetoothConnection.closeCommunication();
         NavHelper.safeNavigate(MainFragment.this, R.id.action_MainFragment_to_PermissionFragment);
     }
@@ -252,12 +378,23 @@ public class MainFragment extends Fragment {
     public View onCreateView(@NonNull LayoutInflater inflater, ViewGroup container, Bundle savedInstanceState) {
         // initialize grid and other variables
         gridRect = new Rect();
-        grid = new Cell[21][21];
-        Arrays.stream(grid).forEach(a -> Arrays.fill(a, Cell.EMPTY));
-        textBuilder = new SpannableStringBuilder();
+        arenaModel.clear();
         timeHandler = new Handler(Looper.getMainLooper());
         bluetoothConnection = BluetoothConnection.getInstance();
+        try {
+            runHistory = RunHistory.load(new File(requireContext().getFilesDir(), runHistoryFile),
+                    RunHistory.DEFAULT_CAPACITY);
+        } catch (IOException e) {
+            // start over rather than lose every later run
+            runHistory = new RunHistory(RunHistory.DEFAULT_CAPACITY);
+        }
         binding = FragmentMainBinding.inflate(inflater, container, false);
+        messageLogAdapter = new MessageLogAdapter(messageLogCapacity,
+                ThemeManager.getColor(requireContext(), com.google.android.material.R.attr.colorPrimary));
+        binding.messageLog.setLayoutManager(new LinearLayoutManager(requireContext()));
+        // rows only change colour, animating them would lag behind a burst of updates
+        binding.messageLog.setItemAnimator(null);
+        binding.messageLog.setAdapter(messageLogAdapter);
         binding.obstaclesCard.getViewTreeObserver().addOnGlobalLayoutListener(
                 new ViewTreeObserver.OnGlobalLayoutListener() {
                     @Override
@@ -276,54 +413,6 @@ public class MainFragment extends Fragment {
         return binding.getRoot();
     }
 
-    /**
-     * Creates the grid layout for the obstacles.
-     *
-     * @param row the row of the cell
-     * @param col the column of the cell
-     * @return the layout parameters for the cell
-     */
-    private GridLayout.LayoutParams getLayoutFor(int row, int col) {
-        GridLayout.LayoutParams params = new GridLayout.LayoutParams();
-        params.width = cellSize;
-        params.height = cellSize;
-        params.rowSpec = GridLayout.spec(row);
-        params.columnSpec = GridLayout.spec(col);
-        return params;
-    }
-
-    /**
-     * Helps in writing the numbers for the axis cells.
-     * 
-     * @param num   the number of the axis cell
-     * @param isRow whether the cell is a row cell
-     * @return the label for the axis cells
-     */
-    private TextView getAxisLabel(int num, boolean isRow) {
-        TextView v = new TextView(getContext());
-        if (num == 0)
-            return v;
-        v.setText(String.valueOf(num - 1));
-        v.setTypeface(Typeface.DEFAULT_BOLD);
-        // change color depending on light/dark mode
-        if ((requireContext().getResources().getConfiguration().uiMode
-                & Configuration.UI_MODE_NIGHT_MASK) == Configuration.UI_MODE_NIGHT_YES) {
-            v.setTextColor(ThemeManager.getColor(requireContext(), com.google.android.material.R.attr.colorAccent));
-        } else {
-            v.setTextColor(
-                    ThemeManager.getColor(requireContext(), com.google.android.material.R.attr.colorPrimaryDark));
-        }
-        // set gravity and text alignment
-        if (isRow) {
-            v.setGravity(Gravity.CENTER);
-            v.setTextAlignment(View.TEXT_ALIGNMENT_TEXT_END);
-        } else {
-            v.setTextAlignment(View.TEXT_ALIGNMENT_CENTER);
-        }
-        v.setTextSize(10);
-        return v;
-    }
-
     /**
      * Makes a view draggable.
      * 
@@ -340,22 +429,6 @@ public class MainFragment extends Fragment {
         }));
     }
 
-    /**
-     * Changes the type of the cells occupied by the robot.
-     * 
-     * @param what The cell type to change to
-     */
-    private void changeRobotGrid(Cell what) {
-        if (robotPos == null)
-            return;
-        int row = robotPos.first;
-        int col = robotPos.second;
-        grid[row][col] = what;
-        grid[row][col + 1] = what;
-        grid[row + 1][col] = what;
-        grid[row + 1][col + 1] = what;
-    }
-
     /**
      * Sets the rotation of the robot.
      * 
@@ -382,9 +455,9 @@ public class MainFragment extends Fragment {
         final String[] dirs = new String[] { "North", "East", "South", "West" };
         int dirIndex = (int) binding.robotCar.getRotation() / 90, x, y;
         String statusString = "";
-        if (robotPos != null) {
-            y = 18 - robotPos.first;
-            x = robotPos.second - 1;
+        if (arenaModel.hasRobot()) {
+            y = arenaModel.getRobotY();
+            x = arenaModel.getRobotX();
             statusString += "X: " + x + ", Y: " + y;
         } else
             statusString += "Ready";
@@ -399,8 +472,7 @@ public class MainFragment extends Fragment {
      * @param col The column of the cell
      */
     private void changeGridColor(int row, int col) {
-        binding.grid.getChildAt((row * 21) + col)
-                .setBackgroundColor(ThemeManager.getColor(requireContext(), androidx.appcompat.R.attr.colorAccent));
+        binding.grid.setVisited(row, col);
     }
 
     /**
@@ -416,19 +488,11 @@ public class MainFragment extends Fragment {
         int col = Math.max(1, Math.min(rCol, 19));
         if ((row != rRow || col != rCol) && !allowOutOfBounds)
             return false;
-        // if any of the cells are obstacles, don't move
-        if (grid[row][col] == Cell.OBSTACLE || grid[row + 1][col] == Cell.OBSTACLE
-                || grid[row][col + 1] == Cell.OBSTACLE || grid[row + 1][col + 1] == Cell.OBSTACLE)
+        // if any of the cells are obstacles, don't move. the robot covers the row below too
+        if (!arenaModel.moveRobot(ArenaModel.gridColumnToX(col), ArenaModel.gridRowToY(row + 1)))
             return false;
-        // mark the current cells occupied as empty
-        changeRobotGrid(Cell.EMPTY);
-        robotPos = new Pair<>(row, col);
-        // mark the new cells as occupied by the robot
-        changeRobotGrid(Cell.CAR);
         // change car object position
-        View cell = binding.grid.getChildAt((row * 21) + col);
-        binding.robotCar.setX(binding.grid.getX() + cell.getX() + 2);
-        binding.robotCar.setY(binding.grid.getY() + cell.getY() + 2);
+        placeOnGrid(binding.robotCar, row, col, 2);
         binding.robotCar.setElevation(15);
         // mark the new cells as visited
         changeGridColor(row, col);
@@ -439,6 +503,63 @@ public class MainFragment extends Fragment {
         return true;
     }
 
+    /**
+     * Puts a view over a cell of the grid, zoomed like the grid and hidden while
+     * the cell is outside the viewport.
+     *
+     * @param view   the view to move
+     * @param row    the row of the cell
+     * @param column the column of the cell
+     * @param offset how far the view is moved from the cell's corner, unscaled
+     */
+    private void placeOnGrid(View view, int row, int column, float offset) {
+        float scale = binding.grid.getScale();
+        // the new size may not be laid out yet
+        ViewGroup.LayoutParams params = view.getLayoutParams();
+        int width = params.width > 0 ? params.width : view.getWidth();
+        int height = params.height > 0 ? params.height : view.getHeight();
+        view.setScaleX(scale);
+        view.setScaleY(scale);
+        // views scale around their centre, which moves their corner in
+        view.setX(binding.grid.getX() + binding.grid.getCellLeft(column) + offset - (1 - scale) * width / 2);
+        view.setY(binding.grid.getY() + binding.grid.getCellTop(row) + offset - (1 - scale) * height / 2);
+        view.setVisibility(binding.grid.isCellVisible(row, column) ? View.VISIBLE : View.INVISIBLE);
+    }
+
+    /**
+     * Keeps the robot and the obstacles on their cells when the grid is zoomed or
+     * panned.
+     */
+    private void layoutOnGrid() {
+        if (arenaModel.hasRobot())
+            placeOnGrid(binding.robotCar, ArenaModel.yToGridRow(arenaModel.getRobotY() + 1),
+                    ArenaModel.xToGridColumn(arenaModel.getRobotX()), 2);
+        for (int i = 0; i < binding.parentRelative.getChildCount(); i++) {
+            if (!(binding.parentRelative.getChildAt(i) instanceof ObstacleView))
+                continue;
+            ObstacleView obstacleView = (ObstacleView) binding.parentRelative.getChildAt(i);
+            Pair<Integer, Integer> pos = obstacleView.getGridPos();
+            if (pos != null)
+                placeOnGrid(obstacleView, pos.first, pos.second, -21);
+        }
+    }
+
+    /**
+     * Shows a dialog to choose how finely the arena is drawn.
+     */
+    private void showResolutionDialog() {
+        String[] names = new String[ArenaView.RESOLUTIONS.length];
+        for (int i = 0; i < names.length; i++)
+            names[i] = String.format(Locale.ENGLISH, "%d × %d (%.1f cm)", ArenaView.RESOLUTIONS[i],
+                    ArenaView.RESOLUTIONS[i], 200.0f / ArenaView.RESOLUTIONS[i]);
+        new FullscreenMaterialDialog(new MaterialAlertDialogBuilder(requireContext())
+                .setTitle("Arena Resolution")
+                .setItems(names, (dialog, which) -> binding.grid.setResolution(ArenaView.RESOLUTIONS[which]))
+                .setNeutralButton("Show All", (dialog, which) -> binding.grid.resetViewport())
+                .setNegativeButton("Cancel", (dialog, which) -> {
+                })).show();
+    }
+
     /**
      * Resets the fragment by detaching and reattaching the fragment.
      */
@@ -453,8 +574,9 @@ public class MainFragment extends Fragment {
      * @param direction The direction to turn the robot
      */
     private void turnRobot(DPadView.Direction direction) {
-        int row = robotPos.first;
-        int col = robotPos.second;
+        // the grid cell of the robot's top left corner
+        int row = ArenaModel.yToGridRow(arenaModel.getRobotY() + 1);
+        int col = ArenaModel.xToGridColumn(arenaModel.getRobotX());
 
         // originally these changes were marked for each type of turn from each
         // direction
@@ -503,54 +625,31 @@ public class MainFragment extends Fragment {
     private void timerButtonCallback(int timerWeek) {
         timerButton = timerWeek == Task.WEEK8 ? binding.wk8button : binding.wk9button;
         timerTextView = timerWeek == Task.WEEK8 ? binding.wk8timer : binding.wk9timer;
+        timerTask = (char) timerWeek;
         Button oppositeTimerButton = timerWeek == Task.WEEK8 ? binding.wk9button : binding.wk8button;
-        if (startTime == 0) {
+        if (!stopwatch.isStarted()) {
             // "This means the button was showing Start WeekX"
             // allow if week9 or if week8 conditions met
-            if (timerWeek == Task.WEEK9 || (robotPos != null && getDirectedObstacles() >= 4)) {
+            if (timerWeek == Task.WEEK9 || (arenaModel.hasRobot() && getDirectedObstacles() >= 4)) {
                 if (timerWeek == Task.WEEK8) {
-                    // need to build the arena buffer for pathfinding algorithm
-                    ArrayList<Byte> arenaBuffer = new ArrayList<>();
-
-                    // add car position info
-                    arenaBuffer.add((byte) (robotPos.second - 1));
-                    arenaBuffer.add((byte) (18 - robotPos.first));
-                    switch ((int) binding.robotCar.getRotation()) {
-                        case 90:
-                            arenaBuffer.add((byte) 2);
-                            break;
-                        case 180:
-                            arenaBuffer.add((byte) 1);
-                            break;
-                        case 270:
-                            arenaBuffer.add((byte) 3);
-                            break;
-                        default:
-                            arenaBuffer.add((byte) 0);
-                            break;
-                    }
-
-                    // add obstacle info
+                    // need to send the arena for pathfinding algorithm
+                    arena.clear();
+                    arena.setCar(arenaModel.getRobotX(), arenaModel.getRobotY(),
+                            ArenaModel.rotationToDirection((int) binding.robotCar.getRotation()));
                     for (int i = 0; i < ObstacleView.numObstacles; i++) {
                         ObstacleView obstacleView = (ObstacleView) binding.parentRelative.getChildAt(i);
                         if (obstacleView.getGridPos() != null && obstacleView.getDirection() != Direction.NONE) {
                             Pair<Integer, Integer> pos = obstacleView.getGridPos();
-                            arenaBuffer.add((byte) (pos.second - 1));
-                            arenaBuffer.add((byte) (19 - pos.first));
-                            arenaBuffer.add((byte) obstacleView.getDirection());
+                            arena.addObstacleFromGrid(pos.first, pos.second, obstacleView.getDirection());
                         }
                     }
-
-                    // convert to byte array and send
-                    byte[] byteArray = new byte[arenaBuffer.size()];
-                    int index = 0;
-                    for (byte b : arenaBuffer) {
-                        byteArray[index++] = b;
-                    }
-                    bluetoothConnection.write(byteArray);
+                    bluetoothConnection.write(codec.encode(arena));
+                    // the path planned for the previous arena no longer applies
+                    nextPathPart = 0;
+                    binding.grid.clearRoute();
                 } else {
                     // just tell RPi to go
-                    bluetoothConnection.write(new byte[] { 'G', 'O' });
+                    bluetoothConnection.write(codec.encode(go));
                 }
                 // disable the other week's timer button
                 oppositeTimerButton.setEnabled(false);
@@ -558,9 +657,10 @@ public class MainFragment extends Fragment {
                         com.google.android.material.R.attr.colorSecondaryVariant));
 
                 // start the timer
-                timerRunning = true;
-                startTime = System.currentTimeMillis();
-                timeHandler.post(stopWatch);
+                stopwatch.start();
+                bluetoothConnection.recordEvent(SessionRecorder.TIMER_STARTED, (byte) timerWeek);
+                runAnalytics.start((char) timerWeek, System.nanoTime());
+                Choreographer.getInstance().postFrameCallback(stopWatch);
                 timerButton.setText(String.format(Locale.ENGLISH, "Running Week%d", timerWeek));
             } else {
                 // Week 8 conditions not met
@@ -572,8 +672,10 @@ public class MainFragment extends Fragment {
                                 com.google.android.material.R.attr.colorPrimaryDark))
                         .show();
             }
-        } else if (timerRunning) {
+        } else if (stopwatch.isRunning()) {
             // this means the button was showing "Running WeekX"
+            // stopped by hand, the run did not finish so its timings are not kept
+            runAnalytics.cancel();
             stopTimer();
         } else {
             // this means the button was showing "Reset Timer"
@@ -583,7 +685,8 @@ public class MainFragment extends Fragment {
             oppositeTimerButton.setEnabled(true);
             oppositeTimerButton.setTextColor(
                     ThemeManager.getColor(requireContext(), com.google.android.material.R.attr.colorPrimaryDark));
-            startTime = 0;
+            stopwatch.reset();
+            bluetoothConnection.recordEvent(SessionRecorder.TIMER_RESET, (byte) timerWeek);
         }
     }
 
@@ -594,26 +697,95 @@ public class MainFragment extends Fragment {
      * @param column The column of the cell
      */
     private void changeAxesColors(int row, int column) {
-        if (axisRow != -1) {
-            // reset the color if the current row is not -1
-            binding.grid.getChildAt(axisRow * 21).setBackgroundColor(Color.TRANSPARENT);
-            binding.grid.getChildAt(21 * 20 + axisColumn).setBackgroundColor(Color.TRANSPARENT);
+        binding.grid.setHighlight(row, column);
+    }
+
+    /**
+     * Caches what the drag indicators need for a new drag, the grid does not move
+     * while dragging.
+     *
+     * @param view the view being dragged
+     * @param car  whether it is the robot
+     */
+    private void startDrag(View view, boolean car) {
+        dragView = view;
+        carDrag = car;
+        // column 0 is the y axis, so the columns are counted from one pitch before the arena
+        float pitch = binding.grid.getCellPitch();
+        dragCell.setGrid(binding.grid.getX() + binding.grid.getArenaLeft() - pitch,
+                binding.grid.getY() + binding.grid.getArenaTop(), pitch, pitch);
+        // the indicators start cleared, and an obstacle from the grid starts in it
+        dragInGrid = obstacleDrag;
+        dragDanger = false;
+        cardColor = ThemeManager.getColor(requireContext(), com.google.android.material.R.attr.colorSecondary);
+        cardHighlightColor = ThemeManager.getColor(requireContext(), com.google.android.material.R.attr.colorPrimary);
+    }
+
+    /**
+     * @return the row of the cell under the drag. Over the x axis labels, or
+     *         past the cells panned out of view, it is the nearest row on screen
+     */
+    private int dragRow() {
+        return binding.grid.clampToVisibleRow(dragCell.getRow());
+    }
+
+    /**
+     * @return the column of the cell under the drag. Over the y axis labels, or
+     *         past the cells panned out of view, it is the nearest column on screen
+     */
+    private int dragColumn() {
+        return binding.grid.clampToVisibleColumn(dragCell.getColumn());
+    }
+
+    /**
+     * Stops updating the drag indicators.
+     */
+    private void endDrag() {
+        dragView = null;
+        if (dragFramePosted) {
+            dragFramePosted = false;
+            Choreographer.getInstance().removeFrameCallback(dragFrame);
         }
-        axisRow = row;
-        axisColumn = column;
-        if (row != -1) {
-            // if the new row is not -1, change the color to indicate this cell is being
-            // dragged over
-            int bgColor;
-            if ((requireContext().getResources().getConfiguration().uiMode
-                    & Configuration.UI_MODE_NIGHT_MASK) == Configuration.UI_MODE_NIGHT_YES) {
-                bgColor = ThemeManager.getColor(requireContext(), com.google.android.material.R.attr.colorPrimaryDark);
-            } else {
-                bgColor = ThemeManager.getColor(requireContext(), com.google.android.material.R.attr.colorAccent);
+    }
+
+    /**
+     * Updates the drag indicators for the latest drag location, touching only the
+     * ones whose state changed.
+     */
+    private void updateDrag() {
+        boolean inGrid = gridRect.contains((int) dragX, (int) dragY);
+        boolean cellChanged = dragCell.moveTo(dragX - dragView.getWidth() / 2.0f,
+                dragY - dragView.getHeight() / 2.0f);
+        if (carDrag) {
+            // we check if the car is in danger of hitting an obstacle. out of the arena or on
+            // an obstacle, the robot covers the row below too
+            boolean danger = !inGrid || !arenaModel.canPlaceRobot(
+                    ArenaModel.gridColumnToX(Math.min(dragColumn(), 19)),
+                    ArenaModel.gridRowToY(Math.min(dragRow(), 18) + 1));
+            if (danger != dragDanger) {
+                dragDanger = danger;
+                shadowBuilder.setDanger(danger);
+                binding.robotCar.updateDragShadow(shadowBuilder);
             }
-            binding.grid.getChildAt(axisRow * 21).setBackgroundColor(bgColor);
-            binding.grid.getChildAt(21 * 20 + axisColumn).setBackgroundColor(bgColor);
+        } else if (inGrid && (cellChanged || !dragInGrid)) {
+            // obstacle being dragged in the grid, update the drag indicators
+            int row = dragRow();
+            int column = dragColumn();
+            binding.coordPreview.setText("(" + ArenaModel.gridColumnToX(column) + ","
+                    + ArenaModel.gridRowToY(row) + ")");
+            changeAxesColors(row, column);
+        } else if (!inGrid && dragInGrid) {
+            // obstacle being dragged out of grid. reset drag position indicators.
+            changeAxesColors(-1, -1);
+            binding.coordPreview.setText("");
+        }
+        if (obstacleDrag && inGrid != dragInGrid) {
+            // highlight the obstacles card and show the trash icon if the obstacle is being
+            // dragged out of the grid
+            binding.obstaclesCard.setBackgroundColor(inGrid ? cardColor : cardHighlightColor);
+            binding.trash.setAlpha(inGrid ? 0.0f : 1.0f);
         }
+        dragInGrid = inGrid;
     }
 
     /**
@@ -627,19 +799,265 @@ public class MainFragment extends Fragment {
             if (msg.what == BluetoothConnection.ConnectionStatus.CONNECTED) {
                 bluetoothConnection.setupCommunication(handler);
                 Snackbar.make(binding.getRoot(), "Connected to RPi!", Snackbar.LENGTH_LONG).show();
-                binding.connectedDevice.setText(bluetoothConnection.getDevice().getName());
+                binding.connectedDevice.setText(bluetoothConnection.getDeviceName());
                 binding.connectionIndicator.setColorFilter(Color.GREEN);
                 binding.connect.setText(R.string.connected);
+                // every session is journaled, unless a recording was started by hand
+                if (!bluetoothConnection.isRecording() && replayTransport == null)
+                    startRecording();
+                timeHandler.removeCallbacks(linkStatsUpdater);
+                timeHandler.post(linkStatsUpdater);
             } else if (msg.what == BluetoothConnection.ConnectionStatus.FAILED) {
                 Snackbar.make(binding.getRoot(), "❌ " + msg.obj, Snackbar.LENGTH_LONG).show();
             }
         }
     };
 
+    /**
+     * Keeps the timings of the task that just finished in the run history.
+     *
+     * @param timestamp System.nanoTime() when the task finished
+     */
+    private void finishRun(long timestamp) {
+        RunAnalytics.Run run = runAnalytics.finish(timestamp);
+        if (run == null)
+            return;
+        runHistory.add(run);
+        try {
+            runHistory.save(new File(requireContext().getFilesDir(), runHistoryFile));
+        } catch (IOException e) {
+            Snackbar.make(binding.getRoot(), "❌ " + e.getMessage(), Snackbar.LENGTH_SHORT).show();
+        }
+    }
+
+    /**
+     * Shows where the time of the past runs of a task went.
+     *
+     * @param task the task
+     */
+    private void showRunHistory(char task) {
+        new FullscreenMaterialDialog(new MaterialAlertDialogBuilder(requireContext())
+                .setTitle(String.format(Locale.ENGLISH, "Week %d Runs", (int) task))
+                .setMessage(runHistory.formatReport(task))
+                .setPositiveButton("OK", (dialog, which) -> {
+                })).show();
+    }
+
+    /**
+     * Starts or stops recording the frames sent and received, so that the run can
+     * be replayed later. Recordings are kept in the app's external files.
+     */
+    private void toggleRecording() {
+        String message;
+        if (bluetoothConnection.isRecording()) {
+            bluetoothConnection.stopRecording();
+            message = "Recording Saved";
+        } else {
+            message = startRecording();
+        }
+        Snackbar.make(binding.getRoot(), message, Snackbar.LENGTH_SHORT).show();
+    }
+
+    /**
+     * Starts a new session journal, removing the oldest ones if there are too
+     * many.
+     *
+     * @return the message to show
+     */
+    private String startRecording() {
+        File sessions = requireContext().getExternalFilesDir("sessions");
+        File[] journals = sessions.listFiles((dir, name) -> name.endsWith(".arcm"));
+        if (journals != null && journals.length >= maxSessionJournals) {
+            // the names start with the time, so the oldest sort first
+            Arrays.sort(journals);
+            for (int i = 0; i <= journals.length - maxSessionJournals; i++)
+                journals[i].delete();
+        }
+        File output = new File(sessions,
+                String.format(Locale.ENGLISH, "session-%d.arcm", System.currentTimeMillis()));
+        try {
+            bluetoothConnection.startRecording(output);
+            return "⏺ Recording to " + output.getName();
+        } catch (IOException e) {
+            return "❌ " + e.getMessage();
+        }
+    }
+
+    /**
+     * Writes a session journal as CSV next to the app's other exports, for
+     * analysis on a computer. The journal is read in the background.
+     *
+     * @param journal the journal to export
+     */
+    private void exportSession(File journal) {
+        String name = journal.getName();
+        File output = new File(requireContext().getExternalFilesDir("exports"),
+                name.substring(0, name.length() - ".arcm".length()) + ".csv");
+        sessionExecutor.execute(() -> {
+            String message;
+            try (Writer writer = new BufferedWriter(new FileWriter(output))) {
+                int count = SessionRecorder.export(journal, writer);
+                message = String.format(Locale.ENGLISH, "Exported %d records to %s", count, output.getPath());
+            } catch (IOException e) {
+                message = "❌ " + e.getMessage();
+            }
+            showSessionMessage(message);
+        });
+    }
+
+    /**
+     * Shows the result of a background job on a session journal, unless the view
+     * is gone by then.
+     *
+     * @param message the result
+     */
+    private void showSessionMessage(String message) {
+        timeHandler.post(() -> {
+            if (binding != null)
+                Snackbar.make(binding.getRoot(), message, Snackbar.LENGTH_LONG).show();
+        });
+    }
+
+    /**
+     * Lets the user replay a recorded session, or a stream of synthetic status
+     * updates, through the normal receive path to see how much load the UI can
+     * take.
+     */
+    private void showReplayDialog() {
+        File[] recordings = requireContext().getExternalFilesDir("sessions")
+                .listFiles((dir, name) -> name.endsWith(".arcm"));
+        ArrayList<String> sourceNames = new ArrayList<>();
+        sourceNames.add("Synthetic Status Updates (1000/s)");
+        if (recordings != null) {
+            Arrays.sort(recordings);
+            for (File recording : recordings)
+                sourceNames.add(recording.getName());
+        }
+        new FullscreenMaterialDialog(new MaterialAlertDialogBuilder(requireContext())
+                .setTitle("Replay")
+                .setItems(sourceNames.toArray(new String[0]), (dialog, which) -> {
+                    if (which == 0)
+                        showReplaySpeedDialog(ReplayScript.statusUpdates(60_000, 1_000_000));
+                    else
+                        showSessionDialog(recordings[which - 1]);
+                })
+                .setNegativeButton("Cancel", (dialog, which) -> {
+                })).show();
+    }
+
+    /**
+     * Asks whether to replay or export a session journal.
+     *
+     * @param journal the journal chosen
+     */
+    private void showSessionDialog(File journal) {
+        new FullscreenMaterialDialog(new MaterialAlertDialogBuilder(requireContext())
+                .setTitle(journal.getName())
+                .setItems(new String[] { "Replay", "Export as CSV" }, (dialog, which) -> {
+                    if (which == 1) {
+                        exportSession(journal);
+                        return;
+                    }
+                    sessionExecutor.execute(() -> {
+                        try {
+                            ReplayScript script = ReplayScript.fromRecording(journal);
+                            timeHandler.post(() -> {
+                                if (binding != null)
+                                    showReplaySpeedDialog(script);
+                            });
+                        } catch (IOException e) {
+                            showSessionMessage("❌ " + e.getMessage());
+                        }
+                    });
+                })
+                .setNegativeButton("Cancel", (dialog, which) -> {
+                })).show();
+    }
+
+    /**
+     * Asks for the replay speed and starts the replay.
+     *
+     * @param script the frames to replay
+     */
+    private void showReplaySpeedDialog(ReplayScript script) {
+        final double[] speeds = { 1, 10, ReplayTransport.AS_FAST_AS_POSSIBLE };
+        new FullscreenMaterialDialog(new MaterialAlertDialogBuilder(requireContext())
+                .setTitle(String.format(Locale.ENGLISH, "Replay %d Messages", script.size()))
+                .setItems(new String[] { "1×", "10×", "As Fast As Possible" }, (dialog, which) -> {
+                    replayTransport = new ReplayTransport(script, speeds[which]);
+                    bluetoothConnection.tryConnection(replayTransport, handler2);
+                })
+                .setNegativeButton("Cancel", (dialog, which) -> {
+                })).show();
+    }
+
+    /**
+     * Shows how well the UI kept up with a finished replay.
+     *
+     * @param replay the finished replay
+     */
+    private void showReplayReport(ReplayTransport replay) {
+        Histogram uiLag = bluetoothConnection.getMetrics().getUiLag();
+        new FullscreenMaterialDialog(new MaterialAlertDialogBuilder(requireContext())
+                .setTitle("Replay Finished")
+                .setMessage(String.format(Locale.ENGLISH,
+                        "%d messages at %.0f messages/s\nUI lag: median %.1fms, p99 %.1fms, max %.1fms\n"
+                                + "Dropped: %d",
+                        replay.getFramesPlayed(), replay.getFramesPerSecond(), uiLag.getPercentile(50) / 1e6,
+                        uiLag.getPercentile(99) / 1e6, uiLag.getMax() / 1e6,
+                        bluetoothConnection.getEventRing().getDroppedEvents()))
+                .setPositiveButton("OK", (dialog, which) -> {
+                })).show();
+    }
+
+    /**
+     * Asks for a host and port to connect to over TCP instead of Bluetooth.
+     */
+    private void showTcpConnectDialog() {
+        final EditText addressInput = new EditText(requireContext());
+        addressInput.setHint("host:port");
+        addressInput.setSingleLine(true);
+        new FullscreenMaterialDialog(new MaterialAlertDialogBuilder(requireContext())
+                .setTitle("Connect over TCP")
+                .setView(addressInput)
+                .setNegativeButton("Cancel", (dialog, which) -> {
+                })
+                .setPositiveButton("Connect", (dialog, which) -> {
+                    String address = addressInput.getText().toString().trim();
+                    int split = address.lastIndexOf(':');
+                    try {
+                        int port = Integer.parseInt(address.substring(split + 1));
+                        if (port < 1 || port > 65535)
+                            throw new NumberFormatException("Port out of range: " + port);
+                        bluetoothConnection.tryConnection(new TcpTransport(address.substring(0, split), port),
+                                handler2);
+                        Snackbar.make(binding.getRoot(), "Connecting Now", Snackbar.LENGTH_LONG).show();
+                    } catch (NumberFormatException | StringIndexOutOfBoundsException e) {
+                        Snackbar.make(binding.getRoot(), "❌ Invalid address " + address, Snackbar.LENGTH_LONG).show();
+                    }
+                })).show();
+    }
+
     @RequiresPermission(value = "android.permission.BLUETOOTH_CONNECT")
     public void onViewCreated(@NonNull View view, Bundle savedInstanceState) {
         super.onViewCreated(view, savedInstanceState);
         binding.connectionIndicator.setColorFilter(Color.RED);
+        binding.connectionIndicator.setOnLongClickListener(v -> {
+            toggleRecording();
+            return true;
+        });
+        binding.connect.setOnLongClickListener(v -> {
+            showReplayDialog();
+            return true;
+        });
+        binding.wk8button.setOnLongClickListener(v -> {
+            showRunHistory(Task.WEEK8);
+            return true;
+        });
+        binding.wk9button.setOnLongClickListener(v -> {
+            showRunHistory(Task.WEEK9);
+            return true;
+        });
         binding.connect.setOnClickListener(v -> {
             // show list of paired devices to connect to
             BluetoothAdapter bluetoothAdapter = BluetoothAdapter.getDefaultAdapter();
@@ -655,10 +1073,11 @@ public class MainFragment extends Fragment {
                     .setAdapter(listAdapter, (dialog, which) -> {
                         bluetoothConnection.tryConnection(deviceMACs.get(which), handler2);
                         Snackbar.make(binding.getRoot(), "Connecting Now", Snackbar.LENGTH_LONG).show();
-                    })).show();
+                    })
+                    .setNeutralButton("TCP", (dialog, which) -> showTcpConnectDialog())).show();
         });
         binding.dpad.setOnDirectionClickListener(direction -> {
-            if (direction != null && robotPos != null && direction != DPadView.Direction.CENTER) {
+            if (direction != null && arenaModel.hasRobot() && direction != DPadView.Direction.CENTER) {
                 turnRobot(direction);
             }
             return null;
@@ -668,7 +1087,7 @@ public class MainFragment extends Fragment {
                         .setTitle("Choose Theme")
                         .setItems(ThemeManager.getThemes(), (dialog, which) -> {
                             ThemeManager.setNewTheme(requireActivity(), which);
-                            resetFragment();
+                            applyTheme();
                         })
                         .setNegativeButton("Cancel", (dialog, which) -> {
                         })
@@ -676,6 +1095,12 @@ public class MainFragment extends Fragment {
         binding.wk8button.setOnClickListener((v1) -> timerButtonCallback(Task.WEEK8));
         binding.wk9button.setOnClickListener((v1) -> timerButtonCallback(Task.WEEK9));
         binding.robotCar.setOnClickListener(v -> rotateBy(90));
+        // pinching the grid zooms it, a long press chooses its resolution
+        binding.grid.setOnViewportChangeListener(grid -> layoutOnGrid());
+        binding.grid.setOnLongClickListener(v -> {
+            showResolutionDialog();
+            return true;
+        });
         setDraggable(binding.robotCar, carLabel);
 
         // Drag handler
@@ -685,9 +1110,15 @@ public class MainFragment extends Fragment {
                     // if an obstacle is being dragged from the grid
                     obstacleDrag = (gridRect.contains((int) event.getX(), (int) event.getY())
                             && event.getClipDescription().getLabel().equals(obstacleLabel));
+                    startDrag((View) event.getLocalState(),
+                            event.getClipDescription().getLabel().equals(carLabel));
+                    break;
+                case DragEvent.ACTION_DRAG_ENDED:
+                    endDrag();
                     break;
                 case DragEvent.ACTION_DROP:
                     View draggedView = (View) event.getLocalState();
+                    endDrag(); // a pending frame must not bring the indicators back
 
                     float eventX = event.getX() - draggedView.getWidth() / 2.0f;
                     float eventY = event.getY() - draggedView.getHeight() / 2.0f;
@@ -700,43 +1131,40 @@ public class MainFragment extends Fragment {
 
                     if (gridRect.contains((int) eventX, (int) eventY)) {
                         // being dropped into the grid
-                        float xRelativeToGrid = eventX - binding.grid.getX();
-                        float yRelativeToGrid = eventY - binding.grid.getY();
-
-                        float cellWidth = binding.grid.getWidth() / 21.0f;
-                        float cellHeight = binding.grid.getHeight() / 21.0f;
+                        dragCell.moveTo(eventX, eventY);
 
                         if (event.getClipDescription().getLabel().equals(obstacleLabel)) {
                             // its an obstacle that was dragged
-                            int row = Math.max(0, Math.min((int) (yRelativeToGrid / cellHeight), 19));
-                            int column = Math.max(1, Math.min((int) (xRelativeToGrid / cellWidth), 20));
-                            if (grid[row][column] == Cell.EMPTY) {
-                                // only allowed if new cell is empty
-                                View cell = binding.grid.getChildAt((row * 21) + column);
+                            int row = dragRow();
+                            int column = dragColumn();
+                            if (binding.grid.isCellVisible(row, column)
+                                    && arenaModel.isFree(ArenaModel.gridColumnToX(column), ArenaModel.gridRowToY(row))) {
+                                // only allowed if new cell is on screen and empty
                                 ObstacleView obstacleView = (ObstacleView) draggedView;
                                 obstacleView.setLayoutParams(new RelativeLayout.LayoutParams(cellSize, cellSize));
-                                draggedView.setX(binding.grid.getX() + cell.getX() - 21);
-                                draggedView.setY(binding.grid.getY() + cell.getY() - 21);
+                                placeOnGrid(draggedView, row, column, -21);
                                 if (!obstacleDrag) {
                                     // if it was dragged from one cell to the other then update the background
                                     obstacleView.post(obstacleView::updateBackground);
                                 }
                                 Pair<Integer, Integer> currentPos = obstacleView.getGridPos();
                                 if (currentPos != null) {
-                                    grid[currentPos.first][currentPos.second] = Cell.EMPTY;
+                                    arenaModel.removeObstacle(ArenaModel.gridColumnToX(currentPos.second),
+                                            ArenaModel.gridRowToY(currentPos.first));
                                 }
                                 obstacleView.setOnGrid(new Pair<>(row, column));
-                                grid[row][column] = Cell.OBSTACLE;
+                                arenaModel.placeObstacle(ArenaModel.gridColumnToX(column), ArenaModel.gridRowToY(row));
                             }
                         } else if (event.getClipDescription().getLabel().equals(carLabel)) {
                             // change car position
-                            moveRobot((int) (yRelativeToGrid / cellHeight), (int) (xRelativeToGrid / cellWidth), true);
+                            moveRobot(dragRow(), dragColumn(), true);
                         }
                     } else if (obstacleDrag && event.getClipDescription().getLabel().equals(obstacleLabel)) {
                         // the obstacle has been dragged out of the grid
                         ObstacleView obstacleView = (ObstacleView) draggedView;
                         Pair<Integer, Integer> currentPos = obstacleView.getGridPos();
-                        grid[currentPos.first][currentPos.second] = Cell.EMPTY;
+                        arenaModel.removeObstacle(ArenaModel.gridColumnToX(currentPos.second),
+                                ArenaModel.gridRowToY(currentPos.first));
                         obstacleView.resetPosition();
                         binding.obstaclesCard.setBackgroundColor(ThemeManager.getColor(requireContext(),
                                 com.google.android.material.R.attr.colorSecondary));
@@ -745,94 +1173,65 @@ public class MainFragment extends Fragment {
                     draggedView.setVisibility(View.VISIBLE);
                     break;
                 case DragEvent.ACTION_DRAG_LOCATION:
-                    if (event.getClipDescription().getLabel().equals(carLabel)) {
-                        // we check if the car is in danger of hitting an obstacle
-                        boolean danger = true;
-                        if (gridRect.contains((int) event.getX(), (int) event.getY())) {
-                            float xRelativeToGrid = event.getX() - binding.robotCar.getWidth() / 2.0f
-                                    - binding.grid.getX();
-                            float yRelativeToGrid = event.getY() - binding.robotCar.getHeight() / 2.0f
-                                    - binding.grid.getY();
-
-                            float cellWidth = binding.grid.getWidth() / 21.0f;
-                            float cellHeight = binding.grid.getHeight() / 21.0f;
-
-                            int rRow = (int) (yRelativeToGrid / cellHeight), rCol = (int) (xRelativeToGrid / cellWidth);
-                            int row = Math.max(0, Math.min(rRow, 18)), col = Math.max(1, Math.min(rCol, 19));
-                            if (row == rRow && col == rCol) {
-                                if (grid[row][col] != Cell.OBSTACLE && grid[row + 1][col] != Cell.OBSTACLE
-                                        && grid[row][col + 1] != Cell.OBSTACLE
-                                        && grid[row + 1][col + 1] != Cell.OBSTACLE) {
-                                    danger = false;
-                                }
-                            }
-                        }
-                        shadowBuilder.setDanger(danger);
-                        binding.robotCar.updateDragShadow(shadowBuilder);
-                    } else {
-                        if (gridRect.contains((int) event.getX(), (int) event.getY())) {
-                            // obstacle being dragged in the grid, find the cell being dragged over
-                            View v1 = (View) event.getLocalState();
-                            float xRelativeToGrid = event.getX() - v1.getWidth() / 2.0f - binding.grid.getX();
-                            float yRelativeToGrid = event.getY() - v1.getHeight() / 2.0f - binding.grid.getY();
-
-                            float cellWidth = binding.grid.getWidth() / 21.0f;
-                            float cellHeight = binding.grid.getHeight() / 21.0f;
-
-                            int row = Math.max(0, Math.min((int) (yRelativeToGrid / cellHeight), 19));
-                            int column = Math.max(1, Math.min((int) (xRelativeToGrid / cellWidth), 20));
-
-                            // update the drag indicators
-                            binding.coordPreview
-                                    .setText(String.format(Locale.ENGLISH, "(%d,%d)", column - 1, 20 - row - 1));
-                            changeAxesColors(row, column);
-                        } else {
-                            // obstacle being dragged out of grid. reset drag position indicators.
-                            changeAxesColors(-1, -1);
-                            binding.coordPreview.setText("");
-                        }
-                    }
-                    if (!obstacleDrag)
-                        break;
-                    // highlight the obstacles card and show the trash icon if the obstacle is being
-                    // dragged out of the grid
-                    if (!gridRect.contains((int) event.getX(), (int) event.getY())) {
-                        binding.obstaclesCard.setBackgroundColor(ThemeManager.getColor(requireContext(),
-                                com.google.android.material.R.attr.colorPrimary));
-                        binding.trash.setAlpha(1.0f);
-                    } else {
-                        binding.obstaclesCard.setBackgroundColor(ThemeManager.getColor(requireContext(),
-                                com.google.android.material.R.attr.colorSecondary));
-                        binding.trash.setAlpha(0.0f);
+                    // locations arrive faster than the display refreshes, only the last one counts
+                    dragX = event.getX();
+                    dragY = event.getY();
+                    if (!dragFramePosted) {
+                        dragFramePosted = true;
+                        Choreographer.getInstance().postFrameCallback(dragFrame);
                     }
                     break;
             }
             return true;
         });
 
-        // initialize the grid
-        for (int row = 0; row < 21; row++) {
-            for (int col = 0; col < 21; col++) {
-                View v;
-                GridLayout.LayoutParams params = getLayoutFor(row, col);
-                if (col == 0) {
-                    v = getAxisLabel(20 - row, true);
-                    params.setMargins(1, 0, 4, 0);
-                } else if (row == 20) {
-                    v = getAxisLabel(col, false);
-                } else {
-                    v = new View(getContext());
-                    v.setBackgroundColor(Color.parseColor("#FFFFFF"));
-                    params.setMargins(1, 1, 1, 1);
-                }
-                binding.grid.addView(v, (row * 21) + col, params);
-            }
-        }
+        applyTheme();
+    }
+
+    /**
+     * Colours the views that depend on the theme, so that a new theme can be
+     * applied without inflating the fragment again and losing the arena, the
+     * timer and the message log. The views coloured in fragment_main.xml are
+     * coloured again from its own theme attributes, the rest is set here.
+     */
+    private void applyTheme() {
+        Context context = requireContext();
+        if (themedLayout == null)
+            themedLayout = new ThemedLayout(context.getResources(), R.layout.fragment_main);
+        themedLayout.apply(binding.getRoot(), context);
+
+        int primary = ThemeManager.getColor(context, com.google.android.material.R.attr.colorPrimary);
+        int primaryDark = ThemeManager.getColor(context, com.google.android.material.R.attr.colorPrimaryDark);
+        int secondary = ThemeManager.getColor(context, com.google.android.material.R.attr.colorSecondary);
+        int accent = ThemeManager.getColor(context, com.google.android.material.R.attr.colorAccent);
+        int disabled = ThemeManager.getColor(context, com.google.android.material.R.attr.colorSecondaryVariant);
+        for (Button button : new Button[] { binding.wk8button, binding.wk9button })
+            if (!button.isEnabled())
+                button.setTextColor(disabled);
+        // the drag highlight replaces the card's background
+        if (binding.obstaclesCard.getBackground() instanceof ColorDrawable)
+            binding.obstaclesCard.setBackgroundColor(secondary);
+        messageLogAdapter.setColor(primary);
+        // the backgrounds are drawn again from the cache, which the new theme cleared
+        for (int i = 0; i < binding.parentRelative.getChildCount(); i++)
+            if (binding.parentRelative.getChildAt(i) instanceof ObstacleView)
+                ((ObstacleView) binding.parentRelative.getChildAt(i)).updateBackground();
+
+        // colour the grid, the labels and the drag highlight depend on light/dark mode
+        boolean night = (context.getResources().getConfiguration().uiMode
+                & Configuration.UI_MODE_NIGHT_MASK) == Configuration.UI_MODE_NIGHT_YES;
+        binding.grid.setColors(Color.WHITE,
+                ThemeManager.getColor(context, androidx.appcompat.R.attr.colorAccent),
+                night ? accent : primaryDark, night ? primaryDark : accent);
+        binding.grid.setRouteColors(primaryDark, primary);
     }
 
     @Override
     public void onDestroyView() {
         super.onDestroyView();
+        endDrag();
+        timeHandler.removeCallbacks(linkStatsUpdater);
+        Choreographer.getInstance().removeFrameCallback(stopWatch);
         binding = null;
     }
 
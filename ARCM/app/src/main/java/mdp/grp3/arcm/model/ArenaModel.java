@@ -0,0 +1,188 @@
+package mdp.grp3.arcm.model;
+
+import java.util.Arrays;
+
+import mdp.grp3.arcm.constant.Direction;
+
+/**
+ * What occupies the 20x20 arena: the obstacles and the 2x2 robot. Every row is
+ * a bitmask of its obstacles, so checking the robot's footprint is a couple of
+ * masks instead of four cell lookups. It has no Android dependencies.
+ * <p>
+ * Coordinates are the protocol's: x to the right and y upwards, with (0, 0) at
+ * the bottom left. The UI grid counts rows downwards and has the y axis labels
+ * in column 0 and the x axis labels in row 20, the static methods convert
+ * between the two.
+ */
+public class ArenaModel {
+    public static final int SIZE = 20; // cells per side
+    public static final int ROBOT_SIZE = 2; // cells per side of the robot
+    public static final int GRID_FIRST_COLUMN = 1; // grid column of x = 0
+    public static final int GRID_LAST_ROW = 19; // grid row of y = 0
+
+    private static final int ROBOT_MASK = (1 << ROBOT_SIZE) - 1;
+
+    private final int[] obstacles = new int[SIZE]; // bit x of obstacles[y] is the cell (x, y)
+    private int robotX = -1, robotY = -1; // bottom left cell of the robot, -1 when not placed
+
+    /**
+     * @param column - A UI grid column
+     * @return the x coordinate of the column
+     */
+    public static int gridColumnToX(int column) {
+        return column - GRID_FIRST_COLUMN;
+    }
+
+    /**
+     * @param row - A UI grid row
+     * @return the y coordinate of the row
+     */
+    public static int gridRowToY(int row) {
+        return GRID_LAST_ROW - row;
+    }
+
+    /**
+     * @param x - An x coordinate
+     * @return the UI grid column of the coordinate
+     */
+    public static int xToGridColumn(int x) {
+        return x + GRID_FIRST_COLUMN;
+    }
+
+    /**
+     * @param y - A y coordinate
+     * @return the UI grid row of the coordinate
+     */
+    public static int yToGridRow(int y) {
+        return GRID_LAST_ROW - y;
+    }
+
+    /**
+     * @param rotation - The rotation of the robot on screen in degrees, a
+     *                 multiple of 90
+     * @return the direction the robot faces
+     */
+    public static char rotationToDirection(int rotation) {
+        switch (((rotation % 360) + 360) % 360) {
+            case 90:
+                return Direction.RIGHT;
+            case 180:
+                return Direction.BACKWARD;
+            case 270:
+                return Direction.LEFT;
+            default:
+                return Direction.FORWARD;
+        }
+    }
+
+    /**
+     * @return whether the cell is in the arena
+     */
+    public static boolean isInside(int x, int y) {
+        return x >= 0 && x < SIZE && y >= 0 && y < SIZE;
+    }
+
+    /**
+     * @return whether the cell has an obstacle, false outside the arena
+     */
+    public boolean hasObstacle(int x, int y) {
+        return isInside(x, y) && (obstacles[y] >> x & 1) != 0;
+    }
+
+    /**
+     * @return whether the cell is covered by the robot
+     */
+    public boolean hasRobot(int x, int y) {
+        return robotX >= 0 && x - robotX >= 0 && x - robotX < ROBOT_SIZE && y - robotY >= 0
+                && y - robotY < ROBOT_SIZE;
+    }
+
+    /**
+     * @return whether the cell is in the arena and neither an obstacle nor the
+     *         robot covers it
+     */
+    public boolean isFree(int x, int y) {
+        return isInside(x, y) && !hasObstacle(x, y) && !hasRobot(x, y);
+    }
+
+    /**
+     * Puts an obstacle on a free cell
+     *
+     * @param x - The x coordinate of the cell
+     * @param y - The y coordinate of the cell
+     * @return whether the obstacle was placed
+     */
+    public boolean placeObstacle(int x, int y) {
+        if (!isFree(x, y))
+            return false;
+        obstacles[y] |= 1 << x;
+        return true;
+    }
+
+    /**
+     * Removes the obstacle on a cell, if any
+     *
+     * @param x - The x coordinate of the cell
+     * @param y - The y coordinate of the cell
+     */
+    public void removeObstacle(int x, int y) {
+        if (isInside(x, y))
+            obstacles[y] &= ~(1 << x);
+    }
+
+    /**
+     * @param x - The x coordinate of the robot's bottom left cell
+     * @param y - The y coordinate of the robot's bottom left cell
+     * @return whether the robot would be in the arena without touching an
+     *         obstacle
+     */
+    public boolean canPlaceRobot(int x, int y) {
+        if (x < 0 || y < 0 || x > SIZE - ROBOT_SIZE || y > SIZE - ROBOT_SIZE)
+            return false;
+        return ((obstacles[y] | obstacles[y + 1]) >> x & ROBOT_MASK) == 0;
+    }
+
+    /**
+     * Moves the robot if it can be placed there
+     *
+     * @param x - The x coordinate of the robot's bottom left cell
+     * @param y - The y coordinate of the robot's bottom left cell
+     * @return whether the robot was moved
+     */
+    public boolean moveRobot(int x, int y) {
+        if (!canPlaceRobot(x, y))
+            return false;
+        robotX = x;
+        robotY = y;
+        return true;
+    }
+
+    /**
+     * @return whether the robot is in the arena
+     */
+    public boolean hasRobot() {
+        return robotX >= 0;
+    }
+
+    /**
+     * @return the x coordinate of the robot's bottom left cell, -1 if not placed
+     */
+    public int getRobotX() {
+        return robotX;
+    }
+
+    /**
+     * @return the y coordinate of the robot's bottom left cell, -1 if not placed
+     */
+    public int getRobotY() {
+        return robotY;
+    }
+
+    /**
+     * Removes the robot and all the obstacles
+     */
+    public void clear() {
+        Arrays.fill(obstacles, 0);
+        robotX = robotY = -1;
+    }
+}
@@ -0,0 +1,247 @@
+package mdp.grp3.arcm.model;
+
+import java.util.Arrays;
+
+import mdp.grp3.arcm.constant.Direction;
+import mdp.grp3.arcm.constant.RPI_TO_ARCM.PathCommands;
+
+/**
+ * The route of a planned path, replayed from the robot's start: every move as a
+ * straight line or a quarter turn, and the stops where a picture is taken. The
+ * moves are kept in flat arrays that grow as parts of the path arrive, so the
+ * route can be turned into a few drawing paths in one go. It has no Android
+ * dependencies.
+ * <p>
+ * Coordinates are in cm, with x to the right and y upwards from the bottom left
+ * of the arena, like {@link ArenaModel} but 10 times finer.
+ */
+public class PlannedRoute {
+    public static final int CELL_SIZE = 10; // cm per arena cell
+
+    // how far each turn takes the robot, in cm ahead of it and to its right.
+    // Mirrors MOVEMENTS in Algorithm/planner.py, which counts 5 cm cells
+    private static final int[][] TURNS = {
+            { 20, 40 }, // FORWARD_RIGHT: FR_Y ahead, FR_X right
+            { 10, -30 }, // FORWARD_LEFT: FL_Y ahead, FL_X left
+            { 0, 0 }, // BACKWARD is straight
+            { -40, 20 }, // BACKWARD_RIGHT: BR_Y behind, BR_X right
+            { -30, -10 }, // BACKWARD_LEFT: BL_Y behind, BL_X left
+    };
+
+    private float x, y; // where the robot is after the moves so far
+    private char direction = Direction.FORWARD; // where the robot faces after the moves so far
+
+    private float[] moves = new float[6 * 64]; // start, control point and end of every move
+    private boolean[] reverse = new boolean[64]; // whether the robot drives the move backwards
+    private int moveCount;
+    private float[] stops = new float[2 * 8]; // where every picture is taken
+    private int[] stopObstacles = new int[8];
+    private int stopCount;
+
+    /**
+     * Removes the route and starts a new one
+     *
+     * @param x         - The x of the robot's centre
+     * @param y         - The y of the robot's centre
+     * @param direction - The direction the robot faces
+     */
+    public void reset(float x, float y, char direction) {
+        this.x = x;
+        this.y = y;
+        this.direction = direction;
+        moveCount = 0;
+        stopCount = 0;
+    }
+
+    /**
+     * Starts a new route from the robot's place on the arena
+     *
+     * @param robotX    - The x coordinate of the robot's bottom left cell
+     * @param robotY    - The y coordinate of the robot's bottom left cell
+     * @param direction - The direction the robot faces
+     */
+    public void resetFromCell(int robotX, int robotY, char direction) {
+        float half = ArenaModel.ROBOT_SIZE * CELL_SIZE / 2f;
+        reset(robotX * CELL_SIZE + half, robotY * CELL_SIZE + half, direction);
+    }
+
+    /**
+     * Replays a move of the path from where the robot is
+     *
+     * @param command - One of {@link PathCommands}
+     * @param value   - The distance in cm of a straight move, the obstacle of a
+     *                capture
+     * @return whether the command is known, unknown ones are skipped
+     */
+    public boolean add(int command, int value) {
+        float aheadX = dx(direction), aheadY = dy(direction);
+        // the right of a direction is its ahead turned clockwise
+        float rightX = aheadY, rightY = -aheadX;
+        float ahead, right;
+        switch (command) {
+            case PathCommands.FORWARD:
+                ahead = value;
+                right = 0;
+                break;
+            case PathCommands.BACKWARD:
+                ahead = -value;
+                right = 0;
+                break;
+            case PathCommands.FORWARD_RIGHT:
+            case PathCommands.FORWARD_LEFT:
+            case PathCommands.BACKWARD_RIGHT:
+            case PathCommands.BACKWARD_LEFT:
+                ahead = TURNS[command - PathCommands.FORWARD_RIGHT][0];
+                right = TURNS[command - PathCommands.FORWARD_RIGHT][1];
+                break;
+            case PathCommands.CAPTURE:
+                addStop(value);
+                return true;
+            default:
+                return false;
+        }
+        if (moveCount == reverse.length) {
+            moves = Arrays.copyOf(moves, moves.length * 2);
+            reverse = Arrays.copyOf(reverse, reverse.length * 2);
+        }
+        int i = 6 * moveCount;
+        moves[i] = x;
+        moves[i + 1] = y;
+        // a turn leaves along the old heading and arrives along the new one, so the
+        // corner where the two lines meet gives a smooth curve. Straight moves put
+        // the control point on the line
+        moves[i + 2] = x + ahead * aheadX;
+        moves[i + 3] = y + ahead * aheadY;
+        x += ahead * aheadX + right * rightX;
+        y += ahead * aheadY + right * rightY;
+        moves[i + 4] = x;
+        moves[i + 5] = y;
+        reverse[moveCount] = ahead < 0;
+        moveCount++;
+        if (right != 0)
+            direction = turn(direction, (right > 0) == (ahead > 0));
+        return true;
+    }
+
+    private void addStop(int obstacle) {
+        if (stopCount == stopObstacles.length) {
+            stops = Arrays.copyOf(stops, stops.length * 2);
+            stopObstacles = Arrays.copyOf(stopObstacles, stopObstacles.length * 2);
+        }
+        stops[2 * stopCount] = x;
+        stops[2 * stopCount + 1] = y;
+        stopObstacles[stopCount++] = obstacle;
+    }
+
+    private static float dx(char direction) {
+        return direction == Direction.RIGHT ? 1 : direction == Direction.LEFT ? -1 : 0;
+    }
+
+    private static float dy(char direction) {
+        return direction == Direction.FORWARD ? 1 : direction == Direction.BACKWARD ? -1 : 0;
+    }
+
+    /**
+     * @param direction - A direction
+     * @param clockwise - Whether to turn right
+     * @return the direction a quarter turn away
+     */
+    private static char turn(char direction, boolean clockwise) {
+        switch (direction) {
+            case Direction.FORWARD:
+                return clockwise ? Direction.RIGHT : Direction.LEFT;
+            case Direction.RIGHT:
+                return clockwise ? Direction.BACKWARD : Direction.FORWARD;
+            case Direction.BACKWARD:
+                return clockwise ? Direction.LEFT : Direction.RIGHT;
+            default:
+                return clockwise ? Direction.FORWARD : Direction.BACKWARD;
+        }
+    }
+
+    /**
+     * @return the x of the robot after the moves so far
+     */
+    public float getX() {
+        return x;
+    }
+
+    /**
+     * @return the y of the robot after the moves so far
+     */
+    public float getY() {
+        return y;
+    }
+
+    /**
+     * @return the direction the robot faces after the moves so far
+     */
+    public char getDirection() {
+        return direction;
+    }
+
+    /**
+     * @return the number of moves, not counting the stops
+     */
+    public int getMoveCount() {
+        return moveCount;
+    }
+
+    /**
+     * @return the start, control point and end of every move as 6 floats, only
+     *         the first {@link #getMoveCount()} are valid. Not a copy, so it must
+     *         not be changed
+     */
+    public float[] getMoves() {
+        return moves;
+    }
+
+    /**
+     * @param i - The index of the move
+     * @return whether the robot drives the move backwards
+     */
+    public boolean isReverse(int i) {
+        return reverse[i];
+    }
+
+    /**
+     * @param i - The index of the move
+     * @return whether the move is a turn
+     */
+    public boolean isTurn(int i) {
+        int j = 6 * i;
+        // the control point of a straight move is its end
+        return moves[j + 2] != moves[j + 4] || moves[j + 3] != moves[j + 5];
+    }
+
+    /**
+     * @return the number of stops where a picture is taken
+     */
+    public int getStopCount() {
+        return stopCount;
+    }
+
+    /**
+     * @param i - The index of the stop
+     * @return the x of the stop
+     */
+    public float getStopX(int i) {
+        return stops[2 * i];
+    }
+
+    /**
+     * @param i - The index of the stop
+     * @return the y of the stop
+     */
+    public float getStopY(int i) {
+        return stops[2 * i + 1];
+    }
+
+    /**
+     * @param i - The index of the stop
+     * @return the index of the obstacle pictured at the stop
+     */
+    public int getStopObstacle(int i) {
+        return stopObstacles[i];
+    }
+}
@@ -0,0 +1,164 @@
+package mdp.grp3.arcm.protocol;
+
+import java.nio.ByteBuffer;
+
+import mdp.grp3.arcm.constant.ARCM_TO_RPI;
+import mdp.grp3.arcm.constant.Direction;
+import mdp.grp3.arcm.model.ArenaModel;
+
+/**
+ * The arena sent to the RPi to start the Week 8 task. It is length prefixed:
+ * the type and the length of the rest, then the car's x, y and direction,
+ * followed by the x, y and direction of every obstacle that has a direction.
+ * The RPi passes everything after the length on to the algorithm. Coordinates
+ * are arena cells with (0, 0) at the bottom left.
+ */
+public class Arena implements Packet {
+    public static final int MAX_OBSTACLES = 8;
+
+    private int carX, carY;
+    private char carDirection;
+    private final int[] obstacleX = new int[MAX_OBSTACLES];
+    private final int[] obstacleY = new int[MAX_OBSTACLES];
+    private final char[] obstacleDirection = new char[MAX_OBSTACLES];
+    private int obstacleCount;
+
+    /**
+     * Removes the car and all the obstacles
+     */
+    public void clear() {
+        carX = carY = 0;
+        carDirection = Direction.FORWARD;
+        obstacleCount = 0;
+    }
+
+    /**
+     * Sets the car position
+     *
+     * @param x         - The x coordinate of the car's bottom left cell
+     * @param y         - The y coordinate of the car's bottom left cell
+     * @param direction - The direction the car faces
+     */
+    public void setCar(int x, int y, char direction) {
+        carX = x;
+        carY = y;
+        carDirection = direction;
+    }
+
+    /**
+     * Sets the car position from its place on the UI grid
+     *
+     * @param row      - The grid row of the car's top left cell
+     * @param col      - The grid column of the car's top left cell
+     * @param rotation - The rotation of the car in degrees, a multiple of 90
+     */
+    public void setCarFromGrid(int row, int col, int rotation) {
+        // the car covers 2 rows, its bottom row is the one below
+        setCar(ArenaModel.gridColumnToX(col), ArenaModel.gridRowToY(row + 1),
+                ArenaModel.rotationToDirection(rotation));
+    }
+
+    /**
+     * Adds an obstacle
+     *
+     * @param x         - The x coordinate of the obstacle
+     * @param y         - The y coordinate of the obstacle
+     * @param direction - The side of the obstacle with the target
+     */
+    public void addObstacle(int x, int y, char direction) {
+        if (obstacleCount == MAX_OBSTACLES)
+            throw new IllegalStateException("Too many obstacles");
+        obstacleX[obstacleCount] = x;
+        obstacleY[obstacleCount] = y;
+        obstacleDirection[obstacleCount] = direction;
+        obstacleCount++;
+    }
+
+    /**
+     * Adds an obstacle from its place on the UI grid
+     *
+     * @param row       - The grid row of the obstacle
+     * @param col       - The grid column of the obstacle
+     * @param direction - The side of the obstacle with the target
+     */
+    public void addObstacleFromGrid(int row, int col, char direction) {
+        addObstacle(ArenaModel.gridColumnToX(col), ArenaModel.gridRowToY(row), direction);
+    }
+
+    /**
+     * @return the x coordinate of the car's bottom left cell
+     */
+    public int getCarX() {
+        return carX;
+    }
+
+    /**
+     * @return the y coordinate of the car's bottom left cell
+     */
+    public int getCarY() {
+        return carY;
+    }
+
+    /**
+     * @return the direction the car faces
+     */
+    public char getCarDirection() {
+        return carDirection;
+    }
+
+    /**
+     * @return the number of obstacles
+     */
+    public int getObstacleCount() {
+        return obstacleCount;
+    }
+
+    /**
+     * @param index - The index of the obstacle
+     * @return the x coordinate of an obstacle
+     */
+    public int getObstacleX(int index) {
+        return obstacleX[index];
+    }
+
+    /**
+     * @param index - The index of the obstacle
+     * @return the y coordinate of an obstacle
+     */
+    public int getObstacleY(int index) {
+        return obstacleY[index];
+    }
+
+    /**
+     * @param index - The index of the obstacle
+     * @return the side of an obstacle with the target
+     */
+    public char getObstacleDirection(int index) {
+        return obstacleDirection[index];
+    }
+
+    @Override
+    public int getType() {
+        return ARCM_TO_RPI.ARENA;
+    }
+
+    @Override
+    public void writeTo(ByteBuffer buffer) {
+        buffer.put((byte) ARCM_TO_RPI.ARENA).put((byte) (3 + 3 * obstacleCount));
+        buffer.put((byte) carX).put((byte) carY).put((byte) carDirection);
+        for (int i = 0; i < obstacleCount; i++)
+            buffer.put((byte) obstacleX[i]).put((byte) obstacleY[i]).put((byte) obstacleDirection[i]);
+    }
+
+    @Override
+    public void readFrom(ByteBuffer buffer) {
+        clear();
+        buffer.get();
+        buffer.get(); // the codec has checked the length
+        carX = buffer.get();
+        carY = buffer.get();
+        carDirection = (char) (buffer.get() & 0xFF);
+        while (buffer.remaining() >= 3 && obstacleCount < MAX_OBSTACLES)
+            addObstacle(buffer.get(), buffer.get(), (char) (buffer.get() & 0xFF));
+    }
+}
@@ -0,0 +1,45 @@
+package mdp.grp3.arcm.protocol;
+
+import java.nio.ByteBuffer;
+
+import mdp.grp3.arcm.constant.RPI_TO_ARCM;
+import mdp.grp3.arcm.constant.Task;
+
+/**
+ * Sent by the RPi when a task has been completed. Each task has its own type
+ * byte and no arguments.
+ */
+public class Finished implements Packet {
+    private final char task; // one of Task
+
+    /**
+     * Constructor for Finished.
+     *
+     * @param task - The task that was completed, one of {@link Task}
+     */
+    public Finished(char task) {
+        this.task = task;
+    }
+
+    /**
+     * @return the task that was completed, one of {@link Task}
+     */
+    public char getTask() {
+        return task;
+    }
+
+    @Override
+    public int getType() {
+        return task == Task.WEEK8 ? RPI_TO_ARCM.FINISHED_WEEK8 : RPI_TO_ARCM.FINISHED_WEEK9;
+    }
+
+    @Override
+    public void writeTo(ByteBuffer buffer) {
+        buffer.put((byte) getType()).put((byte) 0).put((byte) 0).put((byte) 0);
+    }
+
+    @Override
+    public void readFrom(ByteBuffer buffer) {
+        buffer.position(buffer.limit());
+    }
+}
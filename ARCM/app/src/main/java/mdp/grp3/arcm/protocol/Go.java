@@ -0,0 +1,26 @@
+package mdp.grp3.arcm.protocol;
+
+import java.nio.ByteBuffer;
+
+import mdp.grp3.arcm.constant.ARCM_TO_RPI;
+
+/**
+ * Tells the RPi to start the Week 9 task
+ */
+public class Go implements Packet {
+
+    @Override
+    public int getType() {
+        return ARCM_TO_RPI.GO;
+    }
+
+    @Override
+    public void writeTo(ByteBuffer buffer) {
+        buffer.put((byte) ARCM_TO_RPI.GO).put((byte) 'O');
+    }
+
+    @Override
+    public void readFrom(ByteBuffer buffer) {
+        buffer.position(buffer.limit());
+    }
+}
@@ -0,0 +1,68 @@
+package mdp.grp3.arcm.protocol;
+
+import java.nio.ByteBuffer;
+
+import mdp.grp3.arcm.constant.ARCM_TO_RPI;
+import mdp.grp3.arcm.constant.RPI_TO_ARCM;
+
+/**
+ * A PING from the ARCM or the PONG answering it. Both carry a sequence number
+ * so that the answer can be matched to the ping.
+ */
+public class Heartbeat implements Packet {
+    private final char type; // ARCM_TO_RPI.PING or RPI_TO_ARCM.PONG
+    private int sequence; // 0 - 255
+
+    private Heartbeat(char type) {
+        this.type = type;
+    }
+
+    /**
+     * @return a new PING message
+     */
+    public static Heartbeat ping() {
+        return new Heartbeat(ARCM_TO_RPI.PING);
+    }
+
+    /**
+     * @return a new PONG message
+     */
+    public static Heartbeat pong() {
+        return new Heartbeat(RPI_TO_ARCM.PONG);
+    }
+
+    /**
+     * Sets the sequence number
+     *
+     * @param sequence - The sequence number, only the lowest byte is sent
+     * @return this message
+     */
+    public Heartbeat set(int sequence) {
+        this.sequence = sequence & 0xFF;
+        return this;
+    }
+
+    /**
+     * @return the sequence number
+     */
+    public int getSequence() {
+        return sequence;
+    }
+
+    @Override
+    public int getType() {
+        return type;
+    }
+
+    @Override
+    public void writeTo(ByteBuffer buffer) {
+        buffer.put((byte) type).put((byte) sequence).put((byte) 0).put((byte) 0);
+    }
+
+    @Override
+    public void readFrom(ByteBuffer buffer) {
+        buffer.get();
+        sequence = buffer.get() & 0xFF;
+        buffer.position(buffer.limit());
+    }
+}
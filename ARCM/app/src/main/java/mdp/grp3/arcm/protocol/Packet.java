@@ -0,0 +1,28 @@
+package mdp.grp3.arcm.protocol;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A message exchanged between the ARCM and the RPi. Messages are mutable so
+ * that the codec can reuse one instance per type instead of allocating.
+ */
+public interface Packet {
+    /**
+     * @return the type byte on the wire, the first byte of every message
+     */
+    int getType();
+
+    /**
+     * Writes the whole message, including the type byte
+     *
+     * @param buffer - The buffer to write to
+     */
+    void writeTo(ByteBuffer buffer);
+
+    /**
+     * Reads the whole message, including the type byte, replacing the contents
+     *
+     * @param buffer - The buffer holding exactly one message
+     */
+    void readFrom(ByteBuffer buffer);
+}
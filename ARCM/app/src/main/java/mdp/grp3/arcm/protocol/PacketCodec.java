@@ -0,0 +1,115 @@
+package mdp.grp3.arcm.protocol;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+
+import mdp.grp3.arcm.util.FrameDecoder;
+
+/**
+ * Encodes and decodes packets according to the {@link Schema}. Encoding writes
+ * into a single reused buffer and decoding fills a reused message per type, so
+ * neither allocates. Not thread safe, every thread should have its own codec.
+ */
+public class PacketCodec {
+    private final PacketType[] types = new PacketType[256]; // decodable types by type byte
+    private final Packet[] packets = new Packet[256]; // reused packet for each type byte
+    private final ByteBuffer encodeBuffer = ByteBuffer.allocate(FrameDecoder.MAX_FRAME_LENGTH);
+    private final ByteBuffer decodeBuffer = ByteBuffer.allocate(FrameDecoder.MAX_FRAME_LENGTH);
+
+    /**
+     * Constructor for PacketCodec.
+     *
+     * @param types - The types this codec decodes, see {@link #forArcm()} and
+     *              {@link #forRpi()}
+     */
+    public PacketCodec(PacketType... types) {
+        for (PacketType type : types)
+            register(type);
+    }
+
+    /**
+     * @return a codec that decodes the packets sent by the RPi
+     */
+    public static PacketCodec forArcm() {
+        return new PacketCodec(Schema.RPI_TO_ARCM_TYPES);
+    }
+
+    /**
+     * @return a codec that decodes the packets sent by the ARCM, used to stand in
+     *         for the RPi
+     */
+    public static PacketCodec forRpi() {
+        return new PacketCodec(Schema.ARCM_TO_RPI_TYPES);
+    }
+
+    /**
+     * Adds a type that can be decoded, replacing any with the same type byte
+     *
+     * @param type - The type to add
+     */
+    public void register(PacketType type) {
+        types[type.id & 0xFF] = type;
+        packets[type.id & 0xFF] = type.create();
+    }
+
+    /**
+     * Tells a frame decoder the length of every type this codec decodes
+     *
+     * @param decoder - The decoder to configure
+     */
+    public void configure(FrameDecoder decoder) {
+        for (PacketType type : types)
+            if (type != null)
+                decoder.setFrameLength(type.id, type.length);
+    }
+
+    /**
+     * Encodes a message. The buffer is reused, so its contents must be consumed
+     * before the next call.
+     *
+     * @param message - The message to encode
+     * @return the buffer holding the encoded message, ready to be read
+     */
+    public ByteBuffer encode(Packet message) {
+        encodeBuffer.clear();
+        message.writeTo(encodeBuffer);
+        encodeBuffer.flip();
+        return encodeBuffer;
+    }
+
+    /**
+     * Decodes a single message. The returned message is reused, so it must be
+     * consumed before the next call.
+     *
+     * @param buffer - The buffer holding the message
+     * @param offset - The offset of the message in the buffer
+     * @param length - The length of the message
+     * @return the decoded message, or null if the type is unknown or the message
+     *         has the wrong length
+     */
+    public Packet decode(byte[] buffer, int offset, int length) {
+        if (length <= 0 || length > decodeBuffer.capacity())
+            return null;
+        int id = buffer[offset] & 0xFF;
+        PacketType type = types[id];
+        if (type == null || !hasValidLength(type, buffer, offset, length))
+            return null;
+        decodeBuffer.clear();
+        decodeBuffer.put(buffer, offset, length).flip();
+        try {
+            packets[id].readFrom(decodeBuffer);
+        } catch (BufferUnderflowException e) {
+            return null; // too short for its own header
+        }
+        return packets[id];
+    }
+
+    /**
+     * Checks the length of a message against its type
+     */
+    private static boolean hasValidLength(PacketType type, byte[] buffer, int offset, int length) {
+        if (type.length == FrameDecoder.LENGTH_PREFIXED)
+            return length >= 2 && length == 2 + (buffer[offset + 1] & 0xFF);
+        return length == type.length;
+    }
+}
@@ -0,0 +1,36 @@
+package mdp.grp3.arcm.protocol;
+
+import java.util.function.Supplier;
+
+import mdp.grp3.arcm.util.FrameDecoder;
+
+/**
+ * Describes one kind of message on the wire: its type byte, its length and how
+ * to create an instance to decode it into.
+ */
+public final class PacketType {
+    public final int id; // the type byte
+    public final int length; // the length in bytes, or FrameDecoder.LENGTH_PREFIXED
+    private final Supplier<? extends Packet> factory;
+
+    /**
+     * Constructor for PacketType.
+     *
+     * @param id      - The type byte
+     * @param length  - The length including the type byte, or
+     *                {@link FrameDecoder#LENGTH_PREFIXED}
+     * @param factory - Creates an empty message of this type
+     */
+    public PacketType(int id, int length, Supplier<? extends Packet> factory) {
+        this.id = id;
+        this.length = length;
+        this.factory = factory;
+    }
+
+    /**
+     * @return a new empty message of this type
+     */
+    public Packet create() {
+        return factory.get();
+    }
+}
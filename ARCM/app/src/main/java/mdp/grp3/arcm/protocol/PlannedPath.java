@@ -0,0 +1,127 @@
+package mdp.grp3.arcm.protocol;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+
+import mdp.grp3.arcm.constant.RPI_TO_ARCM;
+
+/**
+ * Sent by the RPi when the algorithm has planned the path of the Week 8 task.
+ * It is length prefixed: the type, the length of the rest, the index of this
+ * part and the number of parts, then a command and a value for every move
+ * (see {@link RPI_TO_ARCM.PathCommands}). A path too long for one message is
+ * split into parts, sent in order.
+ */
+public class PlannedPath implements Packet {
+    public static final int HEADER_LENGTH = 2; // part and parts, after the type and the length
+    public static final int MAX_MOVES = (255 - HEADER_LENGTH) / 2; // moves in one part
+
+    private int part, parts; // index of this part, and the number of parts of the path
+    private final byte[] commands = new byte[MAX_MOVES];
+    private final byte[] values = new byte[MAX_MOVES];
+    private int moveCount;
+
+    /**
+     * Starts a part with no moves
+     *
+     * @param part  - The index of this part, starting from 0
+     * @param parts - The number of parts of the path
+     * @return this message
+     */
+    public PlannedPath set(int part, int parts) {
+        this.part = part;
+        this.parts = parts;
+        moveCount = 0;
+        return this;
+    }
+
+    /**
+     * Adds a move to this part
+     *
+     * @param command - One of {@link RPI_TO_ARCM.PathCommands}
+     * @param value   - The distance, angle or obstacle of the move
+     * @return this message
+     */
+    public PlannedPath addMove(int command, int value) {
+        if (moveCount == MAX_MOVES)
+            throw new IllegalStateException("Too many moves");
+        commands[moveCount] = (byte) command;
+        values[moveCount] = (byte) value;
+        moveCount++;
+        return this;
+    }
+
+    /**
+     * @return the index of this part, starting from 0
+     */
+    public int getPart() {
+        return part;
+    }
+
+    /**
+     * @return the number of parts of the path
+     */
+    public int getParts() {
+        return parts;
+    }
+
+    /**
+     * @return whether this is the last part of the path
+     */
+    public boolean isLastPart() {
+        return part >= parts - 1;
+    }
+
+    /**
+     * @return the number of moves in this part
+     */
+    public int getMoveCount() {
+        return moveCount;
+    }
+
+    /**
+     * @param i - The index of the move in this part
+     * @return the command of the move, one of {@link RPI_TO_ARCM.PathCommands}
+     */
+    public int getCommand(int i) {
+        return commands[i] & 0xFF;
+    }
+
+    /**
+     * @param i - The index of the move in this part
+     * @return the value of the move
+     */
+    public int getValue(int i) {
+        return values[i] & 0xFF;
+    }
+
+    @Override
+    public int getType() {
+        return RPI_TO_ARCM.PLANNED_PATH;
+    }
+
+    @Override
+    public void writeTo(ByteBuffer buffer) {
+        buffer.put((byte) RPI_TO_ARCM.PLANNED_PATH).put((byte) (HEADER_LENGTH + 2 * moveCount))
+                .put((byte) part).put((byte) parts);
+        for (int i = 0; i < moveCount; i++)
+            buffer.put(commands[i]).put(values[i]);
+    }
+
+    @Override
+    public void readFrom(ByteBuffer buffer) {
+        buffer.get();
+        int length = buffer.get() & 0xFF;
+        // the part and parts would be read from past the frame
+        if (length < HEADER_LENGTH)
+            throw new BufferUnderflowException();
+        part = buffer.get() & 0xFF;
+        parts = buffer.get() & 0xFF;
+        // an odd trailing byte is not a move
+        moveCount = (length - HEADER_LENGTH) / 2;
+        for (int i = 0; i < moveCount; i++) {
+            commands[i] = buffer.get();
+            values[i] = buffer.get();
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package mdp.grp3.arcm.protocol;
+
+import mdp.grp3.arcm.constant.ARCM_TO_RPI;
+import mdp.grp3.arcm.constant.RPI_TO_ARCM;
+import mdp.grp3.arcm.constant.Task;
+import mdp.grp3.arcm.util.FrameDecoder;
+
+/**
+ * All the message types, for each direction. A new message only needs a
+ * {@link Packet} class and an entry here (and in bt.h on the RPi).
+ */
+public final class Schema {
+    /**
+     * Version of the message layouts below. There is no header on the wire, so
+     * this has to match PROTOCOL_VERSION in bt.h and be bumped with every change.
+     */
+    public static final int VERSION = 3;
+
+    public static final PacketType TARGET_DISCOVERED = new PacketType(RPI_TO_ARCM.TARGET_DISCOVERED,
+            RPI_TO_ARCM.FRAME_LENGTH, TargetDiscovered::new);
+    public static final PacketType FINISHED_WEEK9 = new PacketType(RPI_TO_ARCM.FINISHED_WEEK9,
+            RPI_TO_ARCM.FRAME_LENGTH, () -> new Finished(Task.WEEK9));
+    public static final PacketType STATUS_UPDATE = new PacketType(RPI_TO_ARCM.STATUS_UPDATE,
+            RPI_TO_ARCM.FRAME_LENGTH, StatusUpdate::new);
+    public static final PacketType FINISHED_WEEK8 = new PacketType(RPI_TO_ARCM.FINISHED_WEEK8,
+            RPI_TO_ARCM.FRAME_LENGTH, () -> new Finished(Task.WEEK8));
+    public static final PacketType PONG = new PacketType(RPI_TO_ARCM.PONG, RPI_TO_ARCM.FRAME_LENGTH,
+            Heartbeat::pong);
+    public static final PacketType PLANNED_PATH = new PacketType(RPI_TO_ARCM.PLANNED_PATH,
+            FrameDecoder.LENGTH_PREFIXED, PlannedPath::new);
+
+    public static final PacketType ARENA = new PacketType(ARCM_TO_RPI.ARENA, FrameDecoder.LENGTH_PREFIXED,
+            Arena::new);
+    public static final PacketType GO = new PacketType(ARCM_TO_RPI.GO, 2, Go::new);
+    public static final PacketType PING = new PacketType(ARCM_TO_RPI.PING, 4, Heartbeat::ping);
+
+    // packets the ARCM receives
+    public static final PacketType[] RPI_TO_ARCM_TYPES = { TARGET_DISCOVERED, FINISHED_WEEK9, STATUS_UPDATE,
+            FINISHED_WEEK8, PONG, PLANNED_PATH };
+
+    // packets the RPi receives
+    public static final PacketType[] ARCM_TO_RPI_TYPES = { ARENA, GO, PING };
+
+    private Schema() {
+    }
+}
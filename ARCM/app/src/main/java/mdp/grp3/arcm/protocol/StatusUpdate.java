@@ -0,0 +1,57 @@
+package mdp.grp3.arcm.protocol;
+
+import java.nio.ByteBuffer;
+
+import mdp.grp3.arcm.constant.RPI_TO_ARCM;
+
+/**
+ * Sent by the RPi to report its progress, see {@link RPI_TO_ARCM.StatusMessages}
+ */
+public class StatusUpdate implements Packet {
+    private char status; // one of RPI_TO_ARCM.StatusMessages
+    private int argument; // the target id for RECEIVED_TARGET, otherwise 0
+
+    /**
+     * Sets the contents of the message
+     *
+     * @param status   - One of {@link RPI_TO_ARCM.StatusMessages}
+     * @param argument - The argument of the status, 0 if it has none
+     * @return this message
+     */
+    public StatusUpdate set(char status, int argument) {
+        this.status = status;
+        this.argument = argument;
+        return this;
+    }
+
+    /**
+     * @return one of {@link RPI_TO_ARCM.StatusMessages}
+     */
+    public char getStatus() {
+        return status;
+    }
+
+    /**
+     * @return the argument of the status, 0 if it has none
+     */
+    public int getArgument() {
+        return argument;
+    }
+
+    @Override
+    public int getType() {
+        return RPI_TO_ARCM.STATUS_UPDATE;
+    }
+
+    @Override
+    public void writeTo(ByteBuffer buffer) {
+        buffer.put((byte) RPI_TO_ARCM.STATUS_UPDATE).put((byte) status).put((byte) argument).put((byte) 0);
+    }
+
+    @Override
+    public void readFrom(ByteBuffer buffer) {
+        buffer.get();
+        status = (char) (buffer.get() & 0xFF);
+        argument = buffer.get();
+    }
+}
@@ -0,0 +1,57 @@
+package mdp.grp3.arcm.protocol;
+
+import java.nio.ByteBuffer;
+
+import mdp.grp3.arcm.constant.RPI_TO_ARCM;
+
+/**
+ * Sent by the RPi when the target on an obstacle has been recognised
+ */
+public class TargetDiscovered implements Packet {
+    private int obstacle; // index of the obstacle, starting from 0
+    private int targetId; // 11 - 40 as given in the task instructions
+
+    /**
+     * Sets the contents of the message
+     *
+     * @param obstacle - The index of the obstacle, starting from 0
+     * @param targetId - The id of the recognised target
+     * @return this message
+     */
+    public TargetDiscovered set(int obstacle, int targetId) {
+        this.obstacle = obstacle;
+        this.targetId = targetId;
+        return this;
+    }
+
+    /**
+     * @return the index of the obstacle, starting from 0
+     */
+    public int getObstacle() {
+        return obstacle;
+    }
+
+    /**
+     * @return the id of the recognised target
+     */
+    public int getTargetId() {
+        return targetId;
+    }
+
+    @Override
+    public int getType() {
+        return RPI_TO_ARCM.TARGET_DISCOVERED;
+    }
+
+    @Override
+    public void writeTo(ByteBuffer buffer) {
+        buffer.put((byte) RPI_TO_ARCM.TARGET_DISCOVERED).put((byte) obstacle).put((byte) targetId).put((byte) 0);
+    }
+
+    @Override
+    public void readFrom(ByteBuffer buffer) {
+        buffer.get();
+        obstacle = buffer.get();
+        targetId = buffer.get();
+    }
+}
@@ -0,0 +1,285 @@
+package mdp.grp3.arcm.transport;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Random;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Wraps another transport and makes it behave like a bad link: received data is
+ * delayed with jitter, capped in bandwidth, fragmented into small reads and can
+ * lose bytes, and the link drops out now and then. All the randomness comes
+ * from a seed, so a bad run can be repeated: the same bytes are lost and the
+ * same delays and read sizes are drawn, though reads never span what the
+ * wrapped link delivered separately. Meant for testing the decoder, the
+ * reconnection and the UI, never for a real run.
+ */
+public class ImpairedTransport implements Transport {
+
+    /**
+     * Data received from the wrapped transport, released to the reader at a
+     * later time
+     */
+    private static final class Chunk {
+        final byte[] data; // null marks the end of the stream
+        final long dueTime; // System.nanoTime() when the reader may see the data
+        final IOException error; // why the stream ended
+        int position;
+
+        Chunk(byte[] data, long dueTime, IOException error) {
+            this.data = data;
+            this.dueTime = dueTime;
+            this.error = error;
+        }
+    }
+
+    private final Transport transport;
+    private final long seed;
+    private final Random jitterRandom, lossRandom, fragmentRandom, disconnectRandom;
+    private long latencyNanos, jitterNanos;
+    private long bytesPerSecond; // 0 for no cap
+    private double byteLoss; // probability that a received byte is lost
+    private int maxFragment = Integer.MAX_VALUE; // largest read returned
+    private long meanUptimeMillis; // 0 for no dropouts
+    private double connectFailure; // probability that a connection attempt fails
+
+    private volatile BlockingQueue<Chunk> received = new LinkedBlockingQueue<>();
+    private Chunk current; // the chunk being read, only used by the reader
+    private volatile long disconnectTime = Long.MAX_VALUE; // System.nanoTime() of the next dropout
+    private long lastDueTime; // only used by the pump thread
+    private long nextWriteTime; // only used by the writer, for the bandwidth cap
+
+    private final InputStream inputStream = new InputStream() {
+        @Override
+        public int read() throws IOException {
+            byte[] one = new byte[1];
+            return read(one, 0, 1) < 0 ? -1 : one[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            return readImpaired(b, off, len);
+        }
+    };
+
+    private final OutputStream outputStream = new OutputStream() {
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] { (byte) b }, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            writeImpaired(b, off, len);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            transport.getOutputStream().flush();
+        }
+    };
+
+    /**
+     * Constructor for ImpairedTransport. Without any setters called, the link is
+     * unchanged.
+     *
+     * @param transport - The link to impair
+     * @param seed      - The seed for all the randomness
+     */
+    public ImpairedTransport(Transport transport, long seed) {
+        this.transport = transport;
+        this.seed = seed;
+        jitterRandom = new Random(seed);
+        lossRandom = new Random(seed + 1);
+        fragmentRandom = new Random(seed + 2);
+        disconnectRandom = new Random(seed + 3);
+    }
+
+    /**
+     * Delays received data
+     *
+     * @param latencyMillis - The fixed delay
+     * @param jitterMillis  - The largest random delay added on top, the order of
+     *                      the data is kept
+     * @return this transport
+     */
+    public ImpairedTransport setLatency(long latencyMillis, long jitterMillis) {
+        latencyNanos = TimeUnit.MILLISECONDS.toNanos(latencyMillis);
+        jitterNanos = TimeUnit.MILLISECONDS.toNanos(jitterMillis);
+        return this;
+    }
+
+    /**
+     * Caps the bandwidth in both directions
+     *
+     * @param bytesPerSecond - The cap, 0 for none
+     * @return this transport
+     */
+    public ImpairedTransport setBandwidth(long bytesPerSecond) {
+        this.bytesPerSecond = bytesPerSecond;
+        return this;
+    }
+
+    /**
+     * Loses received bytes. RFCOMM does not lose data, but a confused RPi can send
+     * garbage, which the decoder has to recover from the same way.
+     *
+     * @param probability - The probability that a byte is lost
+     * @return this transport
+     */
+    public ImpairedTransport setByteLoss(double probability) {
+        byteLoss = probability;
+        return this;
+    }
+
+    /**
+     * Splits received data into reads of random sizes
+     *
+     * @param maxBytes - The largest read, at least 1
+     * @return this transport
+     */
+    public ImpairedTransport setFragmentation(int maxBytes) {
+        maxFragment = Math.max(1, maxBytes);
+        return this;
+    }
+
+    /**
+     * Drops the link at random times and fails some of the reconnections
+     *
+     * @param meanUptimeMillis - The average time the link stays up, 0 to never drop
+     * @param connectFailure   - The probability that a connection attempt fails
+     * @return this transport
+     */
+    public ImpairedTransport setDropouts(long meanUptimeMillis, double connectFailure) {
+        this.meanUptimeMillis = meanUptimeMillis;
+        this.connectFailure = connectFailure;
+        return this;
+    }
+
+    @Override
+    public void connect() throws IOException {
+        if (connectFailure > 0 && disconnectRandom.nextDouble() < connectFailure)
+            throw new IOException("Injected connection failure");
+        transport.connect();
+        // the old pump ends with the old connection, a fresh queue keeps its data out
+        BlockingQueue<Chunk> queue = new LinkedBlockingQueue<>();
+        received = queue;
+        current = null;
+        lastDueTime = 0;
+        nextWriteTime = 0;
+        disconnectTime = meanUptimeMillis <= 0 ? Long.MAX_VALUE
+                : System.nanoTime() + (long) (-Math.log(1 - disconnectRandom.nextDouble())
+                        * TimeUnit.MILLISECONDS.toNanos(meanUptimeMillis));
+        Thread pump = new Thread(() -> pump(transport.getInputStream(), queue), "ImpairedTransport");
+        pump.setDaemon(true);
+        pump.start();
+    }
+
+    @Override
+    public InputStream getInputStream() {
+        return inputStream;
+    }
+
+    @Override
+    public OutputStream getOutputStream() {
+        return outputStream;
+    }
+
+    @Override
+    public void close() {
+        transport.close();
+        received.offer(new Chunk(null, 0, new IOException("Stream closed")));
+    }
+
+    @Override
+    public String getName() {
+        return transport.getName() + " (impaired, seed " + seed + ")";
+    }
+
+    /**
+     * Reads from the wrapped transport as fast as possible, stamping every read
+     * with the time the reader may see it
+     */
+    private void pump(InputStream in, BlockingQueue<Chunk> queue) {
+        byte[] buffer = new byte[1024];
+        try {
+            int read;
+            while ((read = in.read(buffer)) >= 0) {
+                int kept = 0;
+                for (int i = 0; i < read; i++)
+                    if (byteLoss <= 0 || lossRandom.nextDouble() >= byteLoss)
+                        buffer[kept++] = buffer[i];
+                if (kept == 0)
+                    continue;
+                long due = System.nanoTime() + latencyNanos
+                        + (jitterNanos > 0 ? (long) (jitterRandom.nextDouble() * jitterNanos) : 0);
+                if (bytesPerSecond > 0)
+                    due = Math.max(due, lastDueTime + kept * 1_000_000_000L / bytesPerSecond);
+                lastDueTime = Math.max(due, lastDueTime); // keep the order
+                byte[] data = new byte[kept];
+                System.arraycopy(buffer, 0, data, 0, kept);
+                queue.offer(new Chunk(data, lastDueTime, null));
+            }
+            queue.offer(new Chunk(null, 0, null));
+        } catch (IOException e) {
+            queue.offer(new Chunk(null, 0, e));
+        }
+    }
+
+    /**
+     * Drops the link if it is time to
+     */
+    private void checkDropout() throws IOException {
+        if (System.nanoTime() >= disconnectTime) {
+            close();
+            throw new IOException("Injected dropout");
+        }
+    }
+
+    private int readImpaired(byte[] b, int off, int len) throws IOException {
+        try {
+            while (current == null) {
+                checkDropout();
+                current = received.poll(10, TimeUnit.MILLISECONDS); // wakes up for dropouts
+            }
+            Chunk chunk = current;
+            if (chunk.data == null) {
+                // every later read ends the same way
+                if (chunk.error != null)
+                    throw chunk.error;
+                return -1;
+            }
+            long wait = chunk.dueTime - System.nanoTime();
+            if (wait > 0)
+                TimeUnit.NANOSECONDS.sleep(wait);
+            checkDropout();
+            int n = Math.min(len, chunk.data.length - chunk.position);
+            if (maxFragment != Integer.MAX_VALUE)
+                n = Math.min(n, 1 + fragmentRandom.nextInt(maxFragment));
+            System.arraycopy(chunk.data, chunk.position, b, off, n);
+            chunk.position += n;
+            if (chunk.position == chunk.data.length)
+                current = null;
+            return n;
+        } catch (InterruptedException e) {
+            throw new IOException("Read interrupted");
+        }
+    }
+
+    private void writeImpaired(byte[] b, int off, int len) throws IOException {
+        checkDropout();
+        if (bytesPerSecond > 0) {
+            long now = System.nanoTime();
+            nextWriteTime = Math.max(nextWriteTime, now) + len * 1_000_000_000L / bytesPerSecond;
+            try {
+                TimeUnit.NANOSECONDS.sleep(nextWriteTime - now);
+            } catch (InterruptedException e) {
+                throw new IOException("Write interrupted");
+            }
+        }
+        transport.getOutputStream().write(b, off, len);
+    }
+}
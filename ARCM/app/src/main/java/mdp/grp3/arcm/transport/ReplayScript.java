@@ -0,0 +1,122 @@
+package mdp.grp3.arcm.transport;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+
+import mdp.grp3.arcm.constant.RPI_TO_ARCM;
+import mdp.grp3.arcm.util.SessionRecorder;
+
+/**
+ * A list of timestamped frames from the RPi for a {@link ReplayTransport} to
+ * play back. All frames are kept back to back in a single array.
+ */
+public class ReplayScript {
+    private byte[] data = new byte[1024];
+    private int[] ends = new int[256]; // end of each frame in data
+    private long[] timestamps = new long[256]; // in ns, relative to any origin
+    private int size, dataLength;
+
+    /**
+     * Appends a frame. Frames must be added in timestamp order.
+     *
+     * @param timestamp - When the frame was received, in nanoseconds
+     * @param buffer    - The buffer containing the frame
+     * @param offset    - The offset of the frame in the buffer
+     * @param length    - The length of the frame
+     */
+    public void add(long timestamp, byte[] buffer, int offset, int length) {
+        if (size == ends.length) {
+            ends = Arrays.copyOf(ends, size * 2);
+            timestamps = Arrays.copyOf(timestamps, size * 2);
+        }
+        if (dataLength + length > data.length)
+            data = Arrays.copyOf(data, Math.max(data.length * 2, dataLength + length));
+        System.arraycopy(buffer, offset, data, dataLength, length);
+        dataLength += length;
+        ends[size] = dataLength;
+        timestamps[size] = timestamp;
+        size++;
+    }
+
+    /**
+     * Loads the frames received in a recorded session. Heartbeat answers are left
+     * out, the replay answers the pings of the new connection itself.
+     *
+     * @param recording - A file written by {@link SessionRecorder}
+     * @return the script
+     * @throws IOException if the file cannot be read
+     */
+    public static ReplayScript fromRecording(File recording) throws IOException {
+        final ReplayScript script = new ReplayScript();
+        SessionRecorder.read(recording, (timestamp, direction, buffer, offset, length) -> {
+            if (direction == SessionRecorder.INBOUND && buffer[offset] != RPI_TO_ARCM.PONG)
+                script.add(timestamp, buffer, offset, length);
+        });
+        return script;
+    }
+
+    /**
+     * Generates a steady stream of status updates, the most common message during
+     * a run
+     *
+     * @param count    - The number of frames
+     * @param interval - The time between frames in nanoseconds
+     * @return the script
+     */
+    public static ReplayScript statusUpdates(int count, long interval) {
+        ReplayScript script = new ReplayScript();
+        byte[] frame = { RPI_TO_ARCM.STATUS_UPDATE, 0, 0, 0 };
+        for (int i = 0; i < count; i++) {
+            // cycle through the plain status messages
+            frame[1] = (byte) (RPI_TO_ARCM.StatusMessages.OPENING_CAMERA + i % 4);
+            script.add(i * interval, frame, 0, frame.length);
+        }
+        return script;
+    }
+
+    /**
+     * @return the number of frames
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return the time between the first and the last frame in nanoseconds
+     */
+    public long getDuration() {
+        return size == 0 ? 0 : timestamps[size - 1] - timestamps[0];
+    }
+
+    /**
+     * @param index - The index of the frame
+     * @return the time of the frame relative to the first one, in nanoseconds
+     */
+    long getOffsetNanos(int index) {
+        return timestamps[index] - timestamps[0];
+    }
+
+    /**
+     * @param index - The index of the frame
+     * @return the start of the frame in {@link #getData()}
+     */
+    int getStart(int index) {
+        return index == 0 ? 0 : ends[index - 1];
+    }
+
+    /**
+     * @param index - The index of the frame
+     * @return the end of the frame in {@link #getData()}
+     */
+    int getEnd(int index) {
+        return ends[index];
+    }
+
+    /**
+     * @return the frames back to back
+     */
+    byte[] getData() {
+        return data;
+    }
+}
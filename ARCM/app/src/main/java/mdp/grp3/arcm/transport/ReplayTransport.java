@@ -0,0 +1,217 @@
+package mdp.grp3.arcm.transport;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+import mdp.grp3.arcm.constant.ARCM_TO_RPI;
+import mdp.grp3.arcm.constant.RPI_TO_ARCM;
+
+/**
+ * A transport that plays a {@link ReplayScript} back as if the RPi was sending
+ * it, so that recorded runs or synthetic load go through the same decoding and
+ * UI code as a real connection. The script can be sped up, or sent as fast as
+ * the reader can take it. Pings are answered, so the heartbeat keeps the link
+ * up after the script ends.
+ */
+public class ReplayTransport implements Transport {
+    public static final double AS_FAST_AS_POSSIBLE = Double.POSITIVE_INFINITY;
+
+    private final ReplayScript script;
+    private final double speed;
+    private final Object lock = new Object();
+    private final byte[] pongs = new byte[64 * RPI_TO_ARCM.FRAME_LENGTH]; // answers waiting to be read
+    private int pongLength; // guarded by lock
+    private boolean closed = true; // guarded by lock
+    private volatile int next; // next frame of the script, only changed by the reader
+    private int partial; // bytes of the next frame already read
+    private long startTime; // System.nanoTime() of the first read
+    private volatile long endTime; // System.nanoTime() when the last frame was read
+
+    private final InputStream inputStream = new InputStream() {
+        @Override
+        public int read() throws IOException {
+            byte[] one = new byte[1];
+            return read(one, 0, 1) < 0 ? -1 : one[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            return readFrames(b, off, len);
+        }
+    };
+
+    private final OutputStream outputStream = new OutputStream() {
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] { (byte) b }, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            answerPings(b, off, len);
+        }
+    };
+
+    /**
+     * Constructor for ReplayTransport.
+     *
+     * @param script - The frames to play back
+     * @param speed  - How many times faster than recorded to play,
+     *               {@link #AS_FAST_AS_POSSIBLE} to not wait at all
+     */
+    public ReplayTransport(ReplayScript script, double speed) {
+        this.script = script;
+        this.speed = speed;
+    }
+
+    @Override
+    public void connect() {
+        synchronized (lock) {
+            // a reconnection continues from the next whole frame
+            if (partial > 0) {
+                partial = 0;
+                next++;
+            }
+            closed = false;
+            pongLength = 0;
+        }
+    }
+
+    @Override
+    public InputStream getInputStream() {
+        return inputStream;
+    }
+
+    @Override
+    public OutputStream getOutputStream() {
+        return outputStream;
+    }
+
+    @Override
+    public void close() {
+        synchronized (lock) {
+            closed = true;
+            lock.notifyAll();
+        }
+    }
+
+    @Override
+    public String getName() {
+        return speed == AS_FAST_AS_POSSIBLE ? "Replay (max)"
+                : String.format(Locale.ENGLISH, "Replay (%.0f×)", speed);
+    }
+
+    /**
+     * @return the number of frames played so far
+     */
+    public int getFramesPlayed() {
+        return next;
+    }
+
+    /**
+     * @return whether the whole script has been played
+     */
+    public boolean isFinished() {
+        return endTime != 0;
+    }
+
+    /**
+     * @return the average number of frames played per second, up to the end of
+     *         the script
+     */
+    public double getFramesPerSecond() {
+        long end = endTime != 0 ? endTime : System.nanoTime();
+        return startTime == 0 || end == startTime ? 0 : next / ((end - startTime) / 1e9);
+    }
+
+    /**
+     * Fills the buffer with pending heartbeat answers or the frames that are due,
+     * waiting until there is something to return
+     */
+    private int readFrames(byte[] b, int off, int len) throws IOException {
+        if (startTime == 0)
+            startTime = System.nanoTime();
+        synchronized (lock) {
+            while (true) {
+                if (closed)
+                    throw new IOException("Replay closed");
+                if (pongLength > 0 && partial == 0) {
+                    int n = Math.min(len, pongLength);
+                    System.arraycopy(pongs, 0, b, off, n);
+                    System.arraycopy(pongs, n, pongs, 0, pongLength - n);
+                    pongLength -= n;
+                    return n;
+                }
+                long wait;
+                if (next < script.size()) {
+                    wait = dueTime(next) - System.nanoTime();
+                    if (wait <= 0)
+                        return copyDueFrames(b, off, len);
+                } else {
+                    if (endTime == 0)
+                        endTime = System.nanoTime();
+                    wait = TimeUnit.SECONDS.toNanos(1); // only pings from now on
+                }
+                try {
+                    TimeUnit.NANOSECONDS.timedWait(lock, wait);
+                } catch (InterruptedException e) {
+                    throw new IOException("Replay interrupted");
+                }
+            }
+        }
+    }
+
+    /**
+     * @return when the frame should be played, as a System.nanoTime()
+     */
+    private long dueTime(int index) {
+        if (speed == AS_FAST_AS_POSSIBLE)
+            return startTime;
+        return startTime + (long) (script.getOffsetNanos(index) / speed);
+    }
+
+    /**
+     * Copies as many whole frames as are due and fit into the buffer
+     */
+    private int copyDueFrames(byte[] b, int off, int len) {
+        long now = System.nanoTime();
+        int start = script.getStart(next) + partial;
+        int end = script.getEnd(next);
+        if (end - start > len) {
+            // a frame bigger than the buffer is split over several reads, like a socket would
+            System.arraycopy(script.getData(), start, b, off, len);
+            partial += len;
+            return len;
+        }
+        partial = 0;
+        next++;
+        while (next < script.size() && script.getEnd(next) - start <= len && dueTime(next) <= now)
+            end = script.getEnd(next++);
+        System.arraycopy(script.getData(), start, b, off, end - start);
+        return end - start;
+    }
+
+    /**
+     * Queues a PONG for every PING written. The arena never contains the PING
+     * byte, so a plain scan is enough.
+     */
+    private void answerPings(byte[] b, int off, int len) throws IOException {
+        synchronized (lock) {
+            if (closed)
+                throw new IOException("Replay closed");
+            for (int i = off; i + 1 < off + len; i++) {
+                if (b[i] == ARCM_TO_RPI.PING && pongLength + RPI_TO_ARCM.FRAME_LENGTH <= pongs.length) {
+                    pongs[pongLength++] = RPI_TO_ARCM.PONG;
+                    pongs[pongLength++] = b[i + 1];
+                    pongs[pongLength++] = 0;
+                    pongs[pongLength++] = 0;
+                    i += RPI_TO_ARCM.FRAME_LENGTH - 1;
+                }
+            }
+            lock.notifyAll();
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package mdp.grp3.arcm.transport;
+
+import android.bluetooth.BluetoothDevice;
+import android.bluetooth.BluetoothSocket;
+
+import androidx.annotation.RequiresPermission;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.UUID;
+
+/**
+ * A transport over a Bluetooth RFCOMM socket.
+ */
+public class RfcommTransport implements Transport {
+    private static final UUID myUUID = UUID.fromString("00001101-0000-1000-8000-00805F9B34FB"); // Standard
+                                                                                                // SerialPortService ID
+
+    // the ways of opening an RFCOMM socket, tried in order of how quickly they connected before
+    private static final int SOCKET_SECURE = 0;
+    private static final int SOCKET_INSECURE = 1;
+    private static final long SOCKET_FAILURE_PENALTY = 5000; // ms added to an option's cost when it fails
+
+    private final BluetoothDevice device; // target device
+    private final long[] socketOptionCost = new long[2]; // moving average of connect time per option
+    private BluetoothSocket socket;
+    private InputStream inputStream;
+    private OutputStream outputStream;
+
+    /**
+     * Constructor for RfcommTransport.
+     *
+     * @param device - The target device
+     */
+    public RfcommTransport(BluetoothDevice device) {
+        this.device = device;
+    }
+
+    /**
+     * Creates an RFCOMM socket to the target device
+     *
+     * @param option - The way of creating the socket
+     * @return the unconnected socket
+     */
+    @RequiresPermission(value = "android.permission.BLUETOOTH_CONNECT")
+    private BluetoothSocket createSocket(int option) throws IOException {
+        if (option == SOCKET_INSECURE)
+            return device.createInsecureRfcommSocketToServiceRecord(myUUID);
+        return device.createRfcommSocketToServiceRecord(myUUID);
+    }
+
+    /**
+     * Connect to the target device, trying the socket options that connected
+     * fastest before first
+     */
+    @Override
+    @RequiresPermission(value = "android.permission.BLUETOOTH_CONNECT")
+    public synchronized void connect() throws IOException {
+        int first = socketOptionCost[SOCKET_INSECURE] < socketOptionCost[SOCKET_SECURE] ? SOCKET_INSECURE
+                : SOCKET_SECURE;
+        IOException lastException = null;
+        for (int option : new int[] { first, 1 - first }) {
+            long start = System.nanoTime();
+            try {
+                socket = createSocket(option);
+                socket.connect();
+                inputStream = socket.getInputStream();
+                outputStream = socket.getOutputStream();
+                updateSocketOptionCost(option, (System.nanoTime() - start) / 1_000_000);
+                return;
+            } catch (IOException e) {
+                lastException = e;
+                updateSocketOptionCost(option, (System.nanoTime() - start) / 1_000_000 + SOCKET_FAILURE_PENALTY);
+                close();
+            }
+        }
+        throw lastException;
+    }
+
+    /**
+     * Adds a connection time to the moving average of a socket option
+     *
+     * @param option - The socket option
+     * @param millis - The time taken (including any failure penalty)
+     */
+    private void updateSocketOptionCost(int option, long millis) {
+        long cost = socketOptionCost[option];
+        socketOptionCost[option] = cost == 0 ? millis : (cost * 3 + millis) / 4;
+    }
+
+    @Override
+    public InputStream getInputStream() {
+        return inputStream;
+    }
+
+    @Override
+    public OutputStream getOutputStream() {
+        return outputStream;
+    }
+
+    @Override
+    public synchronized void close() {
+        if (socket != null) {
+            try {
+                socket.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    @Override
+    @RequiresPermission(value = "android.permission.BLUETOOTH_CONNECT")
+    public String getName() {
+        return device.getName();
+    }
+}
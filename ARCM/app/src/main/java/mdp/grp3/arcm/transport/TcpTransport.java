@@ -0,0 +1,72 @@
+package mdp.grp3.arcm.transport;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+
+/**
+ * A transport over a TCP socket, for Wi-Fi and lab use. Also lets a local
+ * server stand in for the RPi.
+ */
+public class TcpTransport implements Transport {
+    private static final int CONNECT_TIMEOUT = 5000; // ms
+
+    private final String host;
+    private final int port;
+    private Socket socket;
+    private InputStream inputStream;
+    private OutputStream outputStream;
+
+    /**
+     * Constructor for TcpTransport.
+     *
+     * @param host - The host name or address of the server
+     * @param port - The port of the server
+     */
+    public TcpTransport(String host, int port) {
+        this.host = host;
+        this.port = port;
+    }
+
+    @Override
+    public synchronized void connect() throws IOException {
+        Socket newSocket = new Socket();
+        try {
+            newSocket.setTcpNoDelay(true); // messages are tiny, don't wait to fill a segment
+            newSocket.connect(new InetSocketAddress(host, port), CONNECT_TIMEOUT);
+            inputStream = newSocket.getInputStream();
+            outputStream = newSocket.getOutputStream();
+        } catch (IOException | RuntimeException e) {
+            newSocket.close();
+            throw e;
+        }
+        socket = newSocket;
+    }
+
+    @Override
+    public InputStream getInputStream() {
+        return inputStream;
+    }
+
+    @Override
+    public OutputStream getOutputStream() {
+        return outputStream;
+    }
+
+    @Override
+    public synchronized void close() {
+        if (socket != null) {
+            try {
+                socket.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    @Override
+    public String getName() {
+        return host + ":" + port;
+    }
+}
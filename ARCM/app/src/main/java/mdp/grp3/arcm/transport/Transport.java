@@ -0,0 +1,39 @@
+package mdp.grp3.arcm.transport;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * A byte stream link to the RPi. The connection manager only talks to this
+ * interface, so the same protocol and UI code can run over Bluetooth or a
+ * plain socket.
+ */
+public interface Transport {
+    /**
+     * Opens the link. Called again to reconnect after {@link #close()}.
+     *
+     * @throws IOException if the link could not be opened
+     */
+    void connect() throws IOException;
+
+    /**
+     * @return the stream of bytes received from the RPi
+     */
+    InputStream getInputStream();
+
+    /**
+     * @return the stream of bytes sent to the RPi
+     */
+    OutputStream getOutputStream();
+
+    /**
+     * Closes the link. Any blocked read fails with an IOException.
+     */
+    void close();
+
+    /**
+     * @return a name for the other end of the link to show to the user
+     */
+    String getName();
+}
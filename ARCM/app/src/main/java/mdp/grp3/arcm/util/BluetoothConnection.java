@@ -1,22 +1,34 @@
 package mdp.grp3.arcm.util;
 
 import android.bluetooth.BluetoothAdapter;
-import android.bluetooth.BluetoothDevice;
-import android.bluetooth.BluetoothSocket;
 import android.os.Handler;
 import android.os.Message;
 
 import androidx.annotation.RequiresPermission;
 
+import java.io.File;
 import java.io.IOException;
-import java.io.InputStream;
 import java.io.OutputStream;
 import java.nio.ByteBuffer;
-import java.util.UUID;
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import mdp.grp3.arcm.constant.RPI_TO_ARCM;
+import mdp.grp3.arcm.protocol.Heartbeat;
+import mdp.grp3.arcm.protocol.Packet;
+import mdp.grp3.arcm.protocol.PacketCodec;
+import mdp.grp3.arcm.transport.RfcommTransport;
+import mdp.grp3.arcm.transport.Transport;
 
 /**
- * A class that manages the Bluetooth connection.
+ * A class that manages the connection to the RPi. The link itself is a
+ * {@link Transport}, which is Bluetooth RFCOMM unless another one is given.
  */
 public class BluetoothConnection {
 
@@ -27,7 +39,9 @@ public class BluetoothConnection {
         public static final int CONNECTED = 1;
         public static final int FAILED = 2;
         public static final int DISCONNECTED = 3;
-        public static final int RECONNECTED = 4;
+        public static final int RECONNECTED = 4; // arg1 holds the time taken to reconnect in ms
+        public static final int RECONNECTING = 7; // arg1 holds the attempt, arg2 the maximum attempts
+        public static final int RECONNECT_FAILED = 8;
     }
 
     /**
@@ -35,18 +49,45 @@ public class BluetoothConnection {
      */
     public static final class IOStatus {
         public static final int WRITE_FAILED = 5;
-        public static final int READ_BYTES = 6;
+        public static final int READ_BYTES = 6; // new messages are waiting in the event ring
+    }
+
+    /**
+     * Callback for when queued data has been written (or failed to be written)
+     */
+    public interface WriteCallback {
+        /**
+         * Called from the writer thread once the data has been flushed
+         *
+         * @param success whether the data was written
+         */
+        void onWriteComplete(boolean success);
     }
 
+    private static final int EVENT_RING_CAPACITY = 512; // maximum received messages waiting for the UI
+    private static final int WRITE_QUEUE_CAPACITY = 64; // maximum number of pending writes
+    private static final int WRITE_BATCH_SIZE = 1024; // maximum bytes coalesced into a single flush
+    private static final long RECONNECT_BASE_DELAY = 250; // ms before the first reconnection attempt
+    private static final long RECONNECT_MAX_DELAY = 8000; // ms between attempts at most
+    private static final int RECONNECT_MAX_ATTEMPTS = 30; // roughly 3 minutes of attempts
+    private static final long HEARTBEAT_INTERVAL = 1000; // ms between pings
+    private static final long HEARTBEAT_TIMEOUT = 4000; // ms of silence before the link is declared dead
+
     private static volatile BluetoothConnection INSTANCE = null;
-    private final UUID myUUID = UUID.fromString("00001101-0000-1000-8000-00805F9B34FB"); // Standard SerialPortService
-                                                                                         // ID
-    protected BluetoothSocket socket;
-    protected boolean isRunning = false;
-    private BluetoothDevice device; // target device
-    private InputStream inputStream;
-    private OutputStream outputStream;
+    protected volatile Transport transport; // link to the RPi
+    protected volatile boolean isRunning = false;
     private BTCommThread btCommThread;
+    private BTWriteThread btWriteThread;
+    private ScheduledExecutorService heartbeatExecutor;
+    private long heartbeatIntervalMillis = HEARTBEAT_INTERVAL;
+    private volatile long heartbeatTimeoutMillis = HEARTBEAT_TIMEOUT;
+    private volatile long lastReceivedTime; // System.nanoTime() of the last received message
+    private volatile long lastRttNanos; // round trip time of the last answered ping
+    private final AtomicLongArray pingTimes = new AtomicLongArray(256); // send time of each ping sequence number
+    private volatile long flushDelayMillis = 0; // how long to wait for more data before flushing
+    private final EventRing eventRing = new EventRing(EVENT_RING_CAPACITY); // received messages for the UI
+    private final LinkMetrics metrics = new LinkMetrics(); // telemetry of the current connection
+    private volatile SessionRecorder recorder; // records all frames while not null
 
     private BluetoothConnection() {
     }
@@ -66,17 +107,6 @@ public class BluetoothConnection {
         return INSTANCE;
     }
 
-    /**
-     * Connect to the target device
-     */
-    @RequiresPermission(value = "android.permission.BLUETOOTH_CONNECT")
-    private void connect() throws IOException {
-        socket = device.createRfcommSocketToServiceRecord(myUUID);
-        socket.connect();
-        inputStream = socket.getInputStream();
-        outputStream = socket.getOutputStream();
-    }
-
     /**
      * Try to connect to a target device
      * 
@@ -85,19 +115,25 @@ public class BluetoothConnection {
      */
     @RequiresPermission(value = "android.permission.BLUETOOTH_CONNECT")
     public void tryConnection(String btAddress, Handler handler) {
+        tryConnection(new RfcommTransport(BluetoothAdapter.getDefaultAdapter().getRemoteDevice(btAddress)), handler);
+    }
+
+    /**
+     * Try to connect over any transport
+     *
+     * @param transport the link to the RPi
+     * @param handler   the handler to send messages to the UI thread
+     */
+    public void tryConnection(Transport transport, Handler handler) {
         new Thread(() -> {
-            device = BluetoothAdapter.getDefaultAdapter().getRemoteDevice(btAddress);
-            socket = null;
             try {
-                connect();
+                transport.connect();
+                this.transport = transport;
                 handler.sendEmptyMessage(ConnectionStatus.CONNECTED);
-            } catch (IOException e) {
+            } catch (IOException | RuntimeException e) {
+                // a bad address throws from the socket, this thread must not crash the app
                 handler.sendMessage(Message.obtain(handler, ConnectionStatus.FAILED, e.getMessage()));
-                if (socket != null)
-                    try {
-                        socket.close();
-                    } catch (IOException ignored) {
-                    }
+                transport.close();
             }
         }).start(); // async connection
     }
@@ -110,21 +146,176 @@ public class BluetoothConnection {
     public void setupCommunication(Handler handler) {
         if (isRunning) {
             btCommThread.setHandler(handler);
+            btWriteThread.setHandler(handler);
         } else {
             isRunning = true;
+            eventRing.clear();
+            metrics.reset();
+            lastReceivedTime = System.nanoTime();
             btCommThread = new BTCommThread(handler);
+            btWriteThread = new BTWriteThread(handler);
             Executors.newSingleThreadExecutor().submit(btCommThread);
+            Executors.newSingleThreadExecutor().submit(btWriteThread);
+            if (heartbeatIntervalMillis > 0) {
+                heartbeatExecutor = Executors.newSingleThreadScheduledExecutor();
+                heartbeatExecutor.scheduleWithFixedDelay(new BTHeartbeat(), heartbeatIntervalMillis,
+                        heartbeatIntervalMillis, TimeUnit.MILLISECONDS);
+            }
         }
     }
 
     /**
-     * Write data to the output stream
+     * Configures the heartbeat. The link is declared disconnected if nothing is
+     * received for the timeout, even if the socket has not noticed yet. The
+     * interval takes effect the next time communication is set up.
+     *
+     * @param intervalMillis the time between pings, 0 turns the heartbeat off
+     * @param timeoutMillis  the time without any message before the link is
+     *                       considered dead
+     */
+    public void setHeartbeat(long intervalMillis, long timeoutMillis) {
+        heartbeatIntervalMillis = Math.max(0, intervalMillis);
+        heartbeatTimeoutMillis = Math.max(timeoutMillis, 2 * intervalMillis);
+    }
+
+    /**
+     * @return the round trip time of the last answered ping in nanoseconds, 0 if
+     *         none was answered yet
+     */
+    public long getLastRttNanos() {
+        return lastRttNanos;
+    }
+
+    /**
+     * Queue data to be written to the output stream. Returns immediately.
      * 
      * @param buff the data to be written
      */
     public void write(byte[] buff) {
-        if (btCommThread != null)
-            btCommThread.write(buff);
+        write(buff, null);
+    }
+
+    /**
+     * Queue an encoded message to be written to the output stream. The bytes are
+     * copied, so the buffer can be reused as soon as this returns.
+     *
+     * @param buffer the data to be written, from its position to its limit
+     */
+    public void write(ByteBuffer buffer) {
+        byte[] buff = new byte[buffer.remaining()];
+        buffer.get(buff);
+        write(buff, null);
+    }
+
+    /**
+     * Queue data to be written to the output stream. Returns immediately.
+     *
+     * @param buff     the data to be written
+     * @param callback notified on the writer thread once the data is flushed, can
+     *                 be null
+     */
+    public void write(byte[] buff, WriteCallback callback) {
+        if (btWriteThread != null)
+            btWriteThread.enqueue(buff, callback);
+        else if (callback != null)
+            callback.onWriteComplete(false);
+    }
+
+    /**
+     * Sets how long the writer waits for more data so that it can be sent in the
+     * same flush. 0 only combines data that is already queued.
+     *
+     * @param millis the maximum added latency in milliseconds
+     */
+    public void setFlushDelay(long millis) {
+        flushDelayMillis = Math.max(0, millis);
+    }
+
+    /**
+     * @return the number of writes waiting to be flushed
+     */
+    public int getWriteQueueDepth() {
+        return btWriteThread == null ? 0 : btWriteThread.queue.size();
+    }
+
+    /**
+     * @return the average time from queuing a write until it was flushed, in
+     *         nanoseconds
+     */
+    public long getAverageWriteLatencyNanos() {
+        return metrics.getWriteLatency().getMean();
+    }
+
+    /**
+     * @return the longest time from queuing a write until it was flushed, in
+     *         nanoseconds
+     */
+    public long getMaxWriteLatencyNanos() {
+        return metrics.getWriteLatency().getMax();
+    }
+
+    /**
+     * @return the telemetry of the current connection
+     */
+    public LinkMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * The ring holding received messages. Drained by the UI thread whenever it
+     * gets {@link IOStatus#READ_BYTES}.
+     *
+     * @return the ring of received messages
+     */
+    public EventRing getEventRing() {
+        return eventRing;
+    }
+
+    /**
+     * Starts recording every frame sent and received to a file, replacing any
+     * recording in progress
+     *
+     * @param output the file to record to
+     * @throws IOException if the file cannot be created
+     */
+    public void startRecording(File output) throws IOException {
+        SessionRecorder newRecorder = new SessionRecorder(output, SessionRecorder.DEFAULT_CAPACITY);
+        stopRecording();
+        recorder = newRecorder;
+    }
+
+    /**
+     * Stops the recording in progress, if any
+     */
+    public void stopRecording() {
+        SessionRecorder oldRecorder = recorder;
+        recorder = null;
+        if (oldRecorder != null) {
+            try {
+                oldRecorder.close();
+            } catch (IOException ignored) {
+                // the frames recorded so far are already in the file
+            }
+        }
+    }
+
+    /**
+     * @return whether frames are being recorded
+     */
+    public boolean isRecording() {
+        return recorder != null;
+    }
+
+    /**
+     * Records an event of the app next to the frames, if recording
+     *
+     * @param event the event, e.g. {@link SessionRecorder#TIMER_STARTED}, followed
+     *              by its arguments
+     */
+    public void recordEvent(byte... event) {
+        SessionRecorder recorder = this.recorder;
+        if (recorder != null)
+            recorder.record(System.nanoTime(), SessionRecorder.EVENT, event, 0, event.length);
     }
 
     /**
@@ -132,26 +323,33 @@ public class BluetoothConnection {
      */
     public void closeCommunication() {
         isRunning = false;
-        try {
-            socket.close();
-        } catch (IOException ignored) {
-        }
+        if (heartbeatExecutor != null)
+            heartbeatExecutor.shutdownNow();
+        if (btWriteThread != null)
+            btWriteThread.wakeUp();
+        if (transport != null)
+            transport.close();
+        stopRecording();
     }
 
     /**
-     * @return the target device
+     * @return the name of the connected device
      */
-    public BluetoothDevice getDevice() {
-        return device;
+    public String getDeviceName() {
+        return transport == null ? null : transport.getName();
     }
 
     /**
      * Internal thread for handling the communication
      */
-    private class BTCommThread implements Runnable {
+    private class BTCommThread implements Runnable, FrameDecoder.FrameListener {
 
         private Handler handler; // The Handler for sending data to the UI thread
-        private boolean connected; // Whether the device is connected
+        private volatile boolean connected; // Whether the device is connected
+        private final FrameDecoder decoder; // Splits the received bytes into messages
+        private final PacketCodec codec = PacketCodec.forArcm(); // Only used to read heartbeat answers
+        private final ReconnectScheduler reconnectScheduler = new ReconnectScheduler(RECONNECT_BASE_DELAY,
+                RECONNECT_MAX_DELAY, RECONNECT_MAX_ATTEMPTS, new Random());
 
         /**
          * Update the handler
@@ -169,9 +367,45 @@ public class BluetoothConnection {
          */
         public BTCommThread(Handler handler) {
             this.connected = true;
+            decoder = new FrameDecoder(4096);
+            codec.configure(decoder);
             setHandler(handler);
         }
 
+        /**
+         * Passes a decoded message to the UI thread. The UI thread is only woken up
+         * if it has not been already.
+         *
+         * @param buffer - The buffer containing the message
+         * @param offset - The offset of the message in the buffer
+         * @param length - The length of the message
+         */
+        @Override
+        public void onFrame(byte[] buffer, int offset, int length) {
+            lastReceivedTime = System.nanoTime();
+            metrics.recordFrameIn(lastReceivedTime);
+            SessionRecorder recorder = BluetoothConnection.this.recorder;
+            if (recorder != null)
+                recorder.record(lastReceivedTime, SessionRecorder.INBOUND, buffer, offset, length);
+            if (buffer[offset] == RPI_TO_ARCM.PONG) {
+                // heartbeat answers are only used for the round trip time
+                Packet pong = codec.decode(buffer, offset, length);
+                if (pong == null)
+                    return;
+                // each slot answers once, a pong for a slot never sent or reused long ago is
+                // no round trip
+                long sentAt = pingTimes.getAndSet(((Heartbeat) pong).getSequence(), 0);
+                long rtt = lastReceivedTime - sentAt;
+                if (sentAt == 0 || rtt < 0 || rtt > TimeUnit.MILLISECONDS.toNanos(heartbeatTimeoutMillis))
+                    return;
+                lastRttNanos = rtt;
+                metrics.recordRtt(rtt);
+                return;
+            }
+            if (eventRing.publish(buffer, offset, length))
+                handler.sendEmptyMessage(IOStatus.READ_BYTES);
+        }
+
         /**
          * The main loop for the communication
          */
@@ -179,54 +413,223 @@ public class BluetoothConnection {
         @RequiresPermission(value = "android.permission.BLUETOOTH_CONNECT")
         public void run() {
             while (isRunning) {
-                // keep trying to reconnect if not connected
+                // keep trying to reconnect if not connected, backing off between attempts
                 // should initially be connected when the thread is started
                 if (!connected) {
+                    if (!reconnectScheduler.hasAttemptsLeft()) {
+                        handler.sendEmptyMessage(ConnectionStatus.RECONNECT_FAILED);
+                        isRunning = false;
+                        break;
+                    }
                     try {
-                        connect();
+                        Thread.sleep(reconnectScheduler.nextDelayMillis());
+                    } catch (InterruptedException e) {
+                        break;
+                    }
+                    if (!isRunning)
+                        break;
+                    handler.sendMessage(handler.obtainMessage(ConnectionStatus.RECONNECTING,
+                            reconnectScheduler.getAttempt(), reconnectScheduler.getMaxAttempts()));
+                    try {
+                        transport.connect();
+                        lastReceivedTime = System.nanoTime();
                         connected = true;
-                        handler.sendEmptyMessage(ConnectionStatus.RECONNECTED);
+                        decoder.reset(); // drop any partial message from the old connection
+                        handler.sendMessage(handler.obtainMessage(ConnectionStatus.RECONNECTED,
+                                (int) reconnectScheduler.getElapsedMillis(), 0));
                     } catch (IOException ignored) {
                         continue;
                     }
                 }
-                // keep reading data
+                // keep reading data. a single read may contain several messages or only part of
+                // one, the decoder takes care of both
                 try {
-                    byte[] mmBuffer = new byte[4];
-                    int bytesRead = inputStream.read(mmBuffer);
-                    if (bytesRead > 0) {
-                        Integer receivedData = ByteBuffer.wrap(mmBuffer).getInt();
-                        handler.sendMessage(handler.obtainMessage(IOStatus.READ_BYTES, receivedData));
-                    }
+                    int read = decoder.readFrom(transport.getInputStream());
+                    if (read < 0)
+                        throw new IOException("Stream closed");
+                    metrics.recordBytesIn(read);
+                    decoder.drain(this);
                 } catch (IOException e) {
                     // attempt reconnection if we should be connected
                     if (isRunning && connected) {
-                        try {
-                            socket.close();
-                        } catch (IOException ignored) {
-                        }
+                        transport.close();
                         handler.sendEmptyMessage(ConnectionStatus.DISCONNECTED);
                         connected = false;
+                        reconnectScheduler.reset();
                     }
                 }
             }
         }
+    }
+
+    /**
+     * Periodic task that pings the RPi and closes the link if nothing has been
+     * received for too long. Closing the link makes the pending read fail, which
+     * starts the usual reconnection.
+     */
+    private class BTHeartbeat implements Runnable {
+        private final PacketCodec codec = PacketCodec.forArcm();
+        private final Heartbeat ping = Heartbeat.ping();
+        private int sequence;
+
+        @Override
+        public void run() {
+            BTCommThread commThread = btCommThread;
+            if (!isRunning || commThread == null || !commThread.connected)
+                return;
+            long now = System.nanoTime();
+            if (now - lastReceivedTime > TimeUnit.MILLISECONDS.toNanos(heartbeatTimeoutMillis)) {
+                transport.close();
+                return;
+            }
+            sequence = (sequence + 1) & 0xFF;
+            pingTimes.set(sequence, now);
+            write(codec.encode(ping.set(sequence)));
+        }
+    }
+
+    /**
+     * Internal thread that writes queued data so that callers never block on the
+     * socket. Small writes that are queued together are sent in a single flush.
+     */
+    private class BTWriteThread implements Runnable {
 
         /**
-         * Write data to the output stream
-         * 
-         * @param data - The data to be written
+         * A pending write
+         */
+        private final class WriteRequest {
+            final byte[] data;
+            final WriteCallback callback;
+            final long queuedAt; // System.nanoTime() when queued
+
+            WriteRequest(byte[] data, WriteCallback callback) {
+                this.data = data;
+                this.callback = callback;
+                this.queuedAt = System.nanoTime();
+            }
+        }
+
+        private Handler handler; // The Handler for sending errors to the UI thread
+        private final BlockingQueue<WriteRequest> queue = new ArrayBlockingQueue<>(WRITE_QUEUE_CAPACITY);
+        private final ArrayList<WriteRequest> batch = new ArrayList<>(WRITE_QUEUE_CAPACITY);
+        private final byte[] batchBuffer = new byte[WRITE_BATCH_SIZE];
+        private final WriteRequest wakeUpRequest = new WriteRequest(new byte[0], null);
+
+        /**
+         * Constructor for BTWriteThread
+         *
+         * @param handler - The Handler for sending errors to the UI thread
          */
-        public void write(byte[] data) {
-            synchronized (this) {
+        public BTWriteThread(Handler handler) {
+            setHandler(handler);
+        }
+
+        /**
+         * Update the handler
+         *
+         * @param handler - The Handler for sending errors to the UI thread
+         */
+        public void setHandler(Handler handler) {
+            this.handler = handler;
+        }
+
+        /**
+         * Queue data to be written
+         *
+         * @param data     - The data to be written
+         * @param callback - Notified once the data is flushed, can be null
+         */
+        public void enqueue(byte[] data, WriteCallback callback) {
+            if (!queue.offer(new WriteRequest(data, callback))) {
+                handler.sendMessage(handler.obtainMessage(IOStatus.WRITE_FAILED, "Write queue is full"));
+                if (callback != null)
+                    callback.onWriteComplete(false);
+            }
+        }
+
+        /**
+         * Unblocks the thread so that it notices the connection was closed
+         */
+        public void wakeUp() {
+            queue.offer(wakeUpRequest);
+        }
+
+        /**
+         * The main loop for writing
+         */
+        @Override
+        public void run() {
+            while (isRunning) {
                 try {
-                    outputStream.write(data);
-                    outputStream.flush();
-                } catch (IOException e) {
-                    handler.sendMessage(handler.obtainMessage(IOStatus.WRITE_FAILED, e.getMessage()));
+                    WriteRequest first = queue.take();
+                    if (first != wakeUpRequest)
+                        batch.add(first);
+                    // give other writes a chance to join this flush
+                    long delay = flushDelayMillis;
+                    if (delay > 0) {
+                        WriteRequest next = queue.poll(delay, TimeUnit.MILLISECONDS);
+                        if (next != null && next != wakeUpRequest)
+                            batch.add(next);
+                    }
+                    queue.drainTo(batch);
+                    batch.remove(wakeUpRequest);
+                    if (!batch.isEmpty())
+                        flush();
+                } catch (InterruptedException e) {
+                    break;
+                } finally {
+                    batch.clear();
                 }
             }
+            // anything left will never be written
+            for (WriteRequest request : queue)
+                if (request.callback != null)
+                    request.callback.onWriteComplete(false);
+            queue.clear();
         }
 
+        /**
+         * Writes the current batch, combining small writes into one buffer
+         */
+        private void flush() {
+            boolean success = true;
+            int written = 0;
+            try {
+                OutputStream out = transport.getOutputStream();
+                int buffered = 0;
+                for (WriteRequest request : batch) {
+                    byte[] data = request.data;
+                    written += data.length;
+                    if (buffered + data.length > batchBuffer.length) {
+                        out.write(batchBuffer, 0, buffered);
+                        buffered = 0;
+                    }
+                    if (data.length > batchBuffer.length) {
+                        out.write(data);
+                    } else {
+                        System.arraycopy(data, 0, batchBuffer, buffered, data.length);
+                        buffered += data.length;
+                    }
+                }
+                if (buffered > 0)
+                    out.write(batchBuffer, 0, buffered);
+                out.flush();
+                metrics.recordWrite(written, batch.size());
+            } catch (IOException e) {
+                success = false;
+                handler.sendMessage(handler.obtainMessage(IOStatus.WRITE_FAILED, e.getMessage()));
+            }
+            long now = System.nanoTime();
+            SessionRecorder recorder = BluetoothConnection.this.recorder;
+            for (WriteRequest request : batch) {
+                if (success) {
+                    metrics.recordWriteLatency(now - request.queuedAt);
+                    if (recorder != null)
+                        recorder.record(now, SessionRecorder.OUTBOUND, request.data, 0, request.data.length);
+                }
+                if (request.callback != null)
+                    request.callback.onWriteComplete(success);
+            }
+        }
     }
 }
@@ -0,0 +1,76 @@
+package mdp.grp3.arcm.util;
+
+/**
+ * Follows a drag over a grid of equal cells. The transform from screen
+ * coordinates to a cell is worked out once when the drag starts, and every
+ * position after that only says whether it is over a different cell, so that
+ * the work done for a cell is not repeated for every move within it.
+ */
+public class CellTracker {
+    private float left, top; // screen position of the grid
+    private float cellWidth, cellHeight;
+    private int row, column; // the cell last moved over
+
+    /**
+     * Constructor for CellTracker. No cell has been moved over yet.
+     */
+    public CellTracker() {
+        reset();
+    }
+
+    /**
+     * Sets the grid the drag is over and forgets the last cell
+     *
+     * @param left       - The x of the grid on screen
+     * @param top        - The y of the grid on screen
+     * @param cellWidth  - The width of a cell
+     * @param cellHeight - The height of a cell
+     */
+    public void setGrid(float left, float top, float cellWidth, float cellHeight) {
+        this.left = left;
+        this.top = top;
+        this.cellWidth = cellWidth;
+        this.cellHeight = cellHeight;
+        reset();
+    }
+
+    /**
+     * Forgets the last cell, so that the next move counts as a change
+     */
+    public void reset() {
+        row = column = Integer.MIN_VALUE;
+    }
+
+    /**
+     * Moves to a screen position
+     *
+     * @param x - The x on screen
+     * @param y - The y on screen
+     * @return whether the position is over a different cell than the last one
+     */
+    public boolean moveTo(float x, float y) {
+        // truncated like the layout did, so the cells just outside the grid count
+        // as its first row and column
+        int newRow = (int) ((y - top) / cellHeight);
+        int newColumn = (int) ((x - left) / cellWidth);
+        if (newRow == row && newColumn == column)
+            return false;
+        row = newRow;
+        column = newColumn;
+        return true;
+    }
+
+    /**
+     * @return the row of the last cell
+     */
+    public int getRow() {
+        return row;
+    }
+
+    /**
+     * @return the column of the last cell
+     */
+    public int getColumn() {
+        return column;
+    }
+}
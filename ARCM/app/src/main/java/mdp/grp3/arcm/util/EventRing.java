@@ -0,0 +1,112 @@
+package mdp.grp3.arcm.util;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A single-producer/single-consumer ring of preallocated events, used to pass
+ * received messages from the reader thread to the UI thread without allocating.
+ * The producer only needs to wake the consumer up once per batch.
+ */
+public class EventRing {
+
+    /**
+     * A reusable slot holding one received message
+     */
+    public static final class Event {
+        public final byte[] data = new byte[FrameDecoder.MAX_FRAME_LENGTH];
+        public int length; // number of valid bytes in data
+        public long timestamp; // System.nanoTime() when the message was received
+    }
+
+    private final Event[] slots;
+    private final int mask;
+    private final AtomicInteger head = new AtomicInteger(); // next slot to consume
+    private final AtomicInteger tail = new AtomicInteger(); // next slot to produce
+    private final AtomicBoolean wakeUpPending = new AtomicBoolean();
+    private volatile long droppedEvents;
+
+    /**
+     * Constructor for EventRing.
+     *
+     * @param capacity - The number of slots (rounded up to a power of two)
+     */
+    public EventRing(int capacity) {
+        int size = Integer.highestOneBit(Math.max(capacity, 2) - 1) << 1;
+        slots = new Event[size];
+        for (int i = 0; i < size; i++)
+            slots[i] = new Event();
+        mask = size - 1;
+    }
+
+    /**
+     * Producer only. Copies a message into the next free slot.
+     *
+     * @param buffer - The buffer containing the message
+     * @param offset - The offset of the message in the buffer
+     * @param length - The length of the message
+     * @return whether the consumer has to be woken up to see the message
+     */
+    public boolean publish(byte[] buffer, int offset, int length) {
+        int t = tail.get();
+        if (t - head.get() == slots.length) {
+            // the consumer is too far behind, drop the message rather than block the reader
+            droppedEvents++;
+            return false;
+        }
+        Event event = slots[t & mask];
+        System.arraycopy(buffer, offset, event.data, 0, length);
+        event.length = length;
+        event.timestamp = System.nanoTime();
+        tail.lazySet(t + 1);
+        return wakeUpPending.compareAndSet(false, true);
+    }
+
+    /**
+     * Consumer only. Must be called before draining, so that messages published
+     * while draining cause another wake-up.
+     */
+    public void beginDrain() {
+        wakeUpPending.set(false);
+    }
+
+    /**
+     * Consumer only.
+     *
+     * @return the oldest unconsumed event, or null if the ring is empty. It stays
+     *         valid until {@link #release()} is called.
+     */
+    public Event peek() {
+        int h = head.get();
+        return h == tail.get() ? null : slots[h & mask];
+    }
+
+    /**
+     * Consumer only. Returns the event from {@link #peek()} to the producer.
+     */
+    public void release() {
+        head.lazySet(head.get() + 1);
+    }
+
+    /**
+     * Drops all unconsumed events. Only safe while the producer is stopped.
+     */
+    public void clear() {
+        head.set(tail.get());
+        wakeUpPending.set(false);
+    }
+
+    /**
+     * @return the number of events waiting to be consumed
+     */
+    public int size() {
+        return tail.get() - head.get();
+    }
+
+    /**
+     * @return the number of messages dropped because the ring was full
+     */
+    public long getDroppedEvents() {
+        return droppedEvents;
+    }
+}
@@ -0,0 +1,149 @@
+package mdp.grp3.arcm.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * A streaming decoder that splits the bytes received from the RPi into frames.
+ * Every read is drained into a single preallocated ring buffer, so frames that
+ * were merged or split by RFCOMM are reassembled without allocating.
+ * The first byte of a frame is its type, which decides the length of the frame.
+ */
+public class FrameDecoder {
+
+    /**
+     * Receives the frames found by the decoder
+     */
+    public interface FrameListener {
+        /**
+         * Called for every complete frame. The buffer is reused, so the frame must be
+         * consumed before returning.
+         *
+         * @param buffer - The buffer containing the frame
+         * @param offset - The offset of the type byte in the buffer
+         * @param length - The length of the frame (including the type byte)
+         */
+        void onFrame(byte[] buffer, int offset, int length);
+    }
+
+    /**
+     * Frame length for types where the byte after the type holds the payload
+     * length
+     */
+    public static final int LENGTH_PREFIXED = -1;
+
+    public static final int MAX_FRAME_LENGTH = 2 + 255; // type + length + payload
+
+    private static final int UNKNOWN = 0;
+
+    private final int[] frameLengths = new int[256]; // frame length for each type
+    private final byte[] ring;
+    private final int mask;
+    private final byte[] scratch = new byte[MAX_FRAME_LENGTH]; // for frames that wrap around the ring
+    private int readPos, writePos; // only ever increase, masked on access
+    private long droppedBytes;
+
+    /**
+     * Constructor for FrameDecoder.
+     *
+     * @param capacity - The size of the ring buffer (rounded up to a power of two)
+     */
+    public FrameDecoder(int capacity) {
+        int size = Integer.highestOneBit(Math.max(capacity, 2 * MAX_FRAME_LENGTH) - 1) << 1;
+        ring = new byte[size];
+        mask = size - 1;
+    }
+
+    /**
+     * Registers the length of a frame type. Bytes that do not start a registered
+     * frame type are skipped.
+     *
+     * @param type   - The type byte of the frame
+     * @param length - The total length of the frame or {@link #LENGTH_PREFIXED}
+     */
+    public void setFrameLength(int type, int length) {
+        if (length != LENGTH_PREFIXED && (length < 1 || length > MAX_FRAME_LENGTH))
+            throw new IllegalArgumentException("Invalid frame length " + length);
+        frameLengths[type & 0xFF] = length;
+    }
+
+    /**
+     * Reads as many bytes as are available (up to the free space in the ring) with
+     * a single read call.
+     *
+     * @param inputStream - The stream to read from
+     * @return the number of bytes read, or -1 if the stream has ended
+     * @throws IOException if the read fails
+     */
+    public int readFrom(InputStream inputStream) throws IOException {
+        int used = writePos - readPos;
+        if (used == ring.length) {
+            // ring is full of garbage that never formed a frame
+            droppedBytes += used;
+            readPos = writePos;
+            used = 0;
+        }
+        int start = writePos & mask;
+        int length = Math.min(ring.length - used, ring.length - start);
+        int bytesRead = inputStream.read(ring, start, length);
+        if (bytesRead > 0)
+            writePos += bytesRead;
+        return bytesRead;
+    }
+
+    /**
+     * Hands every complete frame in the ring to the listener. Incomplete frames are
+     * kept until the rest of their bytes arrive.
+     *
+     * @param listener - The listener for the frames
+     * @return the number of frames decoded
+     */
+    public int drain(FrameListener listener) {
+        int frames = 0;
+        while (true) {
+            int available = writePos - readPos;
+            if (available == 0)
+                break;
+            int length = frameLengths[ring[readPos & mask] & 0xFF];
+            if (length == UNKNOWN) {
+                // not the start of a frame, resynchronise on the next byte
+                readPos++;
+                droppedBytes++;
+                continue;
+            }
+            if (length == LENGTH_PREFIXED) {
+                if (available < 2)
+                    break;
+                length = 2 + (ring[(readPos + 1) & mask] & 0xFF);
+            }
+            if (available < length)
+                break; // wait for the rest of the frame
+            int start = readPos & mask;
+            if (start + length <= ring.length) {
+                listener.onFrame(ring, start, length);
+            } else {
+                int firstPart = ring.length - start;
+                System.arraycopy(ring, start, scratch, 0, firstPart);
+                System.arraycopy(ring, 0, scratch, firstPart, length - firstPart);
+                listener.onFrame(scratch, 0, length);
+            }
+            readPos += length;
+            frames++;
+        }
+        return frames;
+    }
+
+    /**
+     * Discards any buffered bytes, e.g. after a reconnection.
+     */
+    public void reset() {
+        readPos = writePos;
+    }
+
+    /**
+     * @return the number of bytes skipped because they did not form a frame
+     */
+    public long getDroppedBytes() {
+        return droppedBytes;
+    }
+}
@@ -0,0 +1,175 @@
+package mdp.grp3.arcm.util;
+
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Telemetry for the link to the RPi: traffic counters and histograms of the
+ * frame inter-arrival time, write latency, heartbeat round trip time and how
+ * long received frames wait for the UI thread (all in nanoseconds). Nothing
+ * here allocates while recording.
+ */
+public class LinkMetrics {
+    private final AtomicLong bytesIn = new AtomicLong();
+    private final AtomicLong bytesOut = new AtomicLong();
+    private final AtomicLong framesIn = new AtomicLong();
+    private final AtomicLong framesOut = new AtomicLong();
+    private final Histogram interArrival = new Histogram();
+    private final Histogram writeLatency = new Histogram();
+    private final Histogram rtt = new Histogram();
+    private final Histogram uiLag = new Histogram();
+    private long lastFrameTime; // System.nanoTime() of the last received frame, only used by the reader
+
+    // used by formatReadout() to turn the counters into rates
+    private long lastReadoutTime, lastReadoutBytesIn, lastReadoutBytesOut, lastReadoutFramesIn;
+
+    /**
+     * Reader thread only. Counts bytes read from the link.
+     *
+     * @param bytes - The number of bytes read
+     */
+    public void recordBytesIn(int bytes) {
+        if (bytes > 0)
+            bytesIn.addAndGet(bytes);
+    }
+
+    /**
+     * Reader thread only. Counts a decoded frame and the time since the last one.
+     *
+     * @param now - System.nanoTime() when the frame was decoded
+     */
+    public void recordFrameIn(long now) {
+        if (framesIn.getAndIncrement() > 0)
+            interArrival.record(now - lastFrameTime);
+        lastFrameTime = now;
+    }
+
+    /**
+     * Counts a flush to the link.
+     *
+     * @param bytes  - The number of bytes written
+     * @param frames - The number of writes combined into the flush
+     */
+    public void recordWrite(int bytes, int frames) {
+        bytesOut.addAndGet(bytes);
+        framesOut.addAndGet(frames);
+    }
+
+    /**
+     * @param nanos - The time from queuing a write until it was flushed
+     */
+    public void recordWriteLatency(long nanos) {
+        writeLatency.record(nanos);
+    }
+
+    /**
+     * @param nanos - The round trip time of a ping
+     */
+    public void recordRtt(long nanos) {
+        rtt.record(nanos);
+    }
+
+    /**
+     * UI thread only. Records how long a received frame waited before the UI
+     * thread handled it.
+     *
+     * @param nanos - The time from receiving the frame until it was handled
+     */
+    public void recordUiLag(long nanos) {
+        uiLag.record(nanos);
+    }
+
+    /**
+     * @return the number of bytes received
+     */
+    public long getBytesIn() {
+        return bytesIn.get();
+    }
+
+    /**
+     * @return the number of bytes written
+     */
+    public long getBytesOut() {
+        return bytesOut.get();
+    }
+
+    /**
+     * @return the number of frames received
+     */
+    public long getFramesIn() {
+        return framesIn.get();
+    }
+
+    /**
+     * @return the number of writes flushed
+     */
+    public long getFramesOut() {
+        return framesOut.get();
+    }
+
+    /**
+     * @return the time between received frames
+     */
+    public Histogram getInterArrival() {
+        return interArrival;
+    }
+
+    /**
+     * @return the time from queuing a write until it was flushed
+     */
+    public Histogram getWriteLatency() {
+        return writeLatency;
+    }
+
+    /**
+     * @return the heartbeat round trip time
+     */
+    public Histogram getRtt() {
+        return rtt;
+    }
+
+    /**
+     * @return the time received frames waited for the UI thread
+     */
+    public Histogram getUiLag() {
+        return uiLag;
+    }
+
+    /**
+     * Clears everything, called when a new connection is set up.
+     */
+    public void reset() {
+        bytesIn.set(0);
+        bytesOut.set(0);
+        framesIn.set(0);
+        framesOut.set(0);
+        interArrival.reset();
+        writeLatency.reset();
+        rtt.reset();
+        uiLag.reset();
+        lastReadoutTime = 0;
+        lastReadoutBytesIn = lastReadoutBytesOut = lastReadoutFramesIn = 0;
+    }
+
+    /**
+     * A one line summary for the UI, with the throughput since the previous call.
+     * Should only be called from one thread.
+     *
+     * @return the summary, e.g. "RTT 38/95ms ↓0.1 ↑0.0 kB/s 6 msg/s lag 2ms"
+     */
+    public String formatReadout() {
+        long now = System.nanoTime();
+        long in = bytesIn.get(), out = bytesOut.get(), frames = framesIn.get();
+        double seconds = lastReadoutTime == 0 ? 0 : (now - lastReadoutTime) / 1e9;
+        double inRate = seconds > 0 ? (in - lastReadoutBytesIn) / seconds / 1000 : 0;
+        double outRate = seconds > 0 ? (out - lastReadoutBytesOut) / seconds / 1000 : 0;
+        double frameRate = seconds > 0 ? (frames - lastReadoutFramesIn) / seconds : 0;
+        lastReadoutTime = now;
+        lastReadoutBytesIn = in;
+        lastReadoutBytesOut = out;
+        lastReadoutFramesIn = frames;
+        return String.format(Locale.ENGLISH, "RTT %d/%dms ↓%.1f ↑%.1f kB/s %.0f msg/s lag %dms",
+                rtt.getPercentile(50) / 1_000_000, rtt.getPercentile(99) / 1_000_000, inRate, outRate, frameRate,
+                uiLag.getPercentile(99) / 1_000_000);
+    }
+}
@@ -0,0 +1,82 @@
+package mdp.grp3.arcm.util;
+
+import java.util.Arrays;
+
+/**
+ * A fixed-capacity ring of log lines. Adding a line is constant time, and once
+ * the ring is full the oldest line is overwritten, so a long run cannot grow
+ * the log without limit.
+ */
+public class MessageLog {
+    private final String[] lines;
+    private int start; // index of the oldest line
+    private int size;
+    private long added; // lines added since the log was created or cleared
+
+    /**
+     * Constructor for MessageLog.
+     *
+     * @param capacity - The number of lines kept
+     */
+    public MessageLog(int capacity) {
+        lines = new String[Math.max(1, capacity)];
+    }
+
+    /**
+     * Adds a line after the newest one
+     *
+     * @param line - The line to add
+     * @return whether the oldest line was dropped to make room
+     */
+    public boolean add(String line) {
+        added++;
+        if (size < lines.length) {
+            lines[(start + size++) % lines.length] = line;
+            return false;
+        }
+        lines[start] = line;
+        start = (start + 1) % lines.length;
+        return true;
+    }
+
+    /**
+     * @param index - The position of the line, 0 being the oldest kept
+     * @return the line at the position
+     */
+    public String get(int index) {
+        if (index < 0 || index >= size)
+            throw new IndexOutOfBoundsException("Index: " + index + ", size: " + size);
+        return lines[(start + index) % lines.length];
+    }
+
+    /**
+     * @return the number of lines kept
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return the most lines that can be kept
+     */
+    public int getCapacity() {
+        return lines.length;
+    }
+
+    /**
+     * @return the number of lines ever added, including the dropped ones
+     */
+    public long getAdded() {
+        return added;
+    }
+
+    /**
+     * Removes all the lines
+     */
+    public void clear() {
+        Arrays.fill(lines, null);
+        start = 0;
+        size = 0;
+        added = 0;
+    }
+}
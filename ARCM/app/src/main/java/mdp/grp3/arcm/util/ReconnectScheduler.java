@@ -0,0 +1,85 @@
+package mdp.grp3.arcm.util;
+
+import java.util.Random;
+
+/**
+ * Decides how long to wait between reconnection attempts. The delay doubles
+ * after every failed attempt (up to a maximum) and is randomised so that the
+ * retries do not line up with the RPi restarting its server.
+ */
+public class ReconnectScheduler {
+    private final long baseDelayMillis;
+    private final long maxDelayMillis;
+    private final int maxAttempts;
+    private final Random random;
+
+    private int attempt; // attempts made since the last reset
+    private long startTime; // System.nanoTime() of the last reset
+
+    /**
+     * Constructor for ReconnectScheduler.
+     *
+     * @param baseDelayMillis - The delay before the first attempt
+     * @param maxDelayMillis  - The upper bound for the delay
+     * @param maxAttempts     - The number of attempts before giving up
+     * @param random          - The source for the jitter
+     */
+    public ReconnectScheduler(long baseDelayMillis, long maxDelayMillis, int maxAttempts, Random random) {
+        this.baseDelayMillis = baseDelayMillis;
+        this.maxDelayMillis = maxDelayMillis;
+        this.maxAttempts = maxAttempts;
+        this.random = random;
+        reset();
+    }
+
+    /**
+     * Starts a new round of attempts, called when the connection is lost.
+     */
+    public void reset() {
+        attempt = 0;
+        startTime = System.nanoTime();
+    }
+
+    /**
+     * @return whether there are attempts left in the budget
+     */
+    public boolean hasAttemptsLeft() {
+        return attempt < maxAttempts;
+    }
+
+    /**
+     * Counts a new attempt and returns how long to wait before making it.
+     * Half of the delay is fixed and the other half is random.
+     *
+     * @return the delay in milliseconds
+     */
+    public long nextDelayMillis() {
+        long delay = baseDelayMillis << Math.min(attempt, 20);
+        if (delay <= 0 || delay > maxDelayMillis)
+            delay = maxDelayMillis;
+        attempt++;
+        long half = delay / 2;
+        return half + (half > 0 ? (long) (random.nextDouble() * (delay - half)) : 0);
+    }
+
+    /**
+     * @return the number of attempts made since the last reset
+     */
+    public int getAttempt() {
+        return attempt;
+    }
+
+    /**
+     * @return the maximum number of attempts
+     */
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    /**
+     * @return the time since the last reset in milliseconds
+     */
+    public long getElapsedMillis() {
+        return (System.nanoTime() - startTime) / 1_000_000;
+    }
+}
@@ -0,0 +1,207 @@
+package mdp.grp3.arcm.util;
+
+import java.util.Arrays;
+
+import mdp.grp3.arcm.constant.RPI_TO_ARCM;
+
+/**
+ * Turns the status updates of a task into timings. Every status update starts
+ * a phase that lasts until the next one, and every leg towards an obstacle is
+ * timed separately, so a run shows whether the driving or the image
+ * recognition takes the time.
+ */
+public class RunAnalytics {
+    public static final int STARTUP = 0; // from the start until the car first moves
+    public static final int DRIVE = 1; // driving to an obstacle
+    public static final int CAPTURE = 2; // taking the picture
+    public static final int RECOGNITION = 3; // round trip to the image recognition server
+    public static final int TURNAROUND = 4; // from the result until the car moves on
+    public static final int RETURN = 5; // driving back to the carpark
+    public static final int PHASES = 6;
+    public static final String[] PHASE_NAMES = { "Startup", "Drive", "Capture", "Recognition", "Turnaround",
+            "Return" };
+    public static final int MAX_LEGS = 16; // more legs than any task has
+
+    /**
+     * The timings of one finished task
+     */
+    public static final class Run {
+        private final char task;
+        private final long startTimeMillis;
+        private final int totalMillis;
+        private final int[] phaseMillis;
+        private final int[][] legMillis;
+
+        /**
+         * Constructor for Run.
+         *
+         * @param task            - The task, see {@link mdp.grp3.arcm.constant.Task}
+         * @param startTimeMillis - The wall-clock time the task started
+         * @param totalMillis     - The time the whole task took
+         * @param phaseMillis     - The time spent in each phase
+         * @param legMillis       - The time spent in each phase of each leg
+         */
+        public Run(char task, long startTimeMillis, int totalMillis, int[] phaseMillis, int[][] legMillis) {
+            this.task = task;
+            this.startTimeMillis = startTimeMillis;
+            this.totalMillis = totalMillis;
+            this.phaseMillis = phaseMillis;
+            this.legMillis = legMillis;
+        }
+
+        /**
+         * @return the task, see {@link mdp.grp3.arcm.constant.Task}
+         */
+        public char getTask() {
+            return task;
+        }
+
+        /**
+         * @return the wall-clock time the task started
+         */
+        public long getStartTimeMillis() {
+            return startTimeMillis;
+        }
+
+        /**
+         * @return the time the whole task took
+         */
+        public int getTotalMillis() {
+            return totalMillis;
+        }
+
+        /**
+         * @param phase - The phase, e.g. {@link #DRIVE}
+         * @return the time spent in the phase over the whole task
+         */
+        public int getPhaseMillis(int phase) {
+            return phaseMillis[phase];
+        }
+
+        /**
+         * @return the number of legs, one per obstacle visited
+         */
+        public int getLegCount() {
+            return legMillis.length;
+        }
+
+        /**
+         * @param leg   - The leg, in the order they were driven
+         * @param phase - The phase, e.g. {@link #DRIVE}
+         * @return the time spent in the phase during the leg
+         */
+        public int getLegMillis(int leg, int phase) {
+            return legMillis[leg][phase];
+        }
+    }
+
+    private final int[] phaseMillis = new int[PHASES];
+    private final int[][] legMillis = new int[MAX_LEGS][PHASES];
+    private char task;
+    private long startTimeMillis, startNanos, phaseStartNanos;
+    private int phase = -1; // -1 when no task is running
+    private int leg = -1; // -1 before the first leg
+
+    /**
+     * Starts timing a task
+     *
+     * @param task     - The task, see {@link mdp.grp3.arcm.constant.Task}
+     * @param nowNanos - System.nanoTime() when the task started
+     */
+    public void start(char task, long nowNanos) {
+        this.task = task;
+        startTimeMillis = System.currentTimeMillis();
+        startNanos = nowNanos;
+        phaseStartNanos = nowNanos;
+        phase = STARTUP;
+        leg = -1;
+        Arrays.fill(phaseMillis, 0);
+        for (int[] legPhases : legMillis)
+            Arrays.fill(legPhases, 0);
+    }
+
+    /**
+     * @return whether a task is being timed
+     */
+    public boolean isRunning() {
+        return phase >= 0;
+    }
+
+    /**
+     * Moves to the phase a status update starts. Updates that do not start a
+     * phase, or that arrive when no task is running, are ignored.
+     *
+     * @param status   - The status, see {@link RPI_TO_ARCM.StatusMessages}
+     * @param nowNanos - System.nanoTime() when the update was received
+     */
+    public void onStatus(char status, long nowNanos) {
+        if (phase < 0)
+            return;
+        switch (status) {
+            case RPI_TO_ARCM.StatusMessages.NEXT_OBSTACLE:
+                endPhase(nowNanos);
+                if (leg < MAX_LEGS - 1)
+                    leg++;
+                phase = DRIVE;
+                break;
+            case RPI_TO_ARCM.StatusMessages.OPENING_CAMERA:
+                endPhase(nowNanos);
+                phase = CAPTURE;
+                break;
+            case RPI_TO_ARCM.StatusMessages.IDENTIFYING_IMAGE:
+                // week8.c can send this more than once per capture, so only the first one
+                // starts the phase. A repeat must not restart the recognition time
+                if (phase != RECOGNITION) {
+                    endPhase(nowNanos);
+                    phase = RECOGNITION;
+                }
+                break;
+            case RPI_TO_ARCM.StatusMessages.RECEIVED_TARGET:
+                endPhase(nowNanos);
+                phase = TURNAROUND;
+                break;
+            case RPI_TO_ARCM.StatusMessages.GOING_BACK:
+                endPhase(nowNanos);
+                phase = RETURN;
+                break;
+            default:
+                break;
+        }
+    }
+
+    /**
+     * Ends the task being timed
+     *
+     * @param nowNanos - System.nanoTime() when the task finished
+     * @return the timings of the task, or null if no task was running
+     */
+    public Run finish(long nowNanos) {
+        if (phase < 0)
+            return null;
+        endPhase(nowNanos);
+        phase = -1;
+        int[][] legs = new int[leg + 1][];
+        for (int i = 0; i <= leg; i++)
+            legs[i] = legMillis[i].clone();
+        return new Run(task, startTimeMillis, toMillis(nowNanos - startNanos), phaseMillis.clone(), legs);
+    }
+
+    /**
+     * Stops timing without keeping the task, e.g. when the timer is reset
+     */
+    public void cancel() {
+        phase = -1;
+    }
+
+    private void endPhase(long nowNanos) {
+        int millis = toMillis(nowNanos - phaseStartNanos);
+        phaseMillis[phase] += millis;
+        if (leg >= 0)
+            legMillis[leg][phase] += millis;
+        phaseStartNanos = nowNanos;
+    }
+
+    private static int toMillis(long nanos) {
+        return (int) Math.max(0, Math.min(Integer.MAX_VALUE, nanos / 1_000_000));
+    }
+}
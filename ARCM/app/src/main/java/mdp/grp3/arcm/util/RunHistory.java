@@ -0,0 +1,211 @@
+package mdp.grp3.arcm.util;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Locale;
+
+import mdp.grp3.arcm.constant.Task;
+
+/**
+ * The timings of the last runs, kept in a small binary file so that runs can be
+ * compared over a whole session of practice.
+ * <p>
+ * The file is a header (magic, format version, run count) followed by every
+ * run: the task, the wall-clock start time, the total time, the number of legs,
+ * the time per phase and then the time per phase of every leg, all in ms.
+ */
+public class RunHistory {
+    public static final int DEFAULT_CAPACITY = 100; // runs kept
+
+    private static final int MAGIC = 0x4152524E; // "ARRN"
+    private static final short FORMAT_VERSION = 1;
+
+    private final ArrayDeque<RunAnalytics.Run> runs = new ArrayDeque<>();
+    private final int capacity;
+
+    /**
+     * Constructor for RunHistory.
+     *
+     * @param capacity - The number of runs kept, the oldest are dropped
+     */
+    public RunHistory(int capacity) {
+        this.capacity = Math.max(1, capacity);
+    }
+
+    /**
+     * Adds a run, dropping the oldest one if the history is full
+     *
+     * @param run - The run to add
+     */
+    public void add(RunAnalytics.Run run) {
+        if (runs.size() == capacity)
+            runs.removeFirst();
+        runs.addLast(run);
+    }
+
+    /**
+     * @return the number of runs kept
+     */
+    public int size() {
+        return runs.size();
+    }
+
+    /**
+     * @param task - The task, see {@link Task}
+     * @return the number of runs of the task
+     */
+    public int getRunCount(char task) {
+        int count = 0;
+        for (RunAnalytics.Run run : runs)
+            if (run.getTask() == task)
+                count++;
+        return count;
+    }
+
+    /**
+     * @param task       - The task, see {@link Task}
+     * @param phase      - The phase, e.g. {@link RunAnalytics#DRIVE}, or -1 for
+     *                   the whole run
+     * @param percentile - The percentile between 0 and 100
+     * @return the percentile of the time a run of the task spent in the phase, 0
+     *         if there are no runs
+     */
+    public int getPercentile(char task, int phase, double percentile) {
+        int[] values = new int[runs.size()];
+        int n = 0;
+        for (RunAnalytics.Run run : runs)
+            if (run.getTask() == task)
+                values[n++] = phase < 0 ? run.getTotalMillis() : run.getPhaseMillis(phase);
+        return percentile(values, n, percentile);
+    }
+
+    /**
+     * @param task       - The task, see {@link Task}
+     * @param phase      - The phase, e.g. {@link RunAnalytics#RECOGNITION}
+     * @param percentile - The percentile between 0 and 100
+     * @return the percentile of the time a single leg spent in the phase, over
+     *         every leg of every run of the task, 0 if there are no legs
+     */
+    public int getLegPercentile(char task, int phase, double percentile) {
+        int legs = 0;
+        for (RunAnalytics.Run run : runs)
+            if (run.getTask() == task)
+                legs += run.getLegCount();
+        int[] values = new int[legs];
+        int n = 0;
+        for (RunAnalytics.Run run : runs)
+            if (run.getTask() == task)
+                for (int leg = 0; leg < run.getLegCount(); leg++)
+                    values[n++] = run.getLegMillis(leg, phase);
+        return percentile(values, n, percentile);
+    }
+
+    /**
+     * Nearest-rank percentile of the first n values, which are sorted in place
+     */
+    private static int percentile(int[] values, int n, double percentile) {
+        if (n == 0)
+            return 0;
+        Arrays.sort(values, 0, n);
+        int rank = (int) Math.ceil(n * percentile / 100);
+        return values[Math.min(n, Math.max(1, rank)) - 1];
+    }
+
+    /**
+     * Summarises the runs of a task, the median and 90th percentile of every
+     * phase per run and per leg, and the share of the median run each phase
+     * takes
+     *
+     * @param task - The task, see {@link Task}
+     * @return the summary, one phase per line
+     */
+    public String formatReport(char task) {
+        int count = getRunCount(task);
+        if (count == 0)
+            return "No runs yet";
+        int medianTotal = getPercentile(task, -1, 50);
+        StringBuilder report = new StringBuilder(String.format(Locale.ENGLISH,
+                "%d runs, median %.1fs, p90 %.1fs\nPhase: per run p50/p90 (share), per leg p50/p90",
+                count, medianTotal / 1e3, getPercentile(task, -1, 90) / 1e3));
+        for (int phase = 0; phase < RunAnalytics.PHASES; phase++) {
+            int median = getPercentile(task, phase, 50);
+            if (median == 0 && getPercentile(task, phase, 90) == 0)
+                continue; // the task has no such phase, e.g. no camera in Week 9
+            report.append(String.format(Locale.ENGLISH, "\n%s: %.1f/%.1fs (%d%%), %.2f/%.2fs",
+                    RunAnalytics.PHASE_NAMES[phase], median / 1e3, getPercentile(task, phase, 90) / 1e3,
+                    medianTotal == 0 ? 0 : median * 100 / medianTotal,
+                    getLegPercentile(task, phase, 50) / 1e3, getLegPercentile(task, phase, 90) / 1e3));
+        }
+        return report.toString();
+    }
+
+    /**
+     * Writes the history, replacing the file only once it is complete
+     *
+     * @param output - The file to write to
+     * @throws IOException if the file cannot be written
+     */
+    public void save(File output) throws IOException {
+        File temporary = new File(output.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(temporary)))) {
+            out.writeInt(MAGIC);
+            out.writeShort(FORMAT_VERSION);
+            out.writeInt(runs.size());
+            for (RunAnalytics.Run run : runs) {
+                out.writeChar(run.getTask());
+                out.writeLong(run.getStartTimeMillis());
+                out.writeInt(run.getTotalMillis());
+                out.writeByte(run.getLegCount());
+                for (int phase = 0; phase < RunAnalytics.PHASES; phase++)
+                    out.writeInt(run.getPhaseMillis(phase));
+                for (int leg = 0; leg < run.getLegCount(); leg++)
+                    for (int phase = 0; phase < RunAnalytics.PHASES; phase++)
+                        out.writeInt(run.getLegMillis(leg, phase));
+            }
+        }
+        if (!temporary.renameTo(output))
+            throw new IOException("Cannot replace " + output);
+    }
+
+    /**
+     * Reads a history written by {@link #save(File)}
+     *
+     * @param input    - The file to read, a missing file is an empty history
+     * @param capacity - The number of runs kept
+     * @return the history
+     * @throws IOException if the file cannot be read or is not a run history
+     */
+    public static RunHistory load(File input, int capacity) throws IOException {
+        RunHistory history = new RunHistory(capacity);
+        if (!input.exists())
+            return history;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(input)))) {
+            if (in.readInt() != MAGIC || in.readShort() != FORMAT_VERSION)
+                throw new IOException("Not a run history: " + input);
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                char task = in.readChar();
+                long startTimeMillis = in.readLong();
+                int totalMillis = in.readInt();
+                int[][] legMillis = new int[in.readUnsignedByte()][RunAnalytics.PHASES];
+                int[] phaseMillis = new int[RunAnalytics.PHASES];
+                for (int phase = 0; phase < RunAnalytics.PHASES; phase++)
+                    phaseMillis[phase] = in.readInt();
+                for (int[] leg : legMillis)
+                    for (int phase = 0; phase < RunAnalytics.PHASES; phase++)
+                        leg[phase] = in.readInt();
+                history.add(new RunAnalytics.Run(task, startTimeMillis, totalMillis, phaseMillis, legMillis));
+            }
+        }
+        return history;
+    }
+}
@@ -0,0 +1,303 @@
+package mdp.grp3.arcm.util;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+
+import mdp.grp3.arcm.protocol.Schema;
+
+/**
+ * Records every frame sent to and received from the RPi, and the app's own
+ * events such as the timer, into an append-only journal, so that a session can
+ * be replayed or analysed later. The file is memory mapped, so a record is only
+ * a copy into memory: no system calls or flushes on the IO threads, and no
+ * locks since every record reserves its own space up front. Closing waits for
+ * the records being copied, so it never trims one that is half written.
+ * <p>
+ * The file starts with a header (magic, format version, protocol version and
+ * the wall clock time in ms), followed by records of a System.nanoTime()
+ * timestamp, a direction byte, a 2 byte length and the frame itself. A zero
+ * timestamp marks the end. When the file is closed properly, a sparse time
+ * index follows: a count, then the timestamp and offset of the first record
+ * in every {@link #INDEX_INTERVAL} bytes, then the offset of the index and
+ * the index magic. A file without an index, e.g. after a crash, is still read
+ * from the start.
+ */
+public class SessionRecorder implements Closeable {
+
+    /**
+     * Receives the records read back from a file
+     */
+    public interface RecordListener {
+        /**
+         * Called for every record in the file, in the order they were written
+         *
+         * @param timestamp - System.nanoTime() when the frame was sent or received
+         * @param direction - {@link #INBOUND} or {@link #OUTBOUND}
+         * @param buffer    - The buffer containing the frame
+         * @param offset    - The offset of the frame in the buffer
+         * @param length    - The length of the frame
+         */
+        void onRecord(long timestamp, byte direction, byte[] buffer, int offset, int length);
+    }
+
+    public static final byte INBOUND = 0; // from the RPi
+    public static final byte OUTBOUND = 1; // to the RPi
+    public static final byte EVENT = 2; // from the app itself, the first byte is the event
+    public static final byte TIMER_STARTED = 1; // event, followed by the task
+    public static final byte TIMER_STOPPED = 2; // event, followed by the task
+    public static final byte TIMER_RESET = 3; // event, followed by the task
+    public static final int DEFAULT_CAPACITY = 16 << 20; // enough for hours of a typical run
+    public static final int INDEX_INTERVAL = 64 << 10; // bytes of records per index entry
+
+    private static final int MAGIC = 0x41524D52; // "ARMR"
+    private static final int INDEX_MAGIC = 0x41524D49; // "ARMI"
+    private static final short FORMAT_VERSION = 2; // 2 added the index
+    private static final int INDEX_ENTRY_SIZE = 12; // timestamp, offset
+    private static final int HEADER_SIZE = 16; // magic, format version, protocol version, start time
+    private static final int RECORD_HEADER_SIZE = 11; // timestamp, direction, length
+    private static final int MAX_RECORD_LENGTH = 0xFFFF;
+
+    private final RandomAccessFile file;
+    private final MappedByteBuffer buffer; // only ever used with absolute puts
+    private final AtomicInteger position = new AtomicInteger(HEADER_SIZE); // end of the reserved space
+    private final AtomicLong droppedRecords = new AtomicLong();
+    private final AtomicInteger writers = new AtomicInteger(); // records being reserved or copied
+    private final AtomicIntegerArray index; // offset of the first record at or after every interval
+
+    /**
+     * Creates the file, replacing any existing one, and maps it
+     *
+     * @param output   - The file to record to
+     * @param capacity - The maximum size of the file, records that do not fit are
+     *                 dropped
+     * @throws IOException if the file cannot be created or mapped
+     */
+    public SessionRecorder(File output, int capacity) throws IOException {
+        file = new RandomAccessFile(output, "rw");
+        try {
+            file.setLength(0);
+            buffer = file.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+        } catch (IOException e) {
+            file.close();
+            throw e;
+        }
+        index = new AtomicIntegerArray(capacity / INDEX_INTERVAL + 1);
+        index.set(0, HEADER_SIZE);
+        buffer.putInt(0, MAGIC);
+        buffer.putShort(4, FORMAT_VERSION);
+        buffer.putShort(6, (short) Schema.VERSION);
+        buffer.putLong(8, System.currentTimeMillis());
+    }
+
+    /**
+     * Appends a frame. Safe to call from any thread, records from different
+     * threads may be slightly out of timestamp order.
+     *
+     * @param timestamp - System.nanoTime() when the frame was sent or received
+     * @param direction - {@link #INBOUND} or {@link #OUTBOUND}
+     * @param data      - The buffer containing the frame
+     * @param offset    - The offset of the frame in the buffer
+     * @param length    - The length of the frame
+     */
+    public void record(long timestamp, byte direction, byte[] data, int offset, int length) {
+        // counted before reserving, so that close() sees every record that gets space
+        writers.incrementAndGet();
+        try {
+            int size = RECORD_HEADER_SIZE + Math.min(length, MAX_RECORD_LENGTH);
+            int start;
+            do {
+                start = position.get();
+                if (start + size > buffer.capacity()) {
+                    droppedRecords.incrementAndGet();
+                    return;
+                }
+            } while (!position.compareAndSet(start, start + size));
+            // the record after this one is the first of every interval this one reaches into
+            for (int i = start / INDEX_INTERVAL + 1; i <= (start + size) / INDEX_INTERVAL; i++)
+                index.set(i, start + size);
+            buffer.put(start + 8, direction);
+            buffer.putShort(start + 9, (short) (size - RECORD_HEADER_SIZE));
+            for (int i = 0; i < size - RECORD_HEADER_SIZE; i++)
+                buffer.put(start + RECORD_HEADER_SIZE + i, data[offset + i]);
+            // written last, so that a reader never sees a record without its contents
+            buffer.putLong(start, timestamp == 0 ? 1 : timestamp);
+        } finally {
+            writers.decrementAndGet();
+        }
+    }
+
+    /**
+     * @return the number of records dropped because the file was full
+     */
+    public long getDroppedRecords() {
+        return droppedRecords.get();
+    }
+
+    /**
+     * @return the number of bytes recorded, including the header
+     */
+    public int getSize() {
+        return Math.min(position.get(), buffer.capacity());
+    }
+
+    /**
+     * Stops recording, trims the file to the recorded size and appends the index.
+     * Records still being copied by other threads are waited for, later ones are
+     * dropped.
+     */
+    @Override
+    public void close() throws IOException {
+        int end = position.getAndSet(buffer.capacity()); // nothing fits any more
+        if (end > buffer.capacity())
+            end = buffer.capacity();
+        // a record is a short copy that never blocks, so spinning is cheaper than a lock
+        while (writers.get() != 0)
+            Thread.yield();
+        buffer.force();
+        int entries = 0;
+        while (entries < index.length() && index.get(entries) != 0 && index.get(entries) < end)
+            entries++;
+        ByteBuffer trailer = ByteBuffer.allocate(8 + 4 + entries * INDEX_ENTRY_SIZE + 8);
+        trailer.putLong(0); // ends the records even if the file was full
+        trailer.putInt(entries);
+        for (int i = 0; i < entries; i++)
+            trailer.putLong(buffer.getLong(index.get(i))).putInt(index.get(i));
+        trailer.putInt(end + 8).putInt(INDEX_MAGIC);
+        try {
+            file.setLength(end);
+            file.seek(end);
+            file.write(trailer.array());
+        } finally {
+            file.close();
+        }
+    }
+
+    /**
+     * Reads back a recorded file
+     *
+     * @param input    - The file to read
+     * @param listener - Receives every record
+     * @return the number of records read
+     * @throws IOException if the file cannot be read or is not a recording
+     */
+    public static int read(File input, RecordListener listener) throws IOException {
+        return read(input, Long.MIN_VALUE, listener);
+    }
+
+    /**
+     * Reads back a recorded file from a point in time, using the index to skip
+     * the records before it
+     *
+     * @param input    - The file to read
+     * @param from     - System.nanoTime() of the first record wanted
+     * @param listener - Receives every record from that time on
+     * @return the number of records read
+     * @throws IOException if the file cannot be read or is not a recording
+     */
+    public static int read(File input, long from, RecordListener listener) throws IOException {
+        try (RandomAccessFile file = new RandomAccessFile(input, "r")) {
+            ByteBuffer buffer = file.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, file.length());
+            if (buffer.limit() < HEADER_SIZE || buffer.getInt(0) != MAGIC)
+                throw new IOException("Not a session recording");
+            if (buffer.getShort(4) > FORMAT_VERSION)
+                throw new IOException("Unsupported recording version " + buffer.getShort(4));
+            byte[] frame = new byte[MAX_RECORD_LENGTH];
+            int count = 0;
+            int pos = seek(buffer, from);
+            while (pos + RECORD_HEADER_SIZE <= buffer.limit()) {
+                long timestamp = buffer.getLong(pos);
+                if (timestamp == 0)
+                    break;
+                int length = buffer.getShort(pos + 9) & 0xFFFF;
+                if (pos + RECORD_HEADER_SIZE + length > buffer.limit())
+                    break; // cut off
+                if (timestamp >= from) {
+                    buffer.position(pos + RECORD_HEADER_SIZE);
+                    buffer.get(frame, 0, length);
+                    listener.onRecord(timestamp, buffer.get(pos + 8), frame, 0, length);
+                    count++;
+                }
+                pos += RECORD_HEADER_SIZE + length;
+            }
+            return count;
+        }
+    }
+
+    /**
+     * Finds where to start reading for a point in time
+     *
+     * @return the offset of a record at or before the time, the first record if
+     *         the file has no index
+     */
+    private static int seek(ByteBuffer buffer, long from) {
+        int limit = buffer.limit();
+        if (limit < HEADER_SIZE + 8 || buffer.getInt(limit - 4) != INDEX_MAGIC)
+            return HEADER_SIZE;
+        int indexStart = buffer.getInt(limit - 8);
+        int entries = buffer.getInt(indexStart);
+        // the last entry before the time, records of different threads can be
+        // slightly out of order so one more interval is read
+        int low = 0, high = entries - 1, found = -1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            if (buffer.getLong(indexStart + 4 + middle * INDEX_ENTRY_SIZE) < from) {
+                found = middle;
+                low = middle + 1;
+            } else {
+                high = middle - 1;
+            }
+        }
+        if (found <= 0)
+            return HEADER_SIZE;
+        return buffer.getInt(indexStart + 4 + (found - 1) * INDEX_ENTRY_SIZE + 8);
+    }
+
+    /**
+     * Writes a recorded file as CSV for analysis on a computer, one record per
+     * line with the time in ms since the first record, the direction and the
+     * bytes in hex
+     *
+     * @param input  - The file to export
+     * @param output - Receives the CSV
+     * @return the number of records exported
+     * @throws IOException if the file cannot be read or is not a recording
+     */
+    public static int export(File input, Appendable output) throws IOException {
+        final String[] directions = { "in", "out", "event" };
+        final long[] first = { 0 };
+        final IOException[] error = { null };
+        output.append("time_ms,direction,bytes\n");
+        int count = read(input, (timestamp, direction, buffer, offset, length) -> {
+            if (error[0] != null)
+                return;
+            if (first[0] == 0)
+                first[0] = timestamp;
+            StringBuilder line = new StringBuilder(32 + 3 * length);
+            line.append(String.format(Locale.ENGLISH, "%.3f,%s,", (timestamp - first[0]) / 1e6,
+                    direction >= 0 && direction < directions.length ? directions[direction] : "unknown"));
+            for (int i = 0; i < length; i++) {
+                if (i > 0)
+                    line.append(' ');
+                line.append(Character.forDigit((buffer[offset + i] >> 4) & 0xF, 16))
+                        .append(Character.forDigit(buffer[offset + i] & 0xF, 16));
+            }
+            try {
+                output.append(line).append('\n');
+            } catch (IOException e) {
+                error[0] = e;
+            }
+        });
+        if (error[0] != null)
+            throw error[0];
+        return count;
+    }
+}
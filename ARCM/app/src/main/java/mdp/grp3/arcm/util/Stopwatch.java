@@ -0,0 +1,119 @@
+package mdp.grp3.arcm.util;
+
+/**
+ * Measures the time of a task with the monotonic clock, so that changes to the
+ * wall clock do not affect it. The elapsed time is exact whenever it is read,
+ * however often the display is refreshed, and it can be formatted without
+ * allocating.
+ */
+public class Stopwatch {
+    /**
+     * The longest text {@link #format(char[])} writes
+     */
+    public static final int MAX_LENGTH = 16;
+
+    private long startNanos, stopNanos;
+    private boolean started, running;
+
+    /**
+     * Starts timing from zero
+     */
+    public void start() {
+        start(System.nanoTime());
+    }
+
+    void start(long nowNanos) {
+        startNanos = nowNanos;
+        started = true;
+        running = true;
+    }
+
+    /**
+     * Stops timing, keeping the elapsed time
+     */
+    public void stop() {
+        stop(System.nanoTime());
+    }
+
+    void stop(long nowNanos) {
+        if (!running)
+            return;
+        stopNanos = nowNanos;
+        running = false;
+    }
+
+    /**
+     * Goes back to the state before the first start
+     */
+    public void reset() {
+        started = false;
+        running = false;
+    }
+
+    /**
+     * @return whether the stopwatch was started and not reset since
+     */
+    public boolean isStarted() {
+        return started;
+    }
+
+    /**
+     * @return whether the stopwatch is timing
+     */
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * @return the time since the start, up to the stop if stopped
+     */
+    public long getElapsedNanos() {
+        return getElapsedNanos(System.nanoTime());
+    }
+
+    long getElapsedNanos(long nowNanos) {
+        if (!started)
+            return 0;
+        return (running ? nowNanos : stopNanos) - startNanos;
+    }
+
+    /**
+     * Writes the elapsed time as mm:ss:SSS
+     *
+     * @param out - The buffer to write to, at least {@link #MAX_LENGTH} long
+     * @return the number of characters written
+     */
+    public int format(char[] out) {
+        return format(getElapsedNanos() / 1_000_000, out);
+    }
+
+    /**
+     * Writes a time as mm:ss:SSS, with more digits for the minutes if needed
+     *
+     * @param millis - The time to write
+     * @param out    - The buffer to write to, at least {@link #MAX_LENGTH} long
+     * @return the number of characters written
+     */
+    public static int format(long millis, char[] out) {
+        long minutes = millis / 60_000;
+        int length = 0;
+        // minutes have at least two digits
+        long divisor = 10;
+        while (divisor * 10 <= minutes)
+            divisor *= 10;
+        for (; divisor > 0; divisor /= 10)
+            out[length++] = (char) ('0' + minutes / divisor % 10);
+        out[length++] = ':';
+        length = writeDigits(millis / 1000 % 60, 2, out, length);
+        out[length++] = ':';
+        return writeDigits(millis % 1000, 3, out, length);
+    }
+
+    private static int writeDigits(long value, int digits, char[] out, int offset) {
+        for (int i = digits - 1; i >= 0; i--) {
+            out[offset + i] = (char) ('0' + value % 10);
+            value /= 10;
+        }
+        return offset + digits;
+    }
+}
@@ -9,10 +9,16 @@ import android.content.ComponentName;
 import android.content.Context;
 import android.content.pm.ActivityInfo;
 import android.content.pm.PackageManager;
+import android.content.res.Resources;
+import android.util.SparseIntArray;
 import android.util.TypedValue;
 
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
 
 import mdp.grp3.arcm.R;
 
@@ -31,6 +37,51 @@ public final class ThemeManager {
         }
     }; // Maps the theme name to the theme defined in the styles.xml
 
+    // the colours the app looks up, resolved together whenever the theme changes
+    private static final int[] paletteAttrs = {
+            com.google.android.material.R.attr.colorPrimary,
+            com.google.android.material.R.attr.colorPrimaryDark,
+            com.google.android.material.R.attr.colorAccent,
+            com.google.android.material.R.attr.colorSecondary,
+            com.google.android.material.R.attr.colorSecondaryVariant,
+            androidx.appcompat.R.attr.colorAccent
+    };
+
+    // the index in the palette of every attribute in it
+    private static final SparseIntArray paletteIndices = new SparseIntArray(paletteAttrs.length);
+
+    static {
+        for (int i = 0; i < paletteAttrs.length; i++)
+            if (paletteIndices.indexOfKey(paletteAttrs[i]) < 0)
+                paletteIndices.put(paletteAttrs[i], i);
+    }
+
+    /**
+     * The palette colours resolved in one theme. The theme is held weakly, so
+     * the palette goes with its context
+     */
+    private static final class Palette {
+        final WeakReference<Resources.Theme> theme;
+        final int[] colors = new int[paletteAttrs.length];
+
+        Palette(Resources.Theme theme) {
+            this.theme = new WeakReference<>(theme);
+            TypedValue value = new TypedValue();
+            for (int i = 0; i < paletteAttrs.length; i++) {
+                theme.resolveAttribute(paletteAttrs[i], value, true);
+                colors[i] = value.data;
+            }
+        }
+    }
+
+    // the palette of every theme in use, so the activity's and a dialog's do not
+    // replace each other. Never changed, only replaced as a whole, so a lookup
+    // needs no lock
+    private static volatile Palette[] palettes = new Palette[0];
+
+    // switches the launcher aliases in the order the themes were chosen
+    private static final Executor aliasExecutor = Executors.newSingleThreadExecutor();
+
     /**
      * 
      * @return The themes available in the application.
@@ -49,15 +100,52 @@ public final class ThemeManager {
     }
 
     /**
+     * Looks up a colour of the context's theme. The palette colours are resolved
+     * once per theme, so looking them up again is an array read.
      * 
      * @param context - The context of the application.
      * @param attr    - The attribute value
      * @return The color associated with the attribute value.
      */
     public static int getColor(Context context, int attr) {
-        final TypedValue value = new TypedValue();
-        context.getTheme().resolveAttribute(attr, value, true);
-        return value.data;
+        Resources.Theme theme = context.getTheme();
+        int index = paletteIndices.get(attr, -1);
+        if (index < 0) {
+            // not in the palette, resolve it every time
+            final TypedValue value = new TypedValue();
+            theme.resolveAttribute(attr, value, true);
+            return value.data;
+        }
+        for (Palette palette : palettes)
+            if (palette.theme.get() == theme)
+                return palette.colors[index];
+        return addPalette(theme).colors[index];
+    }
+
+    /**
+     * Resolves the palette of a theme and adds it to the palettes, dropping the
+     * ones whose theme is gone
+     */
+    private static synchronized Palette addPalette(Resources.Theme theme) {
+        ArrayList<Palette> kept = new ArrayList<>(palettes.length + 1);
+        for (Palette palette : palettes) {
+            Resources.Theme cached = palette.theme.get();
+            if (cached == theme)
+                return palette; // resolved by another thread in the meantime
+            if (cached != null)
+                kept.add(palette);
+        }
+        Palette palette = new Palette(theme);
+        kept.add(palette);
+        palettes = kept.toArray(new Palette[0]);
+        return palette;
+    }
+
+    /**
+     * Forgets the resolved palettes, the next lookup resolves them again.
+     */
+    public static synchronized void clearPalette() {
+        palettes = new Palette[0];
     }
 
     /**
@@ -92,7 +180,10 @@ public final class ThemeManager {
     }
 
     /**
-     * Sets the new theme of the application.
+     * Sets the new theme of the application. The activity's theme changes in
+     * place, the views already inflated have to be tinted again by their owner.
+     * The launcher alias that remembers the theme is switched in the background,
+     * as the package manager is slow.
      * 
      * @param activity  - The application activity.
      * @param selection - The selected theme.
@@ -101,17 +192,23 @@ public final class ThemeManager {
         String[] themeArray = getThemes();
         int themeValue = ThemeManager.getTheme(themeArray[selection]);
         activity.setTheme(themeValue);
+        // the theme object is kept by the activity and changed in place, so its
+        // palette has to go
+        clearPalette();
 
         // Turns off all themes except the selected theme
-        PackageManager packageManager = activity.getPackageManager();
-        for (int i = 0; i < themeArray.length; i++) {
-            int state = (i == selection) ? PackageManager.COMPONENT_ENABLED_STATE_ENABLED
-                    : PackageManager.COMPONENT_ENABLED_STATE_DEFAULT;
-            packageManager.setComponentEnabledSetting(
-                    new ComponentName(activity, activity.getPackageName() + "." + themeArray[i]),
-                    state,
-                    PackageManager.DONT_KILL_APP);
-        }
+        Context context = activity.getApplicationContext();
+        aliasExecutor.execute(() -> {
+            PackageManager packageManager = context.getPackageManager();
+            for (int i = 0; i < themeArray.length; i++) {
+                int state = (i == selection) ? PackageManager.COMPONENT_ENABLED_STATE_ENABLED
+                        : PackageManager.COMPONENT_ENABLED_STATE_DEFAULT;
+                packageManager.setComponentEnabledSetting(
+                        new ComponentName(context, context.getPackageName() + "." + themeArray[i]),
+                        state,
+                        PackageManager.DONT_KILL_APP);
+            }
+        });
     }
 
 }
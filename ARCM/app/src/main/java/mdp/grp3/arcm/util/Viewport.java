@@ -0,0 +1,168 @@
+package mdp.grp3.arcm.util;
+
+/**
+ * The zoom and pan of square content shown through a window of the same size,
+ * like the arena in its view. At a scale of 1 the content fills the window
+ * exactly, zooming in keeps the point under the fingers in place, and the
+ * content can never be panned off the window. Window coordinates are relative
+ * to the window's top left corner.
+ */
+public class Viewport {
+    private final float size; // side of the window, and of the content at a scale of 1
+    private float maxScale;
+    private float scale = 1, panX, panY; // window = pan + content * scale
+
+    /**
+     * Constructor for Viewport. The content fills the window.
+     *
+     * @param size     - The side of the window
+     * @param maxScale - The largest zoom, at least 1
+     */
+    public Viewport(float size, float maxScale) {
+        this.size = size;
+        this.maxScale = Math.max(1, maxScale);
+    }
+
+    /**
+     * Changes the largest zoom and shows the whole content again
+     *
+     * @param maxScale - The largest zoom, at least 1
+     */
+    public void setMaxScale(float maxScale) {
+        this.maxScale = Math.max(1, maxScale);
+        reset();
+    }
+
+    /**
+     * Shows the whole content
+     */
+    public void reset() {
+        scale = 1;
+        panX = panY = 0;
+    }
+
+    /**
+     * Zooms around a point of the window, which keeps showing the same content
+     *
+     * @param factor - How much to zoom in, below 1 zooms out
+     * @param focusX - The x of the point in the window
+     * @param focusY - The y of the point in the window
+     * @return whether the viewport changed
+     */
+    public boolean zoomBy(float factor, float focusX, float focusY) {
+        float newScale = Math.max(1, Math.min(scale * factor, maxScale));
+        if (newScale == scale)
+            return false;
+        float contentX = toContentX(focusX), contentY = toContentY(focusY);
+        scale = newScale;
+        panX = focusX - contentX * scale;
+        panY = focusY - contentY * scale;
+        clampPan();
+        return true;
+    }
+
+    /**
+     * Moves the content, as far as it stays covering the window
+     *
+     * @param dx - The distance to move right in the window
+     * @param dy - The distance to move down in the window
+     * @return whether the viewport changed
+     */
+    public boolean panBy(float dx, float dy) {
+        float oldX = panX, oldY = panY;
+        panX += dx;
+        panY += dy;
+        clampPan();
+        return panX != oldX || panY != oldY;
+    }
+
+    private void clampPan() {
+        float min = size - size * scale;
+        panX = Math.max(min, Math.min(panX, 0));
+        panY = Math.max(min, Math.min(panY, 0));
+    }
+
+    /**
+     * @return the zoom, 1 when the whole content is shown
+     */
+    public float getScale() {
+        return scale;
+    }
+
+    /**
+     * @return the x in the window of the content's left edge
+     */
+    public float getPanX() {
+        return panX;
+    }
+
+    /**
+     * @return the y in the window of the content's top edge
+     */
+    public float getPanY() {
+        return panY;
+    }
+
+    /**
+     * @param contentX - An x in the content
+     * @return the x in the window
+     */
+    public float toWindowX(float contentX) {
+        return panX + contentX * scale;
+    }
+
+    /**
+     * @param contentY - A y in the content
+     * @return the y in the window
+     */
+    public float toWindowY(float contentY) {
+        return panY + contentY * scale;
+    }
+
+    /**
+     * @param windowX - An x in the window
+     * @return the x in the content
+     */
+    public float toContentX(float windowX) {
+        return (windowX - panX) / scale;
+    }
+
+    /**
+     * @param windowY - A y in the window
+     * @return the y in the content
+     */
+    public float toContentY(float windowY) {
+        return (windowY - panY) / scale;
+    }
+
+    /**
+     * Finds the cell of a square grid over the content, for hit testing and for
+     * drawing only the visible cells
+     *
+     * @param windowPosition - An x or a y in the window
+     * @param pan            - {@link #getPanX()} or {@link #getPanY()} to match
+     * @param cells          - The number of cells per side of the content
+     * @return the column or row at the position, clamped to the grid
+     */
+    public int cellAt(float windowPosition, float pan, int cells) {
+        int cell = (int) Math.floor((windowPosition - pan) / scale / size * cells);
+        return Math.max(0, Math.min(cell, cells - 1));
+    }
+
+    /**
+     * Clamps a cell of a square grid over the content to the cells shown in the
+     * window, so that a position past the window's edges never hits a cell that
+     * cannot be seen
+     *
+     * @param cell  - A column or a row of the grid
+     * @param pan   - {@link #getPanX()} or {@link #getPanY()} to match
+     * @param cells - The number of cells per side of the content
+     * @return the cell, or the nearest one at least partly in the window
+     */
+    public int clampToWindow(int cell, float pan, int cells) {
+        float cellSize = size * scale / cells; // in the window
+        int first = Math.max(0, (int) Math.floor(-pan / cellSize));
+        int last = Math.min(cells - 1, (int) Math.ceil((size - pan) / cellSize) - 1);
+        return Math.max(first, Math.min(cell, last));
+    }
+}
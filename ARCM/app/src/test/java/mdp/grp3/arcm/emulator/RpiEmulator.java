@@ -0,0 +1,312 @@
+package mdp.grp3.arcm.emulator;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import mdp.grp3.arcm.constant.RPI_TO_ARCM;
+import mdp.grp3.arcm.constant.Task;
+import mdp.grp3.arcm.protocol.Arena;
+import mdp.grp3.arcm.protocol.Finished;
+import mdp.grp3.arcm.protocol.Go;
+import mdp.grp3.arcm.protocol.Heartbeat;
+import mdp.grp3.arcm.protocol.Packet;
+import mdp.grp3.arcm.protocol.PacketCodec;
+import mdp.grp3.arcm.protocol.PlannedPath;
+import mdp.grp3.arcm.protocol.StatusUpdate;
+import mdp.grp3.arcm.protocol.TargetDiscovered;
+import mdp.grp3.arcm.util.FrameDecoder;
+
+/**
+ * Stands in for the RPi (RPi/week8.c) over TCP, so that the app or the tests
+ * can run a whole task without hardware. It answers pings, and after the arena
+ * or GO it plays the status updates, planned path and discoveries the RPi would send. The
+ * timing can be shortened, and a flood of extra status updates can be added to
+ * stress the app.
+ * <p>
+ * Run it with {@code RpiEmulator [port]} and connect the app over TCP.
+ */
+public class RpiEmulator implements Runnable, AutoCloseable {
+    private final ServerSocket server;
+    private final PacketCodec readCodec = PacketCodec.forRpi(); // only used by the client thread
+    private final PacketCodec writeCodec = PacketCodec.forRpi(); // guarded by this
+    private final StatusUpdate status = new StatusUpdate();
+    private final TargetDiscovered target = new TargetDiscovered();
+    private final Heartbeat pong = Heartbeat.pong();
+    private final PlannedPath path = new PlannedPath();
+    private Random random = new Random();
+    private volatile long stepDelay = 500; // ms between the steps of a task
+    private volatile int floodCount = 0; // extra status updates sent per step
+    private volatile int floodRate = 0; // extra status updates per second, 0 sends them in one burst
+    private volatile boolean running = true;
+    private OutputStream out; // guarded by this
+    private volatile Thread taskThread;
+
+    /**
+     * Opens the server on the loopback address
+     *
+     * @param port - The port to listen on, 0 for any free port
+     * @throws IOException if the port cannot be opened
+     */
+    public RpiEmulator(int port) throws IOException {
+        this(new ServerSocket(port, 1, InetAddress.getLoopbackAddress()));
+    }
+
+    /**
+     * Constructor for RpiEmulator.
+     *
+     * @param server - The socket to accept the app on
+     */
+    public RpiEmulator(ServerSocket server) {
+        this.server = server;
+    }
+
+    /**
+     * @param millis - The time between the steps of a task (the RPi takes seconds)
+     * @return this emulator
+     */
+    public RpiEmulator setStepDelay(long millis) {
+        stepDelay = millis;
+        return this;
+    }
+
+    /**
+     * Adds extra status updates to every step of a task
+     *
+     * @param count - The number of extra status updates per step
+     * @param rate  - How many to send per second, 0 to write them all at once
+     * @return this emulator
+     */
+    public RpiEmulator setFlood(int count, int rate) {
+        floodCount = count;
+        floodRate = rate;
+        return this;
+    }
+
+    /**
+     * @param seed - The seed for the target ids, so that runs can be repeated
+     * @return this emulator
+     */
+    public RpiEmulator setSeed(long seed) {
+        random = new Random(seed);
+        return this;
+    }
+
+    /**
+     * @return the port the emulator listens on
+     */
+    public int getPort() {
+        return server.getLocalPort();
+    }
+
+    /**
+     * Starts accepting connections on a new thread
+     *
+     * @return this emulator
+     */
+    public RpiEmulator start() {
+        Thread thread = new Thread(this, "RpiEmulator");
+        thread.setDaemon(true);
+        thread.start();
+        return this;
+    }
+
+    /**
+     * Accepts one client at a time, like the RPi
+     */
+    @Override
+    public void run() {
+        while (running) {
+            try (Socket client = server.accept()) {
+                client.setTcpNoDelay(true);
+                synchronized (this) {
+                    out = client.getOutputStream();
+                }
+                serve(client.getInputStream());
+            } catch (IOException e) {
+                if (!running)
+                    break;
+            } finally {
+                stopTask();
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        running = false;
+        stopTask();
+        server.close();
+    }
+
+    /**
+     * Reads from the app until it disconnects. Like week8.c, the messages are
+     * found by their type and length wherever they are in the stream.
+     */
+    private void serve(InputStream in) throws IOException {
+        FrameDecoder decoder = new FrameDecoder(1024);
+        readCodec.configure(decoder);
+        IOException[] error = { null };
+        while (decoder.readFrom(in) > 0) {
+            decoder.drain((buffer, offset, length) -> {
+                Packet packet = readCodec.decode(buffer, offset, length);
+                try {
+                    if (packet instanceof Heartbeat)
+                        send(pong.set(((Heartbeat) packet).getSequence()));
+                } catch (IOException e) {
+                    error[0] = e;
+                }
+                if (packet instanceof Go)
+                    startTask(Task.WEEK9, 0);
+                else if (packet instanceof Arena)
+                    startTask(Task.WEEK8, ((Arena) packet).getObstacleCount());
+            });
+            if (error[0] != null)
+                throw error[0];
+        }
+    }
+
+    /**
+     * Plays a task on its own thread, replacing the one in progress
+     */
+    private void startTask(char task, int obstacles) {
+        stopTask();
+        Thread thread = new Thread(() -> {
+            try {
+                if (task == Task.WEEK8)
+                    playWeek8(obstacles);
+                else
+                    playWeek9();
+            } catch (IOException | InterruptedException ignored) {
+                // the app disconnected or a new task was started
+            }
+        }, "RpiEmulator-task");
+        thread.setDaemon(true);
+        taskThread = thread;
+        thread.start();
+    }
+
+    private void stopTask() {
+        Thread thread = taskThread;
+        if (thread != null)
+            thread.interrupt();
+    }
+
+    /**
+     * The messages week8.c sends for the image recognition task
+     */
+    private void playWeek8(int obstacles) throws IOException, InterruptedException {
+        sendStatus(RPI_TO_ARCM.StatusMessages.STARTING_WEEK8, 0);
+        step();
+        sendPath(obstacles);
+        sendStatus(RPI_TO_ARCM.StatusMessages.NEXT_OBSTACLE, 0);
+        for (int i = 0; i < obstacles; i++) {
+            step();
+            sendStatus(RPI_TO_ARCM.StatusMessages.OPENING_CAMERA, 0);
+            step();
+            sendStatus(RPI_TO_ARCM.StatusMessages.IDENTIFYING_IMAGE, 0);
+            step();
+            int targetId = 11 + random.nextInt(30);
+            sendStatus(RPI_TO_ARCM.StatusMessages.RECEIVED_TARGET, targetId);
+            send(target.set(i, targetId));
+            if (i < obstacles - 1)
+                sendStatus(RPI_TO_ARCM.StatusMessages.NEXT_OBSTACLE, 0);
+        }
+        step();
+        send(new Finished(Task.WEEK8));
+    }
+
+    /**
+     * Sends a made up path visiting every obstacle, split into parts like
+     * write_bt_path in week8.c
+     */
+    private void sendPath(int obstacles) throws IOException {
+        int moves = 3 * obstacles;
+        int parts = Math.max(1, (moves + PlannedPath.MAX_MOVES - 1) / PlannedPath.MAX_MOVES);
+        path.set(0, parts);
+        for (int i = 0; i < obstacles; i++) {
+            addMove(RPI_TO_ARCM.PathCommands.FORWARD, 20, parts);
+            addMove(i % 2 == 0 ? RPI_TO_ARCM.PathCommands.FORWARD_RIGHT : RPI_TO_ARCM.PathCommands.BACKWARD_LEFT,
+                    90, parts);
+            addMove(RPI_TO_ARCM.PathCommands.CAPTURE, i, parts);
+        }
+        send(path);
+    }
+
+    private void addMove(int command, int value, int parts) throws IOException {
+        if (path.getMoveCount() == PlannedPath.MAX_MOVES) {
+            send(path);
+            path.set(path.getPart() + 1, parts);
+        }
+        path.addMove(command, value);
+    }
+
+    /**
+     * The messages for the fastest car task
+     */
+    private void playWeek9() throws IOException, InterruptedException {
+        sendStatus(RPI_TO_ARCM.StatusMessages.STARTING_WEEK9, 0);
+        for (int i = 0; i < 2; i++) {
+            step();
+            sendStatus(RPI_TO_ARCM.StatusMessages.NEXT_OBSTACLE, 0);
+        }
+        step();
+        sendStatus(RPI_TO_ARCM.StatusMessages.GOING_BACK, 0);
+        step();
+        send(new Finished(Task.WEEK9));
+    }
+
+    /**
+     * Waits for the next step of a task, sending the flood of status updates
+     */
+    private void step() throws IOException, InterruptedException {
+        int count = floodCount;
+        long interval = floodRate > 0 ? 1_000_000_000L / floodRate : 0;
+        long next = System.nanoTime();
+        for (int i = 0; i < count; i++) {
+            if (interval > 0) {
+                // sleeping is coarse, so catch up with a burst when behind
+                next += interval;
+                long wait = next - System.nanoTime();
+                if (wait > 0)
+                    Thread.sleep(wait / 1_000_000, (int) (wait % 1_000_000));
+            }
+            sendStatus(RPI_TO_ARCM.StatusMessages.IDENTIFYING_IMAGE, 0);
+        }
+        Thread.sleep(stepDelay);
+    }
+
+    private void sendStatus(char message, int argument) throws IOException {
+        send(status.set(message, argument));
+    }
+
+    private synchronized void send(Packet packet) throws IOException {
+        if (Thread.interrupted())
+            throw new IOException("Task stopped");
+        ByteBuffer encoded = writeCodec.encode(packet);
+        out.write(encoded.array(), encoded.position(), encoded.remaining());
+    }
+
+    /**
+     * Runs the emulator until it is killed
+     *
+     * @param args - [port [step delay in ms [flood count flood rate]]], port 5000
+     *             by default
+     */
+    public static void main(String[] args) throws IOException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : 5000;
+        // listen on all interfaces so that a phone on the same network can connect
+        RpiEmulator emulator = new RpiEmulator(new ServerSocket(port));
+        if (args.length > 1)
+            emulator.setStepDelay(Long.parseLong(args[1]));
+        if (args.length > 3)
+            emulator.setFlood(Integer.parseInt(args[2]), Integer.parseInt(args[3]));
+        System.out.println("RPi emulator listening on port " + emulator.getPort());
+        emulator.run();
+    }
+}
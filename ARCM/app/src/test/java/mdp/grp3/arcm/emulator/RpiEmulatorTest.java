@@ -0,0 +1,167 @@
+package mdp.grp3.arcm.emulator;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import mdp.grp3.arcm.constant.Direction;
+import mdp.grp3.arcm.constant.RPI_TO_ARCM;
+import mdp.grp3.arcm.constant.Task;
+import mdp.grp3.arcm.protocol.Arena;
+import mdp.grp3.arcm.protocol.Finished;
+import mdp.grp3.arcm.protocol.Go;
+import mdp.grp3.arcm.protocol.Heartbeat;
+import mdp.grp3.arcm.protocol.Packet;
+import mdp.grp3.arcm.protocol.PacketCodec;
+import mdp.grp3.arcm.protocol.PlannedPath;
+import mdp.grp3.arcm.protocol.StatusUpdate;
+import mdp.grp3.arcm.protocol.TargetDiscovered;
+import mdp.grp3.arcm.transport.TcpTransport;
+import mdp.grp3.arcm.util.FrameDecoder;
+
+import static org.junit.Assert.*;
+
+/**
+ * Runs whole tasks against the {@link RpiEmulator} over loopback TCP, through
+ * the same transport, decoder and codec as the app.
+ */
+public class RpiEmulatorTest {
+    private RpiEmulator emulator;
+    private TcpTransport transport;
+    private final PacketCodec codec = PacketCodec.forArcm();
+    private final FrameDecoder decoder = new FrameDecoder(4096);
+
+    /**
+     * Counts what the app receives until the task is finished
+     */
+    private static final class Run implements FrameDecoder.FrameListener {
+        final PacketCodec codec;
+        long firstStatusTime; // System.nanoTime() of the first status update
+        int statusUpdates, starts, targets, pathMoves, pongs;
+        Finished finished;
+
+        Run(PacketCodec codec) {
+            this.codec = codec;
+        }
+
+        @Override
+        public void onFrame(byte[] buffer, int offset, int length) {
+            Packet packet = codec.decode(buffer, offset, length);
+            if (packet instanceof StatusUpdate) {
+                if (statusUpdates++ == 0)
+                    firstStatusTime = System.nanoTime();
+                if (((StatusUpdate) packet).getStatus() == RPI_TO_ARCM.StatusMessages.STARTING_WEEK8)
+                    starts++;
+            } else if (packet instanceof Heartbeat)
+                pongs++;
+            else if (packet instanceof TargetDiscovered)
+                targets++;
+            else if (packet instanceof PlannedPath)
+                pathMoves += ((PlannedPath) packet).getMoveCount();
+            else if (packet instanceof Finished)
+                finished = (Finished) packet;
+        }
+    }
+
+    @Before
+    public void setUp() throws IOException {
+        emulator = new RpiEmulator(0).setStepDelay(0).setSeed(3).start();
+        transport = new TcpTransport("127.0.0.1", emulator.getPort());
+        transport.connect();
+        codec.configure(decoder);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        transport.close();
+        emulator.close();
+    }
+
+    private void send(ByteBuffer encoded) throws IOException {
+        transport.getOutputStream().write(encoded.array(), encoded.position(), encoded.remaining());
+    }
+
+    private static byte[] toArray(ByteBuffer encoded) {
+        byte[] bytes = new byte[encoded.remaining()];
+        encoded.get(bytes);
+        return bytes;
+    }
+
+    private Run receiveUntilFinished() throws IOException {
+        Run run = new Run(codec);
+        while (run.finished == null && decoder.readFrom(transport.getInputStream()) > 0)
+            decoder.drain(run);
+        return run;
+    }
+
+    @Test
+    public void week8_endToEnd() throws IOException {
+        Arena arena = new Arena();
+        arena.setCar(0, 0, Direction.FORWARD);
+        for (int i = 0; i < 5; i++)
+            arena.addObstacle(2 + 3 * i, 15, Direction.BACKWARD);
+        long start = System.nanoTime();
+        send(codec.encode(arena));
+        Run run = receiveUntilFinished();
+        assertEquals(Task.WEEK8, run.finished.getTask());
+        assertEquals(5, run.targets);
+        assertEquals(3 * 5, run.pathMoves);
+        // with no step delay, only the loopback and the first run's warm up are timed
+        long firstStatusMillis = (run.firstStatusTime - start) / 1_000_000;
+        long taskMillis = (System.nanoTime() - start) / 1_000_000;
+        assertTrue("first status after " + firstStatusMillis + " ms", firstStatusMillis < 500);
+        assertTrue("task took " + taskMillis + " ms", taskMillis < 2_000);
+    }
+
+    @Test
+    public void arenaAndPings_areFramedWhereverTheyAre() throws IOException {
+        Arena arena = new Arena();
+        arena.setCar(0, 0, Direction.FORWARD);
+        for (int i = 0; i < 4; i++)
+            arena.addObstacle(2 + 3 * i, 15, Direction.BACKWARD);
+        byte[] arenaBytes = toArray(codec.encode(arena));
+        byte[] ping = toArray(codec.encode(Heartbeat.ping().set(1)));
+        // the writer merges the arena and a ping into one flush, and the next ping is
+        // split across two writes
+        byte[] merged = new byte[arenaBytes.length + ping.length + 2];
+        System.arraycopy(arenaBytes, 0, merged, 0, arenaBytes.length);
+        System.arraycopy(ping, 0, merged, arenaBytes.length, ping.length);
+        System.arraycopy(ping, 0, merged, arenaBytes.length + ping.length, 2);
+        transport.getOutputStream().write(merged);
+        transport.getOutputStream().flush();
+        transport.getOutputStream().write(ping, 2, ping.length - 2);
+        // the second pong can come after the task has finished
+        Run run = new Run(codec);
+        while ((run.finished == null || run.pongs < 2) && decoder.readFrom(transport.getInputStream()) > 0)
+            decoder.drain(run);
+        assertEquals(1, run.starts);
+        assertEquals(4, run.targets);
+        assertEquals(2, run.pongs);
+    }
+
+    @Test
+    public void week9_underFlood() throws IOException {
+        emulator.setFlood(25_000, 0);
+        long start = System.nanoTime();
+        send(codec.encode(new Go()));
+        Run run = receiveUntilFinished();
+        double seconds = (System.nanoTime() - start) / 1e9;
+        assertEquals(Task.WEEK9, run.finished.getTask());
+        assertEquals(4 * 25_000 + 4, run.statusUpdates);
+        double messagesPerSecond = run.statusUpdates / seconds;
+        assertTrue("only " + messagesPerSecond + " messages/s", messagesPerSecond >= 10_000);
+    }
+
+    @Test
+    public void pings_areAnswered() throws IOException {
+        send(codec.encode(Heartbeat.ping().set(77)));
+        final int[] sequence = { -1 };
+        while (sequence[0] < 0 && decoder.readFrom(transport.getInputStream()) > 0)
+            decoder.drain((buffer, offset, length) -> sequence[0] = ((Heartbeat) codec.decode(buffer, offset,
+                    length)).getSequence());
+        assertEquals(77, sequence[0]);
+    }
+}
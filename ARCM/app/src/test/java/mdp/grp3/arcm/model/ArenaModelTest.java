@@ -0,0 +1,109 @@
+package mdp.grp3.arcm.model;
+
+import org.junit.Test;
+
+import mdp.grp3.arcm.constant.Direction;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link ArenaModel}.
+ */
+public class ArenaModelTest {
+
+    @Test
+    public void gridConversions_roundTrip() {
+        assertEquals(0, ArenaModel.gridColumnToX(1));
+        assertEquals(19, ArenaModel.gridColumnToX(20));
+        assertEquals(19, ArenaModel.gridRowToY(0));
+        assertEquals(0, ArenaModel.gridRowToY(19));
+        for (int i = 0; i < ArenaModel.SIZE; i++) {
+            assertEquals(i, ArenaModel.gridColumnToX(ArenaModel.xToGridColumn(i)));
+            assertEquals(i, ArenaModel.gridRowToY(ArenaModel.yToGridRow(i)));
+        }
+    }
+
+    @Test
+    public void rotationToDirection_wrapsAround() {
+        assertEquals(Direction.FORWARD, ArenaModel.rotationToDirection(0));
+        assertEquals(Direction.RIGHT, ArenaModel.rotationToDirection(90));
+        assertEquals(Direction.BACKWARD, ArenaModel.rotationToDirection(-180));
+        assertEquals(Direction.LEFT, ArenaModel.rotationToDirection(-90));
+        assertEquals(Direction.FORWARD, ArenaModel.rotationToDirection(720));
+    }
+
+    @Test
+    public void obstacles_arePlacedAndRemoved() {
+        ArenaModel model = new ArenaModel();
+        assertTrue(model.placeObstacle(19, 19));
+        assertFalse(model.placeObstacle(19, 19));
+        assertFalse(model.placeObstacle(20, 0));
+        assertTrue(model.hasObstacle(19, 19));
+        assertFalse(model.isFree(19, 19));
+        assertFalse(model.hasObstacle(-1, 19));
+        model.removeObstacle(19, 19);
+        assertTrue(model.isFree(19, 19));
+        model.removeObstacle(-1, 30); // ignored
+    }
+
+    @Test
+    public void robot_staysInTheArena() {
+        ArenaModel model = new ArenaModel();
+        assertFalse(model.hasRobot());
+        assertTrue(model.canPlaceRobot(0, 0));
+        assertTrue(model.canPlaceRobot(18, 18));
+        assertFalse(model.canPlaceRobot(19, 0));
+        assertFalse(model.canPlaceRobot(0, 19));
+        assertFalse(model.canPlaceRobot(-1, 0));
+        assertFalse(model.moveRobot(0, -1));
+        assertFalse(model.hasRobot());
+    }
+
+    @Test
+    public void robot_collidesWithEveryCellOfItsFootprint() {
+        ArenaModel model = new ArenaModel();
+        model.placeObstacle(5, 5);
+        assertFalse(model.canPlaceRobot(5, 5));
+        assertFalse(model.canPlaceRobot(4, 5));
+        assertFalse(model.canPlaceRobot(5, 4));
+        assertFalse(model.canPlaceRobot(4, 4));
+        assertTrue(model.canPlaceRobot(3, 4));
+        assertTrue(model.canPlaceRobot(6, 5));
+        assertTrue(model.canPlaceRobot(5, 6));
+        assertTrue(model.canPlaceRobot(5, 3));
+    }
+
+    @Test
+    public void robot_blocksObstacles() {
+        ArenaModel model = new ArenaModel();
+        assertTrue(model.moveRobot(3, 7));
+        assertEquals(3, model.getRobotX());
+        assertEquals(7, model.getRobotY());
+        assertTrue(model.hasRobot(4, 8));
+        assertFalse(model.hasRobot(5, 8));
+        assertFalse(model.placeObstacle(4, 8));
+        assertTrue(model.placeObstacle(5, 8));
+        // a failed move leaves the robot where it was
+        assertFalse(model.moveRobot(4, 8));
+        assertEquals(3, model.getRobotX());
+        model.clear();
+        assertFalse(model.hasRobot());
+        assertTrue(model.isFree(5, 8));
+    }
+
+    @Test
+    public void canPlaceRobot_matchesTheCellsEverywhere() {
+        ArenaModel model = new ArenaModel();
+        for (int i = 0; i < 8; i++)
+            model.placeObstacle(2 + 2 * i, 3 + i);
+        for (int x = -1; x <= ArenaModel.SIZE; x++)
+            for (int y = -1; y <= ArenaModel.SIZE; y++) {
+                boolean expected = x >= 0 && y >= 0 && x + ArenaModel.ROBOT_SIZE <= ArenaModel.SIZE
+                        && y + ArenaModel.ROBOT_SIZE <= ArenaModel.SIZE;
+                for (int dx = 0; expected && dx < ArenaModel.ROBOT_SIZE; dx++)
+                    for (int dy = 0; dy < ArenaModel.ROBOT_SIZE; dy++)
+                        expected &= !model.hasObstacle(x + dx, y + dy);
+                assertEquals("(" + x + ", " + y + ")", expected, model.canPlaceRobot(x, y));
+            }
+    }
+}
@@ -0,0 +1,116 @@
+package mdp.grp3.arcm.model;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import mdp.grp3.arcm.constant.Direction;
+import mdp.grp3.arcm.constant.RPI_TO_ARCM.PathCommands;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link PlannedRoute}.
+ */
+public class PlannedRouteTest {
+    private static final float EPSILON = 1e-4f;
+
+    private static void assertAt(PlannedRoute route, float x, float y, char direction) {
+        assertEquals(x, route.getX(), EPSILON);
+        assertEquals(y, route.getY(), EPSILON);
+        assertEquals(direction, route.getDirection());
+    }
+
+    @Test
+    public void resetFromCell_startsAtTheRobotsCentre() {
+        PlannedRoute route = new PlannedRoute();
+        route.resetFromCell(1, 2, Direction.RIGHT);
+        assertAt(route, 20, 30, Direction.RIGHT);
+        assertEquals(0, route.getMoveCount());
+    }
+
+    @Test
+    public void straightMoves_followTheHeading() {
+        PlannedRoute route = new PlannedRoute();
+        route.reset(100, 100, Direction.RIGHT);
+        route.add(PathCommands.FORWARD, 50);
+        assertAt(route, 150, 100, Direction.RIGHT);
+        route.add(PathCommands.BACKWARD, 20);
+        assertAt(route, 130, 100, Direction.RIGHT);
+        assertEquals(2, route.getMoveCount());
+        assertFalse(route.isReverse(0));
+        assertTrue(route.isReverse(1));
+        assertFalse(route.isTurn(1));
+    }
+
+    @Test
+    public void turns_matchThePlanner() {
+        // MOVEMENTS[NORTH] in planner.py, with rows downwards and 5 cm cells
+        PlannedRoute route = new PlannedRoute();
+        route.reset(100, 100, Direction.FORWARD);
+        route.add(PathCommands.FORWARD_RIGHT, 90);
+        assertAt(route, 140, 120, Direction.RIGHT);
+        route.reset(100, 100, Direction.FORWARD);
+        route.add(PathCommands.FORWARD_LEFT, 90);
+        assertAt(route, 70, 110, Direction.LEFT);
+        route.reset(100, 100, Direction.FORWARD);
+        route.add(PathCommands.BACKWARD_RIGHT, 90);
+        assertAt(route, 120, 60, Direction.LEFT);
+        assertTrue(route.isReverse(0));
+        route.reset(100, 100, Direction.FORWARD);
+        route.add(PathCommands.BACKWARD_LEFT, 90);
+        assertAt(route, 90, 70, Direction.RIGHT);
+
+        // MOVEMENTS[EAST][FL]: FL_X up and FL_Y to the right
+        route.reset(100, 100, Direction.RIGHT);
+        route.add(PathCommands.FORWARD_LEFT, 90);
+        assertAt(route, 110, 130, Direction.FORWARD);
+    }
+
+    @Test
+    public void turn_curvesThroughTheCorner() {
+        PlannedRoute route = new PlannedRoute();
+        route.reset(0, 0, Direction.FORWARD);
+        route.add(PathCommands.FORWARD_RIGHT, 90);
+        assertTrue(route.isTurn(0));
+        assertArrayEquals(new float[] { 0, 0, 0, 20, 40, 20 }, Arrays.copyOf(route.getMoves(), 6),
+                EPSILON);
+    }
+
+    @Test
+    public void fourRightTurns_comeBackToTheStart() {
+        PlannedRoute route = new PlannedRoute();
+        route.reset(100, 100, Direction.FORWARD);
+        for (int i = 0; i < 4; i++)
+            route.add(PathCommands.FORWARD_RIGHT, 90);
+        assertAt(route, 100, 100, Direction.FORWARD);
+    }
+
+    @Test
+    public void captures_areStopsNotMoves() {
+        PlannedRoute route = new PlannedRoute();
+        route.reset(15, 15, Direction.FORWARD);
+        route.add(PathCommands.FORWARD, 30);
+        assertTrue(route.add(PathCommands.CAPTURE, 4));
+        assertFalse(route.add(42, 0));
+        assertEquals(1, route.getMoveCount());
+        assertEquals(1, route.getStopCount());
+        assertEquals(15, route.getStopX(0), EPSILON);
+        assertEquals(45, route.getStopY(0), EPSILON);
+        assertEquals(4, route.getStopObstacle(0));
+    }
+
+    @Test
+    public void longRoutes_grow() {
+        PlannedRoute route = new PlannedRoute();
+        route.reset(0, 0, Direction.FORWARD);
+        for (int i = 0; i < 1000; i++) {
+            route.add(PathCommands.FORWARD, 5);
+            route.add(PathCommands.CAPTURE, i);
+        }
+        assertEquals(1000, route.getMoveCount());
+        assertEquals(1000, route.getStopCount());
+        assertEquals(5000, route.getY(), EPSILON);
+        assertEquals(999, route.getStopObstacle(999));
+    }
+}
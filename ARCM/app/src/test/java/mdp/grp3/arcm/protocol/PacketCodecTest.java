@@ -0,0 +1,139 @@
+package mdp.grp3.arcm.protocol;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+
+import mdp.grp3.arcm.constant.ARCM_TO_RPI;
+import mdp.grp3.arcm.constant.Direction;
+import mdp.grp3.arcm.constant.RPI_TO_ARCM;
+import mdp.grp3.arcm.constant.Task;
+import mdp.grp3.arcm.util.FrameDecoder;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link PacketCodec}.
+ */
+public class PacketCodecTest {
+    private final PacketCodec arcm = PacketCodec.forArcm();
+    private final PacketCodec rpi = PacketCodec.forRpi();
+
+    private static byte[] toArray(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.get(bytes);
+        return bytes;
+    }
+
+    @Test
+    public void arena_wrapsTheLegacyLayout() {
+        Arena arena = new Arena();
+        // car at the bottom left, facing right, and an obstacle in the top right
+        arena.setCarFromGrid(17, 1, 90);
+        arena.addObstacleFromGrid(0, 20, Direction.LEFT);
+        // the RPi passes everything after the type and length on to the algorithm
+        assertArrayEquals(new byte[] { ARCM_TO_RPI.ARENA, 6, 0, 1, Direction.RIGHT, 19, 19, Direction.LEFT },
+                toArray(arcm.encode(arena)));
+    }
+
+    @Test
+    public void arena_roundTrips() {
+        Arena arena = new Arena();
+        arena.setCar(1, 1, Direction.BACKWARD);
+        for (int i = 0; i < Arena.MAX_OBSTACLES; i++)
+            arena.addObstacle(i * 2, 19 - i, Direction.FORWARD);
+        byte[] bytes = toArray(arcm.encode(arena));
+        Arena decoded = (Arena) rpi.decode(bytes, 0, bytes.length);
+        assertEquals(Direction.BACKWARD, decoded.getCarDirection());
+        assertEquals(Arena.MAX_OBSTACLES, decoded.getObstacleCount());
+        assertEquals(14, decoded.getObstacleX(7));
+        assertEquals(12, decoded.getObstacleY(7));
+    }
+
+    @Test
+    public void controlPackets_areNotMistakenForAnArena() {
+        byte[] go = toArray(arcm.encode(new Go()));
+        assertArrayEquals(new byte[] { 'G', 'O' }, go);
+        assertTrue(rpi.decode(go, 0, go.length) instanceof Go);
+        byte[] ping = toArray(arcm.encode(Heartbeat.ping().set(300)));
+        Heartbeat decoded = (Heartbeat) rpi.decode(ping, 0, ping.length);
+        assertEquals(300 & 0xFF, decoded.getSequence());
+    }
+
+    @Test
+    public void rpiPackets_roundTrip() {
+        byte[] bytes = toArray(rpi.encode(new StatusUpdate().set(RPI_TO_ARCM.StatusMessages.RECEIVED_TARGET, 37)));
+        StatusUpdate status = (StatusUpdate) arcm.decode(bytes, 0, bytes.length);
+        assertEquals(RPI_TO_ARCM.StatusMessages.RECEIVED_TARGET, status.getStatus());
+        assertEquals(37, status.getArgument());
+
+        bytes = toArray(rpi.encode(new TargetDiscovered().set(7, 40)));
+        TargetDiscovered target = (TargetDiscovered) arcm.decode(bytes, 0, bytes.length);
+        assertEquals(7, target.getObstacle());
+        assertEquals(40, target.getTargetId());
+
+        bytes = new byte[] { RPI_TO_ARCM.FINISHED_WEEK8, 0, 0, 0 };
+        assertEquals(Task.WEEK8, ((Finished) arcm.decode(bytes, 0, bytes.length)).getTask());
+    }
+
+    @Test
+    public void plannedPath_roundTripsThroughTheDecoder() throws IOException {
+        PlannedPath path = new PlannedPath().set(1, 2);
+        for (int i = 0; i < PlannedPath.MAX_MOVES; i++)
+            path.addMove(RPI_TO_ARCM.PathCommands.FORWARD, 200);
+        byte[] bytes = toArray(rpi.encode(path));
+        assertEquals(FrameDecoder.MAX_FRAME_LENGTH - 1, bytes.length);
+
+        FrameDecoder decoder = new FrameDecoder(64);
+        arcm.configure(decoder);
+        decoder.readFrom(new ByteArrayInputStream(bytes));
+        final PlannedPath[] decoded = { null };
+        decoder.drain((buffer, offset, length) -> decoded[0] = (PlannedPath) arcm.decode(buffer, offset, length));
+        assertEquals(1, decoded[0].getPart());
+        assertTrue(decoded[0].isLastPart());
+        assertEquals(PlannedPath.MAX_MOVES, decoded[0].getMoveCount());
+        assertEquals(RPI_TO_ARCM.PathCommands.FORWARD, decoded[0].getCommand(PlannedPath.MAX_MOVES - 1));
+        assertEquals(200, decoded[0].getValue(PlannedPath.MAX_MOVES - 1));
+    }
+
+    @Test
+    public void wrongLengthsAndUnknownTypes_areRejected() {
+        assertNull(arcm.decode(new byte[] { RPI_TO_ARCM.STATUS_UPDATE, 1, 0 }, 0, 3));
+        assertNull(arcm.decode(new byte[] { 42, 0, 0, 0 }, 0, 4));
+        assertNull(rpi.decode(new byte[] { 3 }, 0, 1));
+        assertNull(arcm.decode(new byte[] { RPI_TO_ARCM.PLANNED_PATH, 4, 0, 1 }, 0, 4));
+    }
+
+    @Test
+    public void plannedPath_tooShortForItsHeader_isRejected() {
+        assertNull(arcm.decode(new byte[] { RPI_TO_ARCM.PLANNED_PATH, 0 }, 0, 2));
+        assertNull(arcm.decode(new byte[] { RPI_TO_ARCM.PLANNED_PATH, 1, 0 }, 0, 3));
+
+        // the bytes after the frame belong to the next message
+        ByteBuffer buffer = ByteBuffer.wrap(new byte[] { RPI_TO_ARCM.PLANNED_PATH, 1, 0, RPI_TO_ARCM.STATUS_UPDATE, 1 });
+        try {
+            new PlannedPath().readFrom(buffer);
+            fail("Read past the frame");
+        } catch (BufferUnderflowException expected) {
+            assertEquals(2, buffer.position());
+        }
+    }
+
+    @Test
+    public void configure_registersEveryFramedType() throws IOException {
+        FrameDecoder decoder = new FrameDecoder(64);
+        arcm.configure(decoder);
+        final int[] frames = { 0 };
+        for (PacketType type : Schema.RPI_TO_ARCM_TYPES) {
+            byte[] frame = type.length == FrameDecoder.LENGTH_PREFIXED ? new byte[] { (byte) type.id, 0 }
+                    : new byte[] { (byte) type.id, 0, 0, 0 };
+            decoder.readFrom(new ByteArrayInputStream(frame));
+            decoder.drain((buffer, offset, length) -> frames[0]++);
+        }
+        assertEquals(Schema.RPI_TO_ARCM_TYPES.length, frames[0]);
+        assertEquals(0, decoder.getDroppedBytes());
+    }
+}
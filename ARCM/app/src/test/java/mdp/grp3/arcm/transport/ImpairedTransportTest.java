@@ -0,0 +1,137 @@
+package mdp.grp3.arcm.transport;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import mdp.grp3.arcm.util.FrameDecoder;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link ImpairedTransport}, over a loopback server that
+ * sends numbered status frames.
+ */
+public class ImpairedTransportTest {
+    private static final int FRAMES = 2000;
+
+    private ServerSocket server;
+    private Thread sender;
+
+    @Before
+    public void setUp() throws IOException {
+        server = new ServerSocket(0, 1, InetAddress.getLoopbackAddress());
+        sender = new Thread(() -> {
+            while (!server.isClosed()) {
+                try (Socket client = server.accept()) {
+                    OutputStream out = client.getOutputStream();
+                    for (int i = 0; i < FRAMES; i++)
+                        out.write(new byte[] { 3, (byte) i, (byte) (i >> 8), 0 });
+                    out.flush();
+                    client.getInputStream().read(); // wait for the client to close
+                } catch (IOException ignored) {
+                }
+            }
+        });
+        sender.setDaemon(true);
+        sender.start();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        server.close();
+        sender.join();
+    }
+
+    private ImpairedTransport impaired(long seed) {
+        return new ImpairedTransport(new TcpTransport("127.0.0.1", server.getLocalPort()), seed);
+    }
+
+    /**
+     * Reads until the expected number of frames or the end of the stream
+     *
+     * @return the sequence numbers of the frames received
+     */
+    private static List<Integer> receive(Transport transport, int frames) throws IOException {
+        FrameDecoder decoder = new FrameDecoder(4096);
+        decoder.setFrameLength(3, 4);
+        List<Integer> received = new ArrayList<>();
+        while (received.size() < frames && decoder.readFrom(transport.getInputStream()) > 0)
+            decoder.drain((buffer, offset, length) -> received
+                    .add((buffer[offset + 1] & 0xFF) | (buffer[offset + 2] & 0xFF) << 8));
+        return received;
+    }
+
+    @Test
+    public void fragmentedReads_areReassembled() throws IOException {
+        ImpairedTransport transport = impaired(1).setFragmentation(3);
+        transport.connect();
+        List<Integer> received = receive(transport, FRAMES);
+        transport.close();
+        assertEquals(FRAMES, received.size());
+        for (int i = 0; i < FRAMES; i++)
+            assertEquals(i, (int) received.get(i));
+    }
+
+    @Test
+    public void latency_delaysEveryRead() throws IOException {
+        ImpairedTransport transport = impaired(2).setLatency(80, 20);
+        long start = System.nanoTime();
+        transport.connect();
+        receive(transport, 1);
+        long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+        transport.close();
+        assertTrue("took " + elapsedMillis + "ms", elapsedMillis >= 80);
+    }
+
+    @Test
+    public void byteLoss_isRecoveredFrom() throws IOException {
+        ImpairedTransport transport = impaired(3).setByteLoss(0.01);
+        transport.connect();
+        List<Integer> received = receive(transport, FRAMES / 2);
+        transport.close();
+        // most frames survive, the decoder resynchronises after every loss
+        assertEquals(FRAMES / 2, received.size());
+    }
+
+    @Test
+    public void sameSeed_losesTheSameBytes() throws IOException {
+        ByteArrayOutputStream[] streams = { new ByteArrayOutputStream(), new ByteArrayOutputStream() };
+        for (ByteArrayOutputStream stream : streams) {
+            ImpairedTransport transport = impaired(42).setByteLoss(0.05).setFragmentation(7);
+            transport.connect();
+            byte[] buffer = new byte[64];
+            while (stream.size() < 1000)
+                stream.write(buffer, 0, transport.getInputStream().read(buffer, 0, buffer.length));
+            transport.close();
+        }
+        assertArrayEquals(Arrays.copyOf(streams[0].toByteArray(), 1000), Arrays.copyOf(streams[1].toByteArray(), 1000));
+    }
+
+    @Test
+    public void dropouts_failReadsUntilReconnected() throws IOException {
+        ImpairedTransport transport = impaired(4).setDropouts(30, 0);
+        transport.connect();
+        try {
+            while (transport.getInputStream().read(new byte[16], 0, 16) >= 0) {
+                // the data runs out long before the test would time out
+            }
+            fail("the link never dropped");
+        } catch (IOException e) {
+            assertEquals("Injected dropout", e.getMessage());
+        }
+        transport.connect();
+        assertTrue(transport.getInputStream().read(new byte[16], 0, 16) > 0);
+        transport.close();
+    }
+}
@@ -0,0 +1,93 @@
+package mdp.grp3.arcm.transport;
+
+import org.junit.Test;
+
+import java.io.IOException;
+
+import mdp.grp3.arcm.constant.RPI_TO_ARCM;
+import mdp.grp3.arcm.protocol.PacketCodec;
+import mdp.grp3.arcm.util.EventRing;
+import mdp.grp3.arcm.util.FrameDecoder;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link ReplayTransport}, reading through the same
+ * decoder and event ring as the real connection.
+ */
+public class ReplayTransportTest {
+
+    /**
+     * Reads from the transport until the whole script was received
+     *
+     * @return the number of frames received
+     */
+    private static int receive(ReplayTransport transport, int frames) throws IOException {
+        FrameDecoder decoder = new FrameDecoder(4096);
+        PacketCodec.forArcm().configure(decoder);
+        EventRing ring = new EventRing(512);
+        final int[] received = { 0 };
+        while (received[0] < frames && decoder.readFrom(transport.getInputStream()) > 0) {
+            decoder.drain((buffer, offset, length) -> {
+                ring.publish(buffer, offset, length);
+                received[0]++;
+            });
+            // stands in for the UI thread
+            ring.beginDrain();
+            while (ring.peek() != null)
+                ring.release();
+        }
+        return received[0];
+    }
+
+    @Test
+    public void synthetic_asFastAsPossible() throws IOException {
+        int frames = 200_000;
+        ReplayTransport transport = new ReplayTransport(ReplayScript.statusUpdates(frames, 1_000_000),
+                ReplayTransport.AS_FAST_AS_POSSIBLE);
+        transport.connect();
+        assertEquals(frames, receive(transport, frames));
+        assertEquals(frames, transport.getFramesPlayed());
+        // the script is 1000 frames/s in real time, at max speed it must run well ahead
+        assertTrue(transport.getFramesPerSecond() + " frames/s", transport.getFramesPerSecond() > 10_000);
+        transport.close();
+    }
+
+    @Test
+    public void speedMultiplier_compressesTime() throws IOException {
+        // 21 frames 20 ms apart take 400 ms, or 40 ms at 10x
+        ReplayTransport transport = new ReplayTransport(ReplayScript.statusUpdates(21, 20_000_000), 10);
+        transport.connect();
+        long start = System.nanoTime();
+        assertEquals(21, receive(transport, 21));
+        long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+        assertTrue("took " + elapsedMillis + "ms", elapsedMillis >= 35 && elapsedMillis < 400);
+        transport.close();
+    }
+
+    @Test
+    public void pings_areAnswered() throws IOException {
+        ReplayTransport transport = new ReplayTransport(new ReplayScript(), 1);
+        transport.connect();
+        transport.getOutputStream().write(new byte[] { 'P', 42, 0, 0 });
+        byte[] buffer = new byte[16];
+        assertEquals(4, transport.getInputStream().read(buffer, 0, buffer.length));
+        assertEquals(RPI_TO_ARCM.PONG, buffer[0]);
+        assertEquals(42, buffer[1]);
+        transport.close();
+    }
+
+    @Test(expected = IOException.class)
+    public void close_failsPendingReads() throws Exception {
+        ReplayTransport transport = new ReplayTransport(new ReplayScript(), 1);
+        transport.connect();
+        new Thread(() -> {
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException ignored) {
+            }
+            transport.close();
+        }).start();
+        transport.getInputStream().read(new byte[4], 0, 4);
+    }
+}
@@ -0,0 +1,80 @@
+package mdp.grp3.arcm.transport;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+
+import mdp.grp3.arcm.util.FrameDecoder;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link TcpTransport}, driven by a loopback server.
+ */
+public class TcpTransportTest {
+    private static final int FRAMES = 100_000;
+    // ten times the synthetic replay, far below what loopback manages
+    private static final double MIN_FRAMES_PER_SECOND = 10_000;
+
+    @Test
+    public void frames_arriveIntactOverLoopback() throws Exception {
+        try (ServerSocket server = new ServerSocket(0, 1, InetAddress.getLoopbackAddress())) {
+            Thread sender = new Thread(() -> {
+                try (Socket client = server.accept()) {
+                    OutputStream out = client.getOutputStream();
+                    byte[] frame = new byte[4];
+                    for (int i = 0; i < FRAMES; i++) {
+                        frame[0] = 3;
+                        frame[1] = (byte) i;
+                        out.write(frame);
+                    }
+                    out.flush();
+                } catch (IOException ignored) {
+                }
+            });
+            sender.start();
+
+            TcpTransport transport = new TcpTransport(server.getInetAddress().getHostAddress(),
+                    server.getLocalPort());
+            transport.connect();
+            FrameDecoder decoder = new FrameDecoder(4096);
+            decoder.setFrameLength(3, 4);
+            final int[] received = { 0 };
+            final boolean[] ordered = { true };
+            long start = System.nanoTime();
+            while (received[0] < FRAMES && decoder.readFrom(transport.getInputStream()) > 0) {
+                decoder.drain((buffer, offset, length) -> {
+                    ordered[0] &= buffer[offset + 1] == (byte) received[0];
+                    received[0]++;
+                });
+            }
+            long elapsed = System.nanoTime() - start;
+            transport.close();
+            sender.join();
+
+            assertEquals(FRAMES, received[0]);
+            assertTrue("frames out of order", ordered[0]);
+            double framesPerSecond = FRAMES / (elapsed / 1e9);
+            assertTrue("only " + framesPerSecond + " frames/s", framesPerSecond >= MIN_FRAMES_PER_SECOND);
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void connect_failsWithoutServer() throws Exception {
+        int port;
+        try (ServerSocket server = new ServerSocket(0, 1, InetAddress.getLoopbackAddress())) {
+            port = server.getLocalPort();
+        }
+        new TcpTransport(InetAddress.getLoopbackAddress().getHostAddress(), port).connect();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void connect_rejectsAPortOutOfRange() throws Exception {
+        // not an IOException, so the connection thread has to catch it as well
+        new TcpTransport(InetAddress.getLoopbackAddress().getHostAddress(), 99999).connect();
+    }
+}
@@ -0,0 +1,49 @@
+package mdp.grp3.arcm.util;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link CellTracker}.
+ */
+public class CellTrackerTest {
+
+    @Test
+    public void moveTo_reportsOnlyNewCells() {
+        CellTracker tracker = new CellTracker();
+        tracker.setGrid(100, 50, 36, 36);
+        assertTrue(tracker.moveTo(100, 50));
+        assertEquals(0, tracker.getRow());
+        assertEquals(0, tracker.getColumn());
+        assertFalse(tracker.moveTo(135, 85)); // same cell
+        assertTrue(tracker.moveTo(136, 85));
+        assertEquals(1, tracker.getColumn());
+        assertTrue(tracker.moveTo(136, 50 + 36 * 19.5f));
+        assertEquals(19, tracker.getRow());
+    }
+
+    @Test
+    public void reset_makesTheNextMoveAChange() {
+        CellTracker tracker = new CellTracker();
+        tracker.setGrid(0, 0, 10, 10);
+        assertTrue(tracker.moveTo(5, 5));
+        assertFalse(tracker.moveTo(6, 6));
+        tracker.reset();
+        assertTrue(tracker.moveTo(6, 6));
+        tracker.setGrid(0, 0, 20, 20);
+        assertTrue(tracker.moveTo(6, 6));
+    }
+
+    @Test
+    public void moveTo_truncatesTowardsZero() {
+        CellTracker tracker = new CellTracker();
+        tracker.setGrid(0, 0, 10, 10);
+        tracker.moveTo(-5, -5);
+        assertEquals(0, tracker.getRow());
+        assertEquals(0, tracker.getColumn());
+        tracker.moveTo(-15, 25);
+        assertEquals(2, tracker.getRow());
+        assertEquals(-1, tracker.getColumn());
+    }
+}
@@ -0,0 +1,120 @@
+package mdp.grp3.arcm.util;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link EventRing}.
+ */
+public class EventRingTest {
+
+    private static boolean publish(EventRing ring, int value) {
+        byte[] message = { 3, (byte) value, (byte) (value >> 8), 0 };
+        return ring.publish(message, 0, message.length);
+    }
+
+    private static int consume(EventRing ring) {
+        EventRing.Event event = ring.peek();
+        assertNotNull(event);
+        assertEquals(4, event.length);
+        int value = (event.data[1] & 0xFF) | (event.data[2] & 0xFF) << 8;
+        ring.release();
+        return value;
+    }
+
+    @Test
+    public void empty_hasNothingToPeek() {
+        EventRing ring = new EventRing(4);
+        assertEquals(0, ring.size());
+        assertNull(ring.peek());
+        publish(ring, 1);
+        assertEquals(1, consume(ring));
+        assertNull(ring.peek());
+        assertEquals(0, ring.size());
+    }
+
+    @Test
+    public void full_dropsNewMessagesAndKeepsTheOldOnes() {
+        // rounded up to 8 slots
+        EventRing ring = new EventRing(5);
+        for (int i = 0; i < 8; i++)
+            publish(ring, i);
+        assertEquals(8, ring.size());
+        assertFalse(publish(ring, 8));
+        assertFalse(publish(ring, 9));
+        assertEquals(2, ring.getDroppedEvents());
+        assertEquals(8, ring.size());
+        for (int i = 0; i < 8; i++)
+            assertEquals(i, consume(ring));
+        // a slot is free again
+        publish(ring, 10);
+        assertEquals(10, consume(ring));
+    }
+
+    @Test
+    public void wrapAround_keepsTheOrderAndTheData() {
+        EventRing ring = new EventRing(4);
+        int next = 0, expected = 0;
+        // uneven batches, so the head and the tail wrap at different points
+        for (int round = 0; round < 1000; round++) {
+            for (int i = 0; i < 1 + round % 4; i++)
+                publish(ring, next++);
+            while (ring.peek() != null)
+                assertEquals(expected++, consume(ring));
+        }
+        assertEquals(next, expected);
+        assertEquals(0, ring.getDroppedEvents());
+    }
+
+    @Test
+    public void wakeUp_isRequestedOncePerBatch() {
+        EventRing ring = new EventRing(8);
+        assertTrue(publish(ring, 1));
+        assertFalse(publish(ring, 2));
+        ring.beginDrain();
+        consume(ring);
+        // published while draining, so the consumer has to come back
+        assertTrue(publish(ring, 3));
+        consume(ring);
+        consume(ring);
+    }
+
+    @Test
+    public void clear_dropsWhatIsWaiting() {
+        EventRing ring = new EventRing(4);
+        publish(ring, 1);
+        publish(ring, 2);
+        ring.clear();
+        assertEquals(0, ring.size());
+        assertNull(ring.peek());
+        assertTrue(publish(ring, 3));
+        assertEquals(3, consume(ring));
+    }
+
+    @Test
+    public void producerAndConsumer_onTwoThreads() throws InterruptedException {
+        EventRing ring = new EventRing(16);
+        int messages = 200_000;
+        Thread producer = new Thread(() -> {
+            for (int i = 0; i < messages; i++) {
+                // only the consumer frees slots, so a ring with room stays so
+                while (ring.size() == 16)
+                    Thread.yield();
+                publish(ring, i);
+            }
+        });
+        producer.start();
+        int expected = 0;
+        while (expected < messages) {
+            if (ring.peek() == null) {
+                Thread.yield();
+                continue;
+            }
+            assertEquals(expected & 0xFFFF, consume(ring));
+            expected++;
+        }
+        producer.join();
+        assertEquals(0, ring.getDroppedEvents());
+    }
+}
@@ -0,0 +1,87 @@
+package mdp.grp3.arcm.util;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link FrameDecoder}.
+ */
+public class FrameDecoderTest {
+    private FrameDecoder decoder;
+    private final List<byte[]> frames = new ArrayList<>();
+    private final FrameDecoder.FrameListener collector = (buffer, offset, length) -> frames
+            .add(Arrays.copyOfRange(buffer, offset, offset + length));
+
+    @Before
+    public void setUp() {
+        decoder = new FrameDecoder(512);
+        decoder.setFrameLength(1, 4);
+        decoder.setFrameLength(3, 4);
+        decoder.setFrameLength(9, FrameDecoder.LENGTH_PREFIXED);
+        frames.clear();
+    }
+
+    /**
+     * Feeds the bytes to the decoder in chunks of the given size.
+     */
+    private void feed(byte[] data, int chunk) throws IOException {
+        for (int i = 0; i < data.length; i += chunk) {
+            InputStream in = new ByteArrayInputStream(data, i, Math.min(chunk, data.length - i));
+            while (in.available() > 0)
+                decoder.readFrom(in);
+            decoder.drain(collector);
+        }
+    }
+
+    @Test
+    public void mergedReads_splitIntoFrames() throws IOException {
+        feed(new byte[] { 3, 6, 0, 0, 1, 2, 15, 0, 3, 3, 0, 0 }, 12);
+        assertEquals(3, frames.size());
+        assertArrayEquals(new byte[] { 1, 2, 15, 0 }, frames.get(1));
+    }
+
+    @Test
+    public void splitReads_areReassembled() throws IOException {
+        feed(new byte[] { 3, 6, 0, 0, 1, 2, 15, 0 }, 1);
+        assertEquals(2, frames.size());
+        assertArrayEquals(new byte[] { 3, 6, 0, 0 }, frames.get(0));
+        assertArrayEquals(new byte[] { 1, 2, 15, 0 }, frames.get(1));
+    }
+
+    @Test
+    public void lengthPrefixedFrames_areDecoded() throws IOException {
+        feed(new byte[] { 9, 3, 'a', 'b', 'c', 3, 7, 12, 0 }, 2);
+        assertEquals(2, frames.size());
+        assertArrayEquals(new byte[] { 9, 3, 'a', 'b', 'c' }, frames.get(0));
+        assertArrayEquals(new byte[] { 3, 7, 12, 0 }, frames.get(1));
+    }
+
+    @Test
+    public void unknownBytes_areSkipped() throws IOException {
+        feed(new byte[] { 0, 42, 3, 6, 0, 0 }, 6);
+        assertEquals(1, frames.size());
+        assertEquals(2, decoder.getDroppedBytes());
+    }
+
+    @Test
+    public void framesWrappingAroundTheRing_areIntact() throws IOException {
+        byte[] data = new byte[4 * 1000];
+        for (int i = 0; i < data.length; i += 4) {
+            data[i] = 3;
+            data[i + 1] = (byte) (i / 4);
+        }
+        feed(data, 7);
+        assertEquals(1000, frames.size());
+        for (int i = 0; i < frames.size(); i++)
+            assertEquals((byte) i, frames.get(i)[1]);
+    }
+}
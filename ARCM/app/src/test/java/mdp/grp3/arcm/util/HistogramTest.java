@@ -0,0 +1,43 @@
+package mdp.grp3.arcm.util;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link Histogram}.
+ */
+public class HistogramTest {
+
+    @Test
+    public void percentiles_areWithinAFactorOfTwo() {
+        Histogram histogram = new Histogram();
+        for (int i = 1; i <= 1000; i++)
+            histogram.record(i);
+        assertEquals(1000, histogram.getCount());
+        assertEquals(500, histogram.getMean());
+        assertEquals(1000, histogram.getMax());
+        long median = histogram.getPercentile(50);
+        assertTrue("median was " + median, median >= 500 && median < 1000);
+        assertEquals(1000, histogram.getPercentile(100));
+    }
+
+    @Test
+    public void zeroAndNegativeValues_countAsZero() {
+        Histogram histogram = new Histogram();
+        histogram.record(0);
+        histogram.record(-5);
+        assertEquals(2, histogram.getCount());
+        assertEquals(0, histogram.getPercentile(99));
+    }
+
+    @Test
+    public void reset_clearsEverything() {
+        Histogram histogram = new Histogram();
+        histogram.record(Long.MAX_VALUE);
+        histogram.reset();
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getMax());
+        assertEquals(0, histogram.getPercentile(50));
+    }
+}
@@ -0,0 +1,54 @@
+package mdp.grp3.arcm.util;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link MessageLog}.
+ */
+public class MessageLogTest {
+
+    @Test
+    public void add_keepsOrderUntilFull() {
+        MessageLog log = new MessageLog(3);
+        assertFalse(log.add("a"));
+        assertFalse(log.add("b"));
+        assertEquals(2, log.size());
+        assertEquals("a", log.get(0));
+        assertEquals("b", log.get(1));
+    }
+
+    @Test
+    public void add_dropsOldestWhenFull() {
+        MessageLog log = new MessageLog(3);
+        for (int i = 0; i < 3; i++)
+            assertFalse(log.add("line " + i));
+        for (int i = 3; i < 10; i++)
+            assertTrue(log.add("line " + i));
+        assertEquals(3, log.size());
+        assertEquals(10, log.getAdded());
+        for (int i = 0; i < 3; i++)
+            assertEquals("line " + (7 + i), log.get(i));
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void get_outsideTheLog() {
+        MessageLog log = new MessageLog(3);
+        log.add("a");
+        log.get(1);
+    }
+
+    @Test
+    public void clear_emptiesTheLog() {
+        MessageLog log = new MessageLog(2);
+        log.add("a");
+        log.add("b");
+        log.add("c");
+        log.clear();
+        assertEquals(0, log.size());
+        assertEquals(0, log.getAdded());
+        log.add("d");
+        assertEquals("d", log.get(0));
+    }
+}
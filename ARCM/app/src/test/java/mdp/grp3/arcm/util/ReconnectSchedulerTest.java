@@ -0,0 +1,89 @@
+package mdp.grp3.arcm.util;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link ReconnectScheduler}.
+ */
+public class ReconnectSchedulerTest {
+
+    /**
+     * Always draws the same jitter
+     */
+    private static final class FixedRandom extends Random {
+        private final double value;
+
+        FixedRandom(double value) {
+            this.value = value;
+        }
+
+        @Override
+        public double nextDouble() {
+            return value;
+        }
+    }
+
+    @Test
+    public void delay_doublesAfterEveryAttempt() {
+        // with no jitter, every delay is the fixed half
+        ReconnectScheduler scheduler = new ReconnectScheduler(100, 60_000, 10, new FixedRandom(0));
+        long[] expected = { 50, 100, 200, 400, 800, 1600 };
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals(i, scheduler.getAttempt());
+            assertEquals(expected[i], scheduler.nextDelayMillis());
+        }
+        assertEquals(expected.length, scheduler.getAttempt());
+    }
+
+    @Test
+    public void delay_isCappedAtTheMaximum() {
+        ReconnectScheduler scheduler = new ReconnectScheduler(100, 1000, 100, new FixedRandom(0.999_999));
+        long last = 0;
+        for (int i = 0; i < 100; i++) {
+            long delay = scheduler.nextDelayMillis();
+            assertTrue("delay " + delay + " at attempt " + i, delay <= 1000);
+            assertTrue("delay went down at attempt " + i, delay >= last);
+            last = delay;
+        }
+        // past the cap, and past the shift that would overflow
+        assertEquals(999, last);
+    }
+
+    @Test
+    public void jitter_staysWithinTheRandomHalf() {
+        ReconnectScheduler scheduler = new ReconnectScheduler(100, 3200, Integer.MAX_VALUE, new Random(7));
+        long min = Long.MAX_VALUE, max = 0;
+        for (int i = 0; i < 10_000; i++) {
+            scheduler.reset();
+            for (int j = 0; j < 5; j++)
+                scheduler.nextDelayMillis();
+            // the sixth attempt is capped at 3200
+            long delay = scheduler.nextDelayMillis();
+            assertTrue("delay was " + delay, delay >= 1600 && delay < 3200);
+            min = Math.min(min, delay);
+            max = Math.max(max, delay);
+        }
+        // the jitter covers its range, not one value
+        assertTrue("min was " + min, min < 1700);
+        assertTrue("max was " + max, max > 3100);
+    }
+
+    @Test
+    public void reset_startsANewRound() {
+        ReconnectScheduler scheduler = new ReconnectScheduler(100, 60_000, 3, new FixedRandom(0));
+        for (int i = 0; i < 3; i++)
+            scheduler.nextDelayMillis();
+        assertFalse(scheduler.hasAttemptsLeft());
+        assertEquals(3, scheduler.getMaxAttempts());
+
+        scheduler.reset();
+        assertTrue(scheduler.hasAttemptsLeft());
+        assertEquals(0, scheduler.getAttempt());
+        assertEquals(50, scheduler.nextDelayMillis());
+        assertTrue(scheduler.getElapsedMillis() >= 0);
+    }
+}
@@ -0,0 +1,93 @@
+package mdp.grp3.arcm.util;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+
+import mdp.grp3.arcm.constant.RPI_TO_ARCM.StatusMessages;
+import mdp.grp3.arcm.constant.Task;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link RunAnalytics} and {@link RunHistory}.
+ */
+public class RunAnalyticsTest {
+    private static final long MS = 1_000_000;
+
+    /**
+     * Plays the status updates of a Week 8 run with two obstacles, where the
+     * recognition takes the given time
+     */
+    private static RunAnalytics.Run week8(int recognitionMillis) {
+        RunAnalytics analytics = new RunAnalytics();
+        long t = 0;
+        analytics.start(Task.WEEK8, t);
+        analytics.onStatus(StatusMessages.STARTING_WEEK8, t += 100 * MS);
+        analytics.onStatus(StatusMessages.NEXT_OBSTACLE, t);
+        for (int i = 0; i < 2; i++) {
+            analytics.onStatus(StatusMessages.OPENING_CAMERA, t += 2000 * MS);
+            analytics.onStatus(StatusMessages.IDENTIFYING_IMAGE, t += 300 * MS);
+            analytics.onStatus(StatusMessages.IDENTIFYING_IMAGE, t += 10 * MS); // repeated update
+            analytics.onStatus(StatusMessages.RECEIVED_TARGET, t += recognitionMillis * MS - 10 * MS);
+            if (i == 0)
+                analytics.onStatus(StatusMessages.NEXT_OBSTACLE, t += 50 * MS);
+        }
+        return analytics.finish(t + 50 * MS);
+    }
+
+    @Test
+    public void week8_phasesAndLegs() {
+        RunAnalytics.Run run = week8(700);
+        assertEquals(Task.WEEK8, run.getTask());
+        assertEquals(100 + 2 * (2000 + 300 + 700 + 50), run.getTotalMillis());
+        assertEquals(100, run.getPhaseMillis(RunAnalytics.STARTUP));
+        assertEquals(4000, run.getPhaseMillis(RunAnalytics.DRIVE));
+        assertEquals(600, run.getPhaseMillis(RunAnalytics.CAPTURE));
+        assertEquals(1400, run.getPhaseMillis(RunAnalytics.RECOGNITION));
+        assertEquals(100, run.getPhaseMillis(RunAnalytics.TURNAROUND));
+        assertEquals(2, run.getLegCount());
+        assertEquals(2000, run.getLegMillis(1, RunAnalytics.DRIVE));
+        assertEquals(700, run.getLegMillis(1, RunAnalytics.RECOGNITION));
+    }
+
+    @Test
+    public void finish_withoutStart() {
+        RunAnalytics analytics = new RunAnalytics();
+        analytics.onStatus(StatusMessages.NEXT_OBSTACLE, 0);
+        assertNull(analytics.finish(1));
+    }
+
+    @Test
+    public void history_percentilesAcrossRuns() {
+        RunHistory history = new RunHistory(3);
+        for (int recognition = 100; recognition <= 500; recognition += 100)
+            history.add(week8(recognition));
+        // only the last three runs are kept
+        assertEquals(3, history.size());
+        assertEquals(300, history.getLegPercentile(Task.WEEK8, RunAnalytics.RECOGNITION, 0));
+        assertEquals(800, history.getPercentile(Task.WEEK8, RunAnalytics.RECOGNITION, 50));
+        assertEquals(1000, history.getPercentile(Task.WEEK8, RunAnalytics.RECOGNITION, 100));
+        assertEquals(0, history.getRunCount(Task.WEEK9));
+        assertEquals(0, history.getPercentile(Task.WEEK9, RunAnalytics.DRIVE, 50));
+        assertTrue(history.formatReport(Task.WEEK8).startsWith("3 runs"));
+    }
+
+    @Test
+    public void history_savesAndLoads() throws IOException {
+        File file = File.createTempFile("runs", ".bin");
+        try {
+            RunHistory history = new RunHistory(10);
+            history.add(week8(400));
+            history.add(week8(600));
+            history.save(file);
+            RunHistory loaded = RunHistory.load(file, 10);
+            assertEquals(2, loaded.size());
+            assertEquals(history.formatReport(Task.WEEK8), loaded.formatReport(Task.WEEK8));
+            assertEquals(0, RunHistory.load(new File(file.getPath() + ".missing"), 10).size());
+        } finally {
+            file.delete();
+        }
+    }
+}
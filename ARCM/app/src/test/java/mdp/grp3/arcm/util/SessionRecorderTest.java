@@ -0,0 +1,159 @@
+package mdp.grp3.arcm.util;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link SessionRecorder}.
+ */
+public class SessionRecorderTest {
+    private File file;
+
+    @Before
+    public void setUp() throws IOException {
+        file = File.createTempFile("session", ".arcm");
+    }
+
+    @After
+    public void tearDown() {
+        file.delete();
+    }
+
+    @Test
+    public void records_areReadBackInOrder() throws IOException {
+        SessionRecorder recorder = new SessionRecorder(file, 1 << 16);
+        recorder.record(100, SessionRecorder.INBOUND, new byte[] { 9, 3, 6, 0, 0 }, 1, 4);
+        recorder.record(200, SessionRecorder.OUTBOUND, new byte[] { 'G', 'O' }, 0, 2);
+        recorder.close();
+        // header, records, end marker, index of one entry and its trailer
+        assertEquals(16 + 11 + 4 + 11 + 2 + 8 + 4 + 12 + 8, file.length());
+
+        final List<byte[]> frames = new ArrayList<>();
+        final List<Long> timestamps = new ArrayList<>();
+        int count = SessionRecorder.read(file, (timestamp, direction, buffer, offset, length) -> {
+            timestamps.add(timestamp);
+            frames.add(Arrays.copyOfRange(buffer, offset, offset + length));
+        });
+        assertEquals(2, count);
+        assertEquals(Arrays.asList(100L, 200L), timestamps);
+        assertArrayEquals(new byte[] { 3, 6, 0, 0 }, frames.get(0));
+        assertArrayEquals(new byte[] { 'G', 'O' }, frames.get(1));
+    }
+
+    @Test
+    public void records_areDroppedWhenFull() throws IOException {
+        SessionRecorder recorder = new SessionRecorder(file, 16 + 15 * 10);
+        for (int i = 1; i <= 12; i++)
+            recorder.record(i, SessionRecorder.INBOUND, new byte[4], 0, 4);
+        assertEquals(2, recorder.getDroppedRecords());
+        recorder.close();
+        assertEquals(10, SessionRecorder.read(file, (timestamp, direction, buffer, offset, length) -> {
+        }));
+    }
+
+    @Test
+    public void concurrentRecords_areAllKept() throws Exception {
+        SessionRecorder recorder = new SessionRecorder(file, 1 << 20);
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            threads[t] = new Thread(() -> {
+                byte[] frame = { 3, 1, 2, 3 };
+                for (int i = 0; i < 10_000; i++)
+                    recorder.record(System.nanoTime(), SessionRecorder.INBOUND, frame, 0, frame.length);
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads)
+            thread.join();
+        recorder.close();
+        final boolean[] intact = { true };
+        int count = SessionRecorder.read(file, (timestamp, direction, buffer, offset, length) -> intact[0] &= length == 4
+                && buffer[offset] == 3 && buffer[offset + 3] == 3);
+        assertEquals(40_000, count);
+        assertTrue(intact[0]);
+    }
+
+    @Test
+    public void close_waitsForRecordsInProgress() throws Exception {
+        SessionRecorder recorder = new SessionRecorder(file, 8 << 20);
+        Thread[] threads = new Thread[4];
+        int[] attempts = new int[threads.length];
+        for (int t = 0; t < threads.length; t++) {
+            final int thread = t;
+            threads[t] = new Thread(() -> {
+                // large frames take long enough to copy that the close can land halfway
+                byte[] frame = new byte[16 << 10];
+                // keeps recording after the close, like the IO threads of the app
+                while (recorder.getDroppedRecords() == 0) {
+                    recorder.record(System.nanoTime(), SessionRecorder.INBOUND, frame, 0, frame.length);
+                    attempts[thread]++;
+                }
+            });
+            threads[t].start();
+        }
+        while (recorder.getSize() < 1 << 20)
+            Thread.yield();
+        recorder.close();
+        // read while the threads still run: every record must already be whole, none
+        // cut off by a zero timestamp
+        final boolean[] intact = { true };
+        int count = SessionRecorder.read(file,
+                (timestamp, direction, buffer, offset, length) -> intact[0] &= length == 16 << 10);
+        for (Thread thread : threads)
+            thread.join();
+        int total = 0;
+        for (int attempt : attempts)
+            total += attempt;
+        assertEquals(total, count + recorder.getDroppedRecords());
+        assertTrue(intact[0]);
+    }
+
+    @Test
+    public void read_seeksWithTheIndex() throws IOException {
+        SessionRecorder recorder = new SessionRecorder(file, 1 << 22);
+        byte[] frame = { 3, 1, 2, 3 };
+        for (int i = 1; i <= 200_000; i++)
+            recorder.record(i, SessionRecorder.INBOUND, frame, 0, frame.length);
+        recorder.close();
+        final long[] first = { 0 };
+        int count = SessionRecorder.read(file, 150_001, (timestamp, direction, buffer, offset, length) -> {
+            if (first[0] == 0)
+                first[0] = timestamp;
+        });
+        assertEquals(50_000, count);
+        assertEquals(150_001, first[0]);
+    }
+
+    @Test
+    public void read_withoutIndex() throws IOException {
+        SessionRecorder recorder = new SessionRecorder(file, 1 << 16);
+        recorder.record(100, SessionRecorder.INBOUND, new byte[] { 3, 6, 0, 0 }, 0, 4);
+        recorder.record(200, SessionRecorder.EVENT, new byte[] { SessionRecorder.TIMER_STARTED, 8 }, 0, 2);
+        // like a crash, the file is read before it is closed
+        assertEquals(1, SessionRecorder.read(file, 150, (timestamp, direction, buffer, offset, length) -> {
+            assertEquals(SessionRecorder.EVENT, direction);
+            assertEquals(SessionRecorder.TIMER_STARTED, buffer[offset]);
+        }));
+        recorder.close();
+    }
+
+    @Test
+    public void export_writesCsv() throws IOException {
+        SessionRecorder recorder = new SessionRecorder(file, 1 << 16);
+        recorder.record(1_000_000, SessionRecorder.OUTBOUND, new byte[] { 'G', 'O' }, 0, 2);
+        recorder.record(3_500_000, SessionRecorder.INBOUND, new byte[] { 3, 6, 0, (byte) 0xFF }, 0, 4);
+        recorder.close();
+        StringBuilder csv = new StringBuilder();
+        assertEquals(2, SessionRecorder.export(file, csv));
+        assertEquals("time_ms,direction,bytes\n0.000,out,47 4f\n2.500,in,03 06 00 ff\n", csv.toString());
+    }
+}
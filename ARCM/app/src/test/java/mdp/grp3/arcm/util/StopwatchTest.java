@@ -0,0 +1,42 @@
+package mdp.grp3.arcm.util;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link Stopwatch}.
+ */
+public class StopwatchTest {
+
+    private static String format(long millis) {
+        char[] out = new char[Stopwatch.MAX_LENGTH];
+        return new String(out, 0, Stopwatch.format(millis, out));
+    }
+
+    @Test
+    public void format_matchesTheTimerText() {
+        assertEquals("00:00:000", format(0));
+        assertEquals("00:01:005", format(1_005));
+        assertEquals("02:03:456", format(123_456));
+        assertEquals("59:59:999", format(3_599_999));
+        assertEquals("120:00:000", format(7_200_000));
+    }
+
+    @Test
+    public void elapsed_stopsWithTheStopwatch() {
+        Stopwatch stopwatch = new Stopwatch();
+        assertEquals(0, stopwatch.getElapsedNanos(100));
+        stopwatch.start(1_000);
+        assertTrue(stopwatch.isRunning());
+        assertEquals(500, stopwatch.getElapsedNanos(1_500));
+        stopwatch.stop(2_000);
+        stopwatch.stop(3_000); // already stopped
+        assertFalse(stopwatch.isRunning());
+        assertTrue(stopwatch.isStarted());
+        assertEquals(1_000, stopwatch.getElapsedNanos(9_000));
+        stopwatch.reset();
+        assertFalse(stopwatch.isStarted());
+        assertEquals(0, stopwatch.getElapsedNanos(9_000));
+    }
+}
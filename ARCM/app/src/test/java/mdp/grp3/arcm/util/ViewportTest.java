@@ -0,0 +1,87 @@
+package mdp.grp3.arcm.util;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link Viewport}.
+ */
+public class ViewportTest {
+    private static final float DELTA = 1e-3f;
+
+    @Test
+    public void zoomBy_keepsTheFocusInPlace() {
+        Viewport viewport = new Viewport(720, 4);
+        float contentX = viewport.toContentX(300), contentY = viewport.toContentY(500);
+        assertTrue(viewport.zoomBy(2, 300, 500));
+        assertEquals(2, viewport.getScale(), DELTA);
+        assertEquals(300, viewport.toWindowX(contentX), DELTA);
+        assertEquals(500, viewport.toWindowY(contentY), DELTA);
+    }
+
+    @Test
+    public void zoomBy_staysWithinTheScales() {
+        Viewport viewport = new Viewport(720, 4);
+        assertFalse(viewport.zoomBy(0.5f, 100, 100));
+        assertTrue(viewport.zoomBy(100, 100, 100));
+        assertEquals(4, viewport.getScale(), DELTA);
+        assertFalse(viewport.zoomBy(2, 100, 100));
+        viewport.setMaxScale(2);
+        assertEquals(1, viewport.getScale(), DELTA);
+        assertEquals(0, viewport.getPanX(), DELTA);
+    }
+
+    @Test
+    public void panBy_keepsTheWindowCovered() {
+        Viewport viewport = new Viewport(720, 4);
+        assertFalse(viewport.panBy(50, 50)); // nothing to pan at a scale of 1
+        viewport.zoomBy(2, 0, 0);
+        assertTrue(viewport.panBy(-100, -2000));
+        assertEquals(-100, viewport.getPanX(), DELTA);
+        assertEquals(-720, viewport.getPanY(), DELTA);
+        assertTrue(viewport.panBy(1000, 0));
+        assertEquals(0, viewport.getPanX(), DELTA);
+        viewport.reset();
+        assertEquals(1, viewport.getScale(), DELTA);
+        assertEquals(0, viewport.getPanY(), DELTA);
+    }
+
+    @Test
+    public void cellAt_followsTheViewport() {
+        Viewport viewport = new Viewport(720, 20);
+        assertEquals(0, viewport.cellAt(0, viewport.getPanX(), 20));
+        assertEquals(19, viewport.cellAt(719, viewport.getPanX(), 20));
+        assertEquals(199, viewport.cellAt(5000, viewport.getPanX(), 200)); // clamped
+        assertEquals(0, viewport.cellAt(-10, viewport.getPanX(), 200));
+        viewport.zoomBy(10, 0, 0);
+        viewport.panBy(-3600, 0);
+        // the window shows the content from x = 360, the middle of the arena
+        assertEquals(100, viewport.cellAt(0, viewport.getPanX(), 200));
+        assertEquals(119, viewport.cellAt(719, viewport.getPanX(), 200));
+    }
+
+    @Test
+    public void clampToWindow_keepsHitsInTheLabelStripsOnScreen() {
+        Viewport viewport = new Viewport(720, 4);
+        // the whole grid is shown
+        assertEquals(5, viewport.clampToWindow(5, viewport.getPanX(), 20));
+        assertEquals(19, viewport.clampToWindow(25, viewport.getPanX(), 20));
+        assertEquals(0, viewport.clampToWindow(-1, viewport.getPanX(), 20));
+
+        // cells of 72 px, the window shows x and y from 100 to 820 of the content
+        viewport.zoomBy(2, 0, 0);
+        viewport.panBy(-100, -100);
+        // the y axis labels are left of the window, over cell 0 panned out of it
+        int column = viewport.cellAt(-35, viewport.getPanX(), 20);
+        assertEquals(0, column);
+        assertEquals(1, viewport.clampToWindow(column, viewport.getPanX(), 20));
+        // the x axis labels are below the window, over cell 12
+        int row = viewport.cellAt(800, viewport.getPanY(), 20);
+        assertEquals(12, row);
+        assertEquals(11, viewport.clampToWindow(row, viewport.getPanY(), 20));
+        // the cells partly in the window stay
+        assertEquals(1, viewport.clampToWindow(viewport.cellAt(-20, viewport.getPanX(), 20), viewport.getPanX(), 20));
+        assertEquals(11, viewport.clampToWindow(viewport.cellAt(760, viewport.getPanY(), 20), viewport.getPanY(), 20));
+    }
+}
@@ -15,6 +15,11 @@
  */
 #define BLUETOOTH_CLIENT_ADDR "90:EE:C7:E7:D3:C2"
 
+/**
+ * Version of the message layouts, must match Schema.VERSION in the ARCM
+ */
+#define PROTOCOL_VERSION 3
+
 /**
  * Enum to indicate the direction of the obstacle
  */
@@ -59,9 +64,36 @@ enum RPI_TO_ARCM {
     TARGET_DISCOVERED = 1,
     FINISHED_WEEK9 = 2,
     STATUS_UPDATE = 3,
-    FINISHED_WEEK8 = 4
+    FINISHED_WEEK8 = 4,
+    PONG = 5,
+    PLANNED_PATH = 6
+};
+
+/**
+ * Most bytes of path (command and value pairs) in one PLANNED_PATH message
+ * The message is the type, the length of the rest, the part index and the number of parts, then the path
+ */
+#define PATH_PART_SIZE 252
+
+/**
+ * Enum for the messages sent from the ARCM to the RPI
+ * Every message starts with its type, the arena is followed by the length of the rest
+ */
+enum ARCM_TO_RPI {
+    ARENA = 'A',
+    PING = 'P'
 };
 
+/**
+ * Size of the heartbeat messages from the ARCM
+ */
+#define PING_SIZE 4
+
+/**
+ * Size of the buffer for the messages from the ARCM, enough for the longest message and a read after it
+ */
+#define BT_READ_SIZE 512
+
 /**
  * Enum for the type of status message
  */
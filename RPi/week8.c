@@ -1,6 +1,7 @@
 #include "bt.h"
 #include "mqtt.h"
 #include "stm.h"
+#include <errno.h>
 #include <pthread.h>
 #include <stdarg.h>
 #include <stdbool.h>
@@ -79,6 +80,35 @@ void write_stm(char command, char val) {
     stm_err("Cannot send message.");
 }
 
+/**
+ * Serializes the writes to the Android client, so that messages sent from
+ * different threads are never interleaved
+ */
+pthread_mutex_t bt_write_lock = PTHREAD_MUTEX_INITIALIZER;
+
+/**
+ * Sends every byte of a message to the Android client, as send may only take
+ * part of it. Must be called with bt_write_lock held
+ *
+ * @param data The message to send
+ * @param size The number of bytes in the message
+ * @return Whether the whole message was sent
+ */
+bool send_all(const char *data, int size) {
+  while (size > 0) {
+    ssize_t sent = send(bluetooth_client_sock, data, size, 0);
+    if (sent < 0) {
+      if (errno == EINTR)
+        continue;
+      bt_err("Failed to send message.");
+      return false;
+    }
+    data += sent;
+    size -= sent;
+  }
+  return true;
+}
+
 /**
  * Sends a message to the Android client over bluetooth
  *
@@ -88,11 +118,40 @@ void write_stm(char command, char val) {
  * @param arg3 The third argument to send
  */
 void write_bt(char command, char arg1, char arg2, char arg3) {
+  pthread_mutex_lock(&bt_write_lock);
   if (bluetooth_client_sock != -1) {
     char write_buf[4] = {command, arg1, arg2, arg3};
-    send(bluetooth_client_sock, write_buf, sizeof(write_buf), 0);
+    send_all(write_buf, sizeof(write_buf));
   } else
     bt_err("No client connected. Cannot send message.");
+  pthread_mutex_unlock(&bt_write_lock);
+}
+
+/**
+ * Sends the planned path to the Android client over bluetooth, split into parts
+ * that fit in a length prefixed message
+ *
+ * @param path The command and value pairs from the algorithm
+ * @param size The number of bytes in the path
+ */
+void write_bt_path(const char *path, int size) {
+  pthread_mutex_lock(&bt_write_lock);
+  if (bluetooth_client_sock == -1) {
+    bt_err("No client connected. Cannot send path.");
+    pthread_mutex_unlock(&bt_write_lock);
+    return;
+  }
+  // the parts are sent under one lock, so no other message lands between them
+  int parts = (size + PATH_PART_SIZE - 1) / PATH_PART_SIZE;
+  for (int part = 0; part < parts; part++) {
+    int offset = part * PATH_PART_SIZE;
+    int length = size - offset < PATH_PART_SIZE ? size - offset : PATH_PART_SIZE;
+    char write_buf[4 + PATH_PART_SIZE] = {PLANNED_PATH, 2 + length, part, parts};
+    memcpy(write_buf + 4, path + offset, length);
+    if (!send_all(write_buf, 4 + length))
+      break;
+  }
+  pthread_mutex_unlock(&bt_write_lock);
 }
 
 /**
@@ -178,6 +237,48 @@ void move_stm() {
     last_stop = true;
 }
 
+/**
+ * Finds the size of the message at the start of the data read from the ARCM
+ *
+ * @param data The data read, starting at a message
+ * @param available The number of bytes read
+ * @returns the size of the message, 0 if more bytes are needed or -1 if the
+ * type is unknown
+ */
+int message_size(const char *data, int available) {
+  if (available < 1)
+    return 0;
+  switch (data[0]) {
+  case PING:
+    return available >= PING_SIZE ? PING_SIZE : 0;
+  case ARENA:
+    if (available < 2 || available < 2 + (unsigned char)data[1])
+      return 0;
+    return 2 + (unsigned char)data[1];
+  default:
+    return -1;
+  }
+}
+
+/**
+ * Handles a complete message from the ARCM
+ *
+ * @param data The message, starting with its type
+ * @param size The size of the message
+ */
+void handle_message(const char *data, int size) {
+  if (data[0] == PING) {
+    write_bt(PONG, data[1], 0, 0);
+  } else if (data[0] == ARENA) {
+    // the android client sends all the obstacle data at once, which we pass on
+    // to the algorithm without the type and length
+    bt_log("received arena buffer of length %d", size - 2);
+    bt_log("START WEEK8 IMAGE RECOGNITION TASK");
+    write_mqtt(TOPIC_PUBLISH_ALGO, (char *)data + 2, size - 2, false);
+    write_bt(STATUS_UPDATE, STARTING_WEEK8, 0, 0);
+  }
+}
+
 /**
  * Thread function to handle the bluetooth connection
  */
@@ -201,7 +302,8 @@ void *bt_handler() {
   }
 
   bool read_from_socket = true;
-  char read_buf[30] = {0};
+  char read_buf[BT_READ_SIZE] = {0};
+  int buffered = 0; // bytes of an incomplete message kept from the last reads
 
   while (true) {
     // if the client is not connected, wait for a connection
@@ -228,27 +330,41 @@ void *bt_handler() {
       }
     }
 
-    // read from the client
-    memset(read_buf, 0, sizeof(read_buf));
-    bytes_read = recv(bluetooth_client_sock, read_buf, sizeof(read_buf), 0);
-
-    // the android client sends all the obstacle data at once, which we pass on
-    // to the algorithm the android client never sends any data after this
-    if (bytes_read > 0) {
-      bt_log("received arena buffer of length %d", bytes_read);
-      bt_log("START WEEK8 IMAGE RECOGNITION TASK");
-      write_mqtt(TOPIC_PUBLISH_ALGO, read_buf, bytes_read, false);
-      write_bt(STATUS_UPDATE, STARTING_WEEK8, 0, 0);
-    } else if (bytes_read == -1) {
+    // read from the client, after what is left of an incomplete message
+    bytes_read = recv(bluetooth_client_sock, read_buf + buffered,
+                      sizeof(read_buf) - buffered, 0);
+    if (bytes_read <= 0) {
       // we still need to stay connected to android, so close the connection and
-      // wait for a new one android will always attempt to reconnect
+      // wait for a new one android will always attempt to reconnect. The lock
+      // keeps a writer from sending on the socket as it is closed
+      pthread_mutex_lock(&bt_write_lock);
       close(bluetooth_client_sock);
       bluetooth_client_sock = -1;
+      pthread_mutex_unlock(&bt_write_lock);
+      buffered = 0;
 
       // break out of the loop if we need to terminate
       if (time_to_die)
         break;
+      continue;
+    }
+    buffered += bytes_read;
+
+    // a read can hold several messages or part of one, handle the complete ones
+    int offset = 0;
+    int size;
+    while ((size = message_size(read_buf + offset, buffered - offset)) != 0) {
+      if (size < 0) {
+        bt_err("unknown message type %d, skipping a byte", read_buf[offset]);
+        offset++;
+      } else {
+        handle_message(read_buf + offset, size);
+        offset += size;
+      }
     }
+    // keep the incomplete message for the next read
+    memmove(read_buf, read_buf + offset, buffered - offset);
+    buffered -= offset;
   }
 
   bt_log("Closing Server");
@@ -326,7 +442,7 @@ int msgarrvd(void *context, char *topicName, int topicLen,
   } else if (strcmp(topicName, TOPIC_SUBSCRIBE_ALGO) == 0) {
     // we have received the path data from the algorithm
     char *data = message->payload;
-    char path_size = message->payloadlen;
+    int path_size = message->payloadlen;
     mqtt_algo("Recieved path from algo. %d commands", message->payloadlen / 2);
 
     // if the path is SOS, then the algorithm has failed
@@ -337,6 +453,7 @@ int msgarrvd(void *context, char *topicName, int topicLen,
       path_data.path = data;
       path_data.size = path_size;
       path_data.i = 0;
+      write_bt_path(data, path_size);
       move_stm();
       write_bt(STATUS_UPDATE, NEXT_OBSTACLE, 0, 0);
     }